@@ -0,0 +1,41 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.backend.Tracer;
+import com.aegamesi.java_visualizer.backend.TracerOptions;
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+
+/**
+ * Counts method invocations and round-trips per collection type when reading collections through
+ * their iterators, and through the field-level collection readers.
+ * <p>
+ * Usage: {@code CollectionBenchmark [elements] [maxElements]}
+ */
+public class CollectionBenchmark {
+	public static void main(String[] args) throws Exception {
+		int elements = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int maxElements = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+		System.out.println("type                   mode      invocations  round-trips      ms");
+		Debuggee.run("debuggee.CollectionDebuggee", Integer.toString(elements), (pause, thread) -> {
+			TracerOptions options = new TracerOptions();
+			options.maxElements = maxElements;
+			options.useCollectionReaders = pause % 2 == 1;
+			Tracer tracer = new Tracer(thread, options);
+			try {
+				long start = System.nanoTime();
+				ExecutionTrace trace = tracer.getModel();
+				long ms = (System.nanoTime() - start) / 1_000_000;
+				System.out.printf("%-22s %-9s %11d  %11d  %6d%n", collectionType(trace),
+						options.useCollectionReaders ? "fields" : "iterator",
+						tracer.getStats().getInvocations(), tracer.getStats().getRoundTrips(), ms);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	private static String collectionType(ExecutionTrace trace) {
+		// the "type" parameter of CollectionDebuggee.pause
+		return trace.frames.get(0).locals.get("param#0").getString();
+	}
+}
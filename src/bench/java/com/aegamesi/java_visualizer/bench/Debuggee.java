@@ -0,0 +1,73 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.sun.jdi.Bootstrap;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.connect.Connector;
+import com.sun.jdi.connect.LaunchingConnector;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventSet;
+import com.sun.jdi.event.VMDeathEvent;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.request.BreakpointRequest;
+import com.sun.jdi.request.ClassPrepareRequest;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Launches one of the programs in the {@code debuggee} package in a local VM under JDI, and
+ * calls back every time it stops in its {@code pause} method, with the VM suspended.
+ */
+class Debuggee {
+	static void run(String mainClass, String args, BiConsumer<Integer, ThreadReference> onPause) throws Exception {
+		LaunchingConnector connector = Bootstrap.virtualMachineManager().defaultConnector();
+		Map<String, Connector.Argument> arguments = connector.defaultArguments();
+		arguments.get("main").setValue(mainClass + " " + args);
+		arguments.get("options").setValue("-cp \"" + System.getProperty("java.class.path") + "\"");
+		VirtualMachine vm = connector.launch(arguments);
+		drain(vm.process().getInputStream());
+		drain(vm.process().getErrorStream());
+
+		ClassPrepareRequest prepareRequest = vm.eventRequestManager().createClassPrepareRequest();
+		prepareRequest.addClassFilter(mainClass);
+		prepareRequest.enable();
+
+		int pauses = 0;
+		while (true) {
+			EventSet events = vm.eventQueue().remove();
+			for (Event event : events) {
+				if (event instanceof ClassPrepareEvent) {
+					ReferenceType type = ((ClassPrepareEvent) event).referenceType();
+					BreakpointRequest request = vm.eventRequestManager().createBreakpointRequest(
+							type.methodsByName("pause").get(0).location());
+					request.enable();
+				} else if (event instanceof BreakpointEvent) {
+					onPause.accept(pauses++, ((BreakpointEvent) event).thread());
+				} else if (event instanceof VMDeathEvent || event instanceof VMDisconnectEvent) {
+					return;
+				}
+			}
+			events.resume();
+		}
+	}
+
+	private static void drain(InputStream is) {
+		Thread t = new Thread(() -> {
+			byte[] buf = new byte[1024];
+			try {
+				while (is.read(buf) >= 0) {
+					// discard
+				}
+			} catch (Exception e) {
+				// VM went away
+			}
+		});
+		t.setDaemon(true);
+		t.start();
+	}
+}
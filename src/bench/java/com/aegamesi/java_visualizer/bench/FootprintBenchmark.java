@@ -0,0 +1,89 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.Frame;
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.HeapList;
+import com.aegamesi.java_visualizer.model.HeapMap;
+import com.aegamesi.java_visualizer.model.HeapObject;
+import com.aegamesi.java_visualizer.model.HeapPrimitive;
+import com.aegamesi.java_visualizer.model.HeapPrimitiveList;
+import com.aegamesi.java_visualizer.model.Value;
+
+import java.util.function.Supplier;
+
+/**
+ * Measures how much memory a trace takes up: the retained heap of the synthetic trace of
+ * {@link HeapRenderBenchmark}, how many values it holds, and how big a single {@link Value} is.
+ * Sizes are worked out from the used heap after a full GC, so run it with a fixed heap and nothing else going on.
+ * <p>
+ * Usage: {@code FootprintBenchmark [entities]}
+ */
+public class FootprintBenchmark {
+	private static final int VALUES = 1_000_000;
+
+	// what's being measured, kept here so it isn't collected
+	private static Object kept;
+
+	public static void main(String[] args) {
+		int entities = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+		long arrayBytes = retained(() -> new Value[VALUES]);
+		long valueBytes = retained(() -> {
+			Value[] values = new Value[VALUES];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = Value.ofLong(i);
+			}
+			return values;
+		}) - arrayBytes;
+		System.out.printf("one value: %.1f bytes%n", valueBytes / (double) VALUES);
+
+		long traceBytes = retained(() -> HeapRenderBenchmark.generateTrace(entities));
+		ExecutionTrace trace = HeapRenderBenchmark.generateTrace(entities);
+		long values = countValues(trace);
+		System.out.printf("trace of %d entities: %.1f MB, %d values, %.1f bytes per value (%.0f%% of the trace in values)%n",
+				trace.heap.size(), traceBytes / 1e6, values, traceBytes / (double) values,
+				100.0 * values * valueBytes / VALUES / traceBytes);
+	}
+
+	/**
+	 * The values held as objects; the elements of primitive arrays aren't, so they're left out.
+	 */
+	private static long countValues(ExecutionTrace trace) {
+		long n = trace.statics.size();
+		for (Frame frame : trace.frames) {
+			n += frame.locals.size();
+		}
+		for (HeapEntity e : trace.heap.values()) {
+			if (e instanceof HeapObject) {
+				n += ((HeapObject) e).fields.size();
+			} else if (e instanceof HeapList && !(e instanceof HeapPrimitiveList)) {
+				n += ((HeapList) e).items.size();
+			} else if (e instanceof HeapMap) {
+				n += 2 * ((HeapMap) e).pairs.size();
+			} else if (e instanceof HeapPrimitive) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * How much more of the heap is in use while the object made is kept.
+	 */
+	private static long retained(Supplier<Object> make) {
+		long before = used();
+		kept = make.get();
+		long after = used();
+		kept = null;
+		return after - before;
+	}
+
+	private static long used() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,234 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.Tester;
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.Frame;
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.HeapList;
+import com.aegamesi.java_visualizer.model.HeapMap;
+import com.aegamesi.java_visualizer.model.HeapObject;
+import com.aegamesi.java_visualizer.model.Value;
+import com.aegamesi.java_visualizer.ui.VisualizationPanel;
+
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+
+/**
+ * Compares the component and direct heap renderers on a trace loaded from JSON, the way {@code Tester} loads it:
+ * the time to build and lay out the panel, the time to paint a viewport-sized frame while scrolling through the
+ * heap, and the number of components created. Then, with the layout done in the background, the time until the
+ * trace is shown and the longest the EDT is kept busy meanwhile.
+ * <p>
+ * Usage: {@code HeapRenderBenchmark [trace.json | entities] [rounds]}. Given a number of entities, a synthetic
+ * trace is generated and round-tripped through JSON.
+ */
+public class HeapRenderBenchmark {
+	private static final int VIEW_WIDTH = 1600;
+	private static final int VIEW_HEIGHT = 1000;
+	private static final int FRAMES = 40;
+	private static final int CELLS = 16;
+
+	public static void main(String[] args) throws Exception {
+		String source = args.length > 0 ? args[0] : "20000";
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		long start = System.nanoTime();
+		ExecutionTrace trace;
+		if (source.matches("\\d+")) {
+			trace = ExecutionTrace.fromJsonString(generateTrace(Integer.parseInt(source)).toJsonString());
+		} else {
+			trace = Tester.makeTrace(source);
+		}
+		System.out.printf("loaded %d heap entities from JSON in %d ms%n", trace.heap.size(), (System.nanoTime() - start) / 1_000_000);
+
+		System.out.println("renderer     round  build ms  frame ms  components");
+		for (int round = 1; round <= rounds; round++) {
+			int r = round;
+			for (VisualizationPanel.HeapRenderer renderer : VisualizationPanel.HeapRenderer.values()) {
+				SwingUtilities.invokeAndWait(() -> System.out.println(measure(trace, renderer, r)));
+			}
+		}
+
+		System.out.println("renderer     round  shown ms  longest EDT stall ms");
+		for (int round = 1; round <= rounds; round++) {
+			for (VisualizationPanel.HeapRenderer renderer : VisualizationPanel.HeapRenderer.values()) {
+				System.out.println(measureBackground(trace, renderer, round));
+			}
+		}
+	}
+
+	/**
+	 * Sets the trace with the layout done in the background: the time until it's shown, and the longest the EDT
+	 * was kept from running a task meanwhile, which is how long the IDE would freeze.
+	 */
+	private static String measureBackground(ExecutionTrace trace, VisualizationPanel.HeapRenderer renderer, int round)
+			throws Exception {
+		VisualizationPanel[] panel = new VisualizationPanel[1];
+		SwingUtilities.invokeAndWait(() -> {
+			panel[0] = new VisualizationPanel();
+			panel[0].setHeapRenderer(renderer);
+			JViewport viewport = new JViewport();
+			viewport.setView(panel[0]);
+			panel[0].addNotify();
+			viewport.setSize(VIEW_WIDTH, VIEW_HEIGHT);
+		});
+
+		long start = System.nanoTime();
+		SwingUtilities.invokeLater(() -> {
+			panel[0].setTrace(trace);
+			// a layout is installed with invokeLater, and this validates it, like the next paint would
+			SwingUtilities.invokeLater(() -> panel[0].validate());
+		});
+		long longestStall = 0;
+		boolean[] pending = {true};
+		while (pending[0]) {
+			long posted = System.nanoTime();
+			SwingUtilities.invokeAndWait(() -> {
+				pending[0] = panel[0].isLayoutPending();
+				if (!pending[0]) {
+					panel[0].validate();
+				}
+			});
+			longestStall = Math.max(longestStall, System.nanoTime() - posted);
+			Thread.sleep(1);
+		}
+		long shownNanos = System.nanoTime() - start;
+		return String.format("%-12s %5d  %8d  %20.1f", renderer, round, shownNanos / 1_000_000,
+				longestStall / 1_000_000.0);
+	}
+
+	private static String measure(ExecutionTrace trace, VisualizationPanel.HeapRenderer renderer, int round) {
+		long start = System.nanoTime();
+		VisualizationPanel panel = new VisualizationPanel();
+		panel.setHeapRenderer(renderer);
+		panel.setBackgroundLayout(false);
+		JViewport viewport = new JViewport();
+		viewport.setView(panel);
+		// there's no window when running headless, so the view is made displayable by hand, which lets it
+		// validate and follow the viewport as it's scrolled
+		panel.addNotify();
+		viewport.setSize(VIEW_WIDTH, VIEW_HEIGHT);
+		panel.setTrace(trace);
+		panel.setSize(panel.getPreferredSize());
+		panel.validate();
+		long buildNanos = System.nanoTime() - start;
+
+		Dimension size = panel.getSize();
+		BufferedImage image = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		start = System.nanoTime();
+		for (int i = 0; i < FRAMES; i++) {
+			// scroll diagonally through the whole heap
+			Point position = new Point(
+					Math.max(0, size.width - VIEW_WIDTH) * i / (FRAMES - 1),
+					Math.max(0, size.height - VIEW_HEIGHT) * i / (FRAMES - 1));
+			viewport.setViewPosition(position);
+			Graphics2D g = image.createGraphics();
+			g.translate(-position.x, -position.y);
+			g.setClip(position.x, position.y, VIEW_WIDTH, VIEW_HEIGHT);
+			panel.paint(g);
+			g.dispose();
+		}
+		long frameNanos = (System.nanoTime() - start) / FRAMES;
+
+		return String.format("%-12s %5d  %8d  %8.2f  %10d", renderer, round, buildNanos / 1_000_000,
+				frameNanos / 1_000_000.0, countComponents(panel));
+	}
+
+	private static int countComponents(Container c) {
+		int n = 1;
+		for (Component child : c.getComponents()) {
+			n += child instanceof Container ? countComponents((Container) child) : 1;
+		}
+		return n;
+	}
+
+	/**
+	 * A chain of rows, each an object holding a map and a list of cells, which point back to their row. Each row
+	 * is laid out a column further right and a little further down, so the heap fills the view as it's scrolled
+	 * diagonally.
+	 */
+	static ExecutionTrace generateTrace(int entities) {
+		ExecutionTrace trace = new ExecutionTrace();
+		Frame frame = new Frame();
+		frame.name = "main:1";
+		frame.locals.put("first", reference(1));
+		frame.locals.put("n", number(entities));
+		trace.frames.add(frame);
+
+		long id = 1;
+		int row = 0;
+		while (id <= entities) {
+			long rowId = id++;
+			long metaId = id++;
+			long cellsId = id++;
+			long nextId = id + CELLS;
+
+			HeapObject rowObject = new HeapObject();
+			rowObject.fields.put("index", number(row));
+			rowObject.fields.put("meta", reference(metaId));
+			rowObject.fields.put("cells", reference(cellsId));
+			if (nextId <= entities) {
+				rowObject.fields.put("next", reference(nextId));
+			}
+			add(trace, rowObject, HeapEntity.Type.OBJECT, rowId, "Row");
+
+			HeapMap meta = new HeapMap();
+			for (int k = 0; k < 3; k++) {
+				HeapMap.Pair pair = new HeapMap.Pair();
+				pair.key = string("key" + k);
+				pair.val = number(row * k);
+				meta.pairs.add(pair);
+			}
+			if (row % 4 == 0) {
+				meta.omittedOffset = 3;
+				meta.omittedCount = 5;
+			}
+			add(trace, meta, HeapEntity.Type.MAP, metaId, "HashMap");
+
+			HeapList cells = new HeapList();
+			for (int k = 0; k < CELLS; k++) {
+				cells.items.add(reference(id + k));
+			}
+			if (row % 3 == 0) {
+				cells.omittedOffset = CELLS;
+				cells.omittedCount = 100;
+			}
+			add(trace, cells, HeapEntity.Type.LIST, cellsId, "ArrayList");
+
+			for (int k = 0; k < CELLS; k++, id++) {
+				HeapObject cell = new HeapObject();
+				cell.fields.put("value", number(id * 31 % 100000));
+				cell.fields.put("name", string("cell" + id));
+				cell.fields.put("row", reference(rowId));
+				add(trace, cell, HeapEntity.Type.OBJECT, id, "Cell");
+			}
+			row++;
+		}
+		return trace;
+	}
+
+	private static void add(ExecutionTrace trace, HeapEntity e, HeapEntity.Type type, long id, String label) {
+		e.type = type;
+		e.id = id;
+		e.label = label;
+		trace.heap.put(id, e);
+	}
+
+	private static Value reference(long id) {
+		return Value.ofReference(id);
+	}
+
+	private static Value number(long n) {
+		return Value.ofLong(n);
+	}
+
+	private static Value string(String s) {
+		return Value.ofString(s);
+	}
+}
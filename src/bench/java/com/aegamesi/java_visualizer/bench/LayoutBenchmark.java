@@ -0,0 +1,100 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.layout.LayeredLayout;
+import com.aegamesi.java_visualizer.layout.LayoutGraph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times {@link LayeredLayout} on synthetic graphs of growing size, to check that its cost grows about linearly
+ * with the number of nodes and edges: the time per node and edge should stay flat as the graphs grow.
+ * <p>
+ * Usage: {@code LayoutBenchmark [nodes...]}
+ */
+public class LayoutBenchmark {
+	private static final int WARMUP = 20;
+	private static final int ROUNDS = 21;
+
+	private enum Shape {
+		/** Objects with up to four children each. */
+		TREE,
+		/** A linked list whose nodes each hold a value object. */
+		LIST,
+		/** Objects referencing a few objects made after them, which are shared. */
+		DAG,
+		/** A doubly linked list whose nodes also point back to random nodes. */
+		CYCLIC
+	}
+
+	public static void main(String[] args) {
+		String[] sizes = args.length > 0 ? args : new String[]{"1000", "10000", "100000"};
+
+		System.out.println("shape      nodes    edges  layers      ms  ns/(node+edge)");
+		LayeredLayout layout = new LayeredLayout(32, 16);
+		for (Shape shape : Shape.values()) {
+			for (String size : sizes) {
+				LayoutGraph graph = generate(shape, Integer.parseInt(size));
+				for (int i = 0; i < WARMUP; i++) {
+					layout.layout(graph);
+				}
+				LayeredLayout.Result result = null;
+				long[] times = new long[ROUNDS];
+				for (int i = 0; i < ROUNDS; i++) {
+					long start = System.nanoTime();
+					result = layout.layout(graph);
+					times[i] = System.nanoTime() - start;
+				}
+				// the median, as a collection now and then skews the mean
+				Arrays.sort(times);
+				long nanos = times[ROUNDS / 2];
+				int elements = graph.getNodeCount() + graph.getEdgeCount();
+				System.out.printf("%-8s %7d  %7d  %6d  %6.2f  %14.1f%n", shape, graph.getNodeCount(), graph.getEdgeCount(),
+						result.layers, nanos / 1e6, (double) nanos / elements);
+			}
+		}
+	}
+
+	/**
+	 * A graph of the given shape and number of nodes, rooted at node 0, with sizes like those of heap entities.
+	 */
+	static LayoutGraph generate(Shape shape, int nodes) {
+		Random random = new Random(nodes * 31L + shape.ordinal());
+		LayoutGraph graph = new LayoutGraph();
+		for (int i = 0; i < nodes; i++) {
+			graph.addNode(60 + random.nextInt(200), 30 + random.nextInt(90));
+		}
+		switch (shape) {
+			case TREE:
+				for (int i = 1; i < nodes; i++) {
+					// node i's parent is one of the nodes before it, so that parents have about four children
+					graph.addEdge((i - 1) / 4, i, 10 + random.nextInt(60));
+				}
+				break;
+			case LIST:
+				for (int i = 0; i + 2 < nodes; i += 2) {
+					graph.addEdge(i, i + 1, 20);
+					graph.addEdge(i, i + 2, 50);
+				}
+				break;
+			case DAG:
+				for (int i = 0; i + 1 < nodes; i++) {
+					graph.addEdge(i, i + 1, 20);
+					for (int k = 0; k < 2; k++) {
+						int target = i + 1 + random.nextInt(Math.min(100, nodes - i - 1));
+						graph.addEdge(i, target, 40 + 20 * k);
+					}
+				}
+				break;
+			case CYCLIC:
+				for (int i = 0; i + 1 < nodes; i++) {
+					graph.addEdge(i, i + 1, 20);
+					graph.addEdge(i + 1, i, 40);
+					graph.addEdge(i, random.nextInt(nodes), 60);
+				}
+				break;
+		}
+		graph.addRoot(0);
+		return graph;
+	}
+}
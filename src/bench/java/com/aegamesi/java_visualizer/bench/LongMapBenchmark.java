@@ -0,0 +1,135 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.model.LongMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Compares {@link LongMap} with the boxed maps the heap used to be kept in, at the size of a big heap: the time to
+ * fill one with entity ids, to look ids up (half of them missing), and to go through it, and the memory it retains.
+ * Ids are spread out the way JDI hands them out, increasing with gaps. Sizes are worked out from the used heap after
+ * a full GC, as in {@link FootprintBenchmark}.
+ * <p>
+ * Usage: {@code LongMapBenchmark [entities] [rounds]}
+ */
+public class LongMapBenchmark {
+	private static final String[] NAMES = {"TreeMap", "HashMap", "LongMap"};
+	private static final Object VALUE = new Object();
+
+	// what's being measured, kept here so it isn't collected, and a sink so the lookups aren't optimized away
+	private static Object kept;
+	private static long sink;
+
+	public static void main(String[] args) {
+		int entities = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		Random random = new Random(42);
+		long[] ids = new long[entities];
+		long id = 1000;
+		for (int i = 0; i < entities; i++) {
+			id += 1 + random.nextInt(16);
+			ids[i] = id;
+		}
+		// every other probe is an id that isn't in the map
+		long[] probes = new long[entities * 2];
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = i % 2 == 0 ? ids[random.nextInt(entities)] : id + 1 + random.nextInt(entities);
+		}
+
+		System.out.println("map        fill ms  lookup ns  iterate ms  retained MB  bytes per entry");
+		for (int round = 1; round <= rounds; round++) {
+			for (int m = 0; m < NAMES.length; m++) {
+				measure(m, ids, probes, round == rounds);
+			}
+		}
+	}
+
+	private static void measure(int map, long[] ids, long[] probes, boolean print) {
+		long start = System.nanoTime();
+		Object filled = fill(map, ids);
+		long fill = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long found = map == 2 ? lookUp((LongMap<?>) filled, probes) : lookUp((Map<?, ?>) filled, probes);
+		long lookup = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long sum = 0;
+		if (map == 2) {
+			for (long key : ((LongMap<?>) filled).keys()) {
+				sum += key;
+			}
+		} else {
+			for (Object key : ((Map<?, ?>) filled).keySet()) {
+				sum += (Long) key;
+			}
+		}
+		long iterate = System.nanoTime() - start;
+		sink += found + sum;
+
+		if (print) {
+			long bytes = retained(() -> fill(map, ids));
+			System.out.printf("%-9s  %7.1f  %9.1f  %10.2f  %11.1f  %15.1f%n", NAMES[map], fill / 1e6,
+					lookup / (double) probes.length, iterate / 1e6, bytes / 1e6, bytes / (double) ids.length);
+		}
+	}
+
+	private static Object fill(int map, long[] ids) {
+		if (map == 2) {
+			LongMap<Object> out = new LongMap<>();
+			for (long id : ids) {
+				out.put(id, VALUE);
+			}
+			return out;
+		}
+		Map<Long, Object> out = map == 0 ? new TreeMap<>() : new HashMap<>();
+		for (long id : ids) {
+			out.put(id, VALUE);
+		}
+		return out;
+	}
+
+	private static long lookUp(LongMap<?> map, long[] probes) {
+		long found = 0;
+		for (long probe : probes) {
+			if (map.get(probe) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	private static long lookUp(Map<?, ?> map, long[] probes) {
+		long found = 0;
+		for (long probe : probes) {
+			if (map.get(probe) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * How much more of the heap is in use while the object made is kept.
+	 */
+	private static long retained(Supplier<Object> make) {
+		long before = used();
+		kept = make.get();
+		long after = used();
+		kept = null;
+		return after - before;
+	}
+
+	private static long used() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
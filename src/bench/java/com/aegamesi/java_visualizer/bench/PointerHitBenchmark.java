@@ -0,0 +1,111 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.Frame;
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.HeapList;
+import com.aegamesi.java_visualizer.model.HeapMap;
+import com.aegamesi.java_visualizer.model.HeapObject;
+import com.aegamesi.java_visualizer.model.Value;
+import com.aegamesi.java_visualizer.ui.VisualizationPanel;
+
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.event.MouseEvent;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * Measures the cost of a mouse move over the visualization, which looks for the pointer under the mouse,
+ * as the number of pointers grows. The mouse moves at random within a viewport scrolled through the heap.
+ * <p>
+ * Usage: {@code PointerHitBenchmark [entities...]}, with synthetic heaps of the given sizes.
+ */
+public class PointerHitBenchmark {
+	private static final int VIEW_WIDTH = 1600;
+	private static final int VIEW_HEIGHT = 1000;
+	private static final int VIEWS = 40;
+	private static final int MOVES_PER_VIEW = 500;
+	private static final int WARMUP = 3;
+
+	public static void main(String[] args) throws Exception {
+		String[] sizes = args.length > 0 ? args : new String[]{"100", "1000", "5000", "20000", "50000"};
+
+		System.out.println("entities  pointers  us/move");
+		for (String size : sizes) {
+			ExecutionTrace trace = HeapRenderBenchmark.generateTrace(Integer.parseInt(size));
+			SwingUtilities.invokeAndWait(() -> {
+				for (int i = 0; i < WARMUP; i++) {
+					measure(trace);
+				}
+				System.out.printf("%8d  %8d  %7.2f%n", trace.heap.size(), countPointers(trace), measure(trace));
+			});
+		}
+	}
+
+	/**
+	 * The average time of a mouse move, in microseconds.
+	 */
+	private static double measure(ExecutionTrace trace) {
+		VisualizationPanel panel = new VisualizationPanel();
+		panel.setHeapRenderer(VisualizationPanel.HeapRenderer.DIRECT);
+		panel.setBackgroundLayout(false);
+		JViewport viewport = new JViewport();
+		viewport.setView(panel);
+		// made displayable by hand when running headless, as in HeapRenderBenchmark
+		panel.addNotify();
+		viewport.setSize(VIEW_WIDTH, VIEW_HEIGHT);
+		panel.setTrace(trace);
+		panel.setSize(panel.getPreferredSize());
+		panel.validate();
+
+		Dimension size = panel.getSize();
+		Random random = new Random(1);
+		long nanos = 0;
+		for (int v = 0; v < VIEWS; v++) {
+			Point position = new Point(
+					Math.max(0, size.width - VIEW_WIDTH) * v / (VIEWS - 1),
+					Math.max(0, size.height - VIEW_HEIGHT) * v / (VIEWS - 1));
+			viewport.setViewPosition(position);
+			long start = System.nanoTime();
+			for (int i = 0; i < MOVES_PER_VIEW; i++) {
+				int x = position.x + random.nextInt(VIEW_WIDTH);
+				int y = position.y + random.nextInt(VIEW_HEIGHT);
+				panel.dispatchEvent(new MouseEvent(panel, MouseEvent.MOUSE_MOVED, 0, 0, x, y, 0, false));
+			}
+			nanos += System.nanoTime() - start;
+		}
+		return nanos / 1000.0 / (VIEWS * MOVES_PER_VIEW);
+	}
+
+	private static int countPointers(ExecutionTrace trace) {
+		int n = 0;
+		for (Frame frame : trace.frames) {
+			n += countReferences(frame.locals.values());
+		}
+		for (HeapEntity e : trace.heap.values()) {
+			if (e instanceof HeapObject) {
+				n += countReferences(((HeapObject) e).fields.values());
+			} else if (e instanceof HeapList) {
+				n += countReferences(((HeapList) e).items);
+			} else if (e instanceof HeapMap) {
+				for (HeapMap.Pair pair : ((HeapMap) e).pairs) {
+					n += (pair.key.getType() == Value.Type.REFERENCE ? 1 : 0) + (pair.val.getType() == Value.Type.REFERENCE ? 1 : 0);
+				}
+			}
+		}
+		return n;
+	}
+
+	private static int countReferences(Collection<Value> values) {
+		int n = 0;
+		for (Value v : values) {
+			if (v.getType() == Value.Type.REFERENCE) {
+				n++;
+			}
+		}
+		return n;
+	}
+}
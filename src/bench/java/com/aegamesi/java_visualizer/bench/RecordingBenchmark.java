@@ -0,0 +1,139 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.HeapObject;
+import com.aegamesi.java_visualizer.model.TraceRecording;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Records the loop of {@link StepBenchmark} to a {@link TraceRecording}, one step at a time, as the plugin does
+ * while recording. Reports how long adding a step takes, how much of the file each step takes up against a full
+ * binary trace, and how long it takes to read back a step picked at random, before and after opening the file again.
+ * Then scrubs as the timeline does, a step at a time back and forth around random steps, and reports how long each
+ * step takes with the recording's cache of decoded steps.
+ * <p>
+ * Checks that a sample of the steps read back as they were recorded.
+ * <p>
+ * Usage: {@code RecordingBenchmark [entities] [steps]}
+ */
+public class RecordingBenchmark {
+	private static final int CHECKS = 50;
+	private static final int READS = 200;
+	// how far each scrub goes back, then forward again
+	private static final int SCRUB = 100;
+	private static final int SCRUBS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int entities = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+		ExecutionTrace first = HeapRenderBenchmark.generateTrace(entities);
+		List<HeapObject> rows = StepBenchmark.rows(first);
+		Path file = Files.createTempFile("recording", ".jvrec");
+		try {
+			// a sample of the steps, kept to compare with what's read back
+			Map<Integer, String> expected = new LinkedHashMap<>();
+			Random random = new Random(42);
+			long[] nanos = new long[steps];
+			try (TraceRecording recording = TraceRecording.create(file)) {
+				ExecutionTrace trace = first;
+				for (int i = 0; i < steps; i++) {
+					if (i > 0) {
+						trace = StepBenchmark.step(first, trace, rows, i);
+					}
+					long start = System.nanoTime();
+					recording.append(trace);
+					nanos[i] = System.nanoTime() - start;
+					if (i == steps - 1 || i % TraceRecording.KEYFRAME_INTERVAL == 0 || random.nextInt(steps) < CHECKS) {
+						expected.put(i, canonical(trace));
+					}
+				}
+				check(recording, expected);
+				System.out.printf("%d heap entities, %d steps recorded%n", first.heap.size(), steps);
+				Arrays.sort(nanos);
+				System.out.printf("append: median %.3f ms, slowest %.1f ms%n", nanos[steps / 2] / 1e6,
+						nanos[steps - 1] / 1e6);
+				System.out.printf("file: %.1f MB, %.0f bytes per step (a full trace is %d bytes)%n",
+						recording.length() / 1e6, recording.length() / (double) steps, fullBytes(first));
+				System.out.printf("random read: %s%n", reads(recording, random));
+			}
+			try (TraceRecording reopened = TraceRecording.open(file)) {
+				if (reopened.size() != steps) {
+					throw new AssertionError("reopened recording has " + reopened.size() + " steps");
+				}
+				check(reopened, expected);
+				System.out.printf("random read after reopening: %s%n", reads(reopened, random));
+				System.out.printf("scrubbing a step at a time: %s%n", scrub(reopened, random));
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static void check(TraceRecording recording, Map<Integer, String> expected) throws Exception {
+		for (Map.Entry<Integer, String> e : expected.entrySet()) {
+			if (!canonical(recording.read(e.getKey())).equals(e.getValue())) {
+				throw new AssertionError("step " + e.getKey() + " reads back differently");
+			}
+		}
+	}
+
+	private static String reads(TraceRecording recording, Random random) throws Exception {
+		long[] nanos = new long[READS];
+		for (int i = 0; i < READS; i++) {
+			int step = random.nextInt(recording.size());
+			long start = System.nanoTime();
+			recording.read(step);
+			nanos[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(nanos);
+		return String.format("median %.1f ms, slowest %.1f ms", nanos[READS / 2] / 1e6, nanos[READS - 1] / 1e6);
+	}
+
+	private static String scrub(TraceRecording recording, Random random) throws Exception {
+		long[] nanos = new long[SCRUBS * SCRUB * 2];
+		int n = 0;
+		for (int i = 0; i < SCRUBS; i++) {
+			int from = SCRUB + random.nextInt(recording.size() - SCRUB);
+			for (int k = 0; k < SCRUB * 2; k++) {
+				int step = k < SCRUB ? from - k : from - 2 * SCRUB + k + 1;
+				long start = System.nanoTime();
+				recording.read(step);
+				nanos[n++] = System.nanoTime() - start;
+			}
+		}
+		Arrays.sort(nanos);
+		return String.format("median %.3f ms, 99th percentile %.1f ms, slowest %.1f ms", nanos[n / 2] / 1e6,
+				nanos[n * 99 / 100] / 1e6, nanos[n - 1] / 1e6);
+	}
+
+	/**
+	 * The trace as JSON, with its statics and its heap in id order: steps read back from deltas have the same
+	 * entities, but not necessarily in the same order.
+	 */
+	private static String canonical(ExecutionTrace trace) {
+		ExecutionTrace sorted = new ExecutionTrace();
+		sorted.frames.addAll(trace.frames);
+		long[] ids = trace.heap.keys();
+		Arrays.sort(ids);
+		for (long id : ids) {
+			sorted.heap.put(id, trace.heap.get(id));
+		}
+		return sorted.toJsonString() + trace.statics;
+	}
+
+	private static int fullBytes(ExecutionTrace trace) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		trace.writeBinary(Channels.newChannel(os));
+		return os.size();
+	}
+}
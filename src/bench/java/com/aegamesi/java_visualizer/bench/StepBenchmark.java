@@ -0,0 +1,118 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.Frame;
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.HeapObject;
+import com.aegamesi.java_visualizer.model.Value;
+import com.aegamesi.java_visualizer.ui.VisualizationPanel;
+
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Steps through a loop over the synthetic heap of {@link HeapRenderBenchmark}: each step changes a field of one
+ * row and the loop counter, and shares every other entity with the step before, as the tracer does. Reports the
+ * median time to show a step and paint a viewport-sized frame of it, with each renderer.
+ * <p>
+ * Usage: {@code StepBenchmark [entities] [steps]}.
+ */
+public class StepBenchmark {
+	private static final int VIEW_WIDTH = 1600;
+	private static final int VIEW_HEIGHT = 1000;
+	private static final int WARMUP = 10;
+
+	public static void main(String[] args) throws Exception {
+		int entities = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+		List<ExecutionTrace> trace = loop(HeapRenderBenchmark.generateTrace(entities), steps);
+		System.out.printf("%d heap entities, %d steps%n", trace.get(0).heap.size(), steps);
+		System.out.println("renderer     first ms  step ms");
+		for (VisualizationPanel.HeapRenderer renderer : VisualizationPanel.HeapRenderer.values()) {
+			SwingUtilities.invokeAndWait(() -> System.out.println(measure(trace, renderer)));
+		}
+	}
+
+	/**
+	 * The steps of a loop whose counter goes up by one each step, setting the index of the rows in turn.
+	 */
+	private static List<ExecutionTrace> loop(ExecutionTrace first, int steps) {
+		List<HeapObject> rows = rows(first);
+		List<ExecutionTrace> out = new ArrayList<>();
+		out.add(first);
+		for (int i = 1; i <= steps; i++) {
+			out.add(step(first, out.get(i - 1), rows, i));
+		}
+		return out;
+	}
+
+	static List<HeapObject> rows(ExecutionTrace first) {
+		List<HeapObject> rows = new ArrayList<>();
+		for (HeapEntity e : first.heap.values()) {
+			if ("Row".equals(e.label)) {
+				rows.add((HeapObject) e);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Step {@code i} of the loop, made from the one before it.
+	 */
+	static ExecutionTrace step(ExecutionTrace first, ExecutionTrace previous, List<HeapObject> rows, int i) {
+		ExecutionTrace next = previous.copy();
+		HeapObject row = (HeapObject) next.heap.get(rows.get(i % rows.size()).id);
+		HeapObject changed = new HeapObject();
+		changed.id = row.id;
+		changed.type = row.type;
+		changed.label = row.label;
+		changed.fields.putAll(row.fields);
+		changed.fields.put("index", number(-i));
+		next.heap.put(changed.id, changed);
+
+		Frame frame = new Frame();
+		frame.name = "main:" + (i % 2 == 0 ? 4 : 5);
+		frame.locals.putAll(first.frames.get(0).locals);
+		frame.locals.put("i", number(i));
+		next.frames.set(0, frame);
+		return next;
+	}
+
+	private static String measure(List<ExecutionTrace> trace, VisualizationPanel.HeapRenderer renderer) {
+		VisualizationPanel panel = new VisualizationPanel();
+		panel.setHeapRenderer(renderer);
+		panel.setBackgroundLayout(false);
+		JViewport viewport = new JViewport();
+		viewport.setView(panel);
+		panel.addNotify();
+		viewport.setSize(VIEW_WIDTH, VIEW_HEIGHT);
+		BufferedImage image = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+		long[] nanos = new long[trace.size()];
+		for (int i = 0; i < trace.size(); i++) {
+			long start = System.nanoTime();
+			panel.setTrace(trace.get(i));
+			panel.setSize(panel.getPreferredSize());
+			panel.validate();
+			Graphics2D g = image.createGraphics();
+			g.setClip(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+			panel.paint(g);
+			g.dispose();
+			nanos[i] = System.nanoTime() - start;
+		}
+		long[] steps = Arrays.copyOfRange(nanos, Math.min(WARMUP + 1, nanos.length), nanos.length);
+		Arrays.sort(steps);
+		long median = steps.length > 0 ? steps[steps.length / 2] : 0;
+		return String.format("%-12s %8d  %7.1f", renderer, nanos[0] / 1_000_000, median / 1_000_000.0);
+	}
+
+	private static Value number(long n) {
+		return Value.ofLong(n);
+	}
+}
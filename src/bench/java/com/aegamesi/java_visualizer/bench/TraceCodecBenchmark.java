@@ -0,0 +1,273 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.Tester;
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.Frame;
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.HeapList;
+import com.aegamesi.java_visualizer.model.HeapPrimitive;
+import com.aegamesi.java_visualizer.model.HeapPrimitiveList;
+import com.aegamesi.java_visualizer.model.HeapStub;
+import com.aegamesi.java_visualizer.model.Value;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compares the ways a trace can be saved: JSON through a tree ({@link ExecutionTrace#toJsonString()}), JSON
+ * streamed ({@link ExecutionTrace#writeJson}) and the binary format. Reports the size of the sample trace and the
+ * synthetic heap of {@link HeapRenderBenchmark}, the time to write and read them back, and how much reading them
+ * allocates.
+ * <p>
+ * Before measuring, checks that traces come back as they were, including the edge cases the tree-based JSON
+ * doesn't cover (statics, internal frames, primitive arrays, odd values), that either kind of JSON reads the other,
+ * and that a cut-off binary trace is refused.
+ * <p>
+ * Usage: {@code TraceCodecBenchmark [entities] [rounds]}
+ */
+public class TraceCodecBenchmark {
+	private interface Format {
+		byte[] write(ExecutionTrace trace) throws IOException;
+
+		ExecutionTrace read(byte[] bytes) throws IOException;
+	}
+
+	private static final String[] NAMES = {"json", "stream", "binary"};
+	private static final Format[] FORMATS = {
+			new Format() {
+				public byte[] write(ExecutionTrace trace) {
+					return trace.toJsonString().getBytes(StandardCharsets.UTF_8);
+				}
+
+				public ExecutionTrace read(byte[] bytes) {
+					return ExecutionTrace.fromJsonString(new String(bytes, StandardCharsets.UTF_8));
+				}
+			},
+			new Format() {
+				public byte[] write(ExecutionTrace trace) throws IOException {
+					return toStream(trace);
+				}
+
+				public ExecutionTrace read(byte[] bytes) throws IOException {
+					return fromStream(bytes);
+				}
+			},
+			new Format() {
+				public byte[] write(ExecutionTrace trace) throws IOException {
+					return toBinary(trace);
+				}
+
+				public ExecutionTrace read(byte[] bytes) throws IOException {
+					return fromBinary(bytes);
+				}
+			}
+	};
+
+	public static void main(String[] args) throws Exception {
+		int entities = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		ExecutionTrace sample = Tester.makeTrace(null);
+		ExecutionTrace synthetic = HeapRenderBenchmark.generateTrace(entities);
+		ExecutionTrace edgeCases = edgeCases();
+		check("sample", sample);
+		check("synthetic", synthetic);
+		check("edge cases", edgeCases);
+		checkJson("sample", sample, true);
+		checkJson("synthetic", synthetic, true);
+		checkJson("edge cases", edgeCases, false);
+		checkTruncated(synthetic);
+
+		System.out.println("trace        format    bytes  write ms  read ms  read alloc MB");
+		for (int round = 1; round <= rounds; round++) {
+			boolean last = round == rounds;
+			for (int f = 0; f < FORMATS.length; f++) {
+				measure("sample", sample, f, last);
+				measure("synthetic", synthetic, f, last);
+			}
+		}
+	}
+
+	private static void measure(String name, ExecutionTrace trace, int format, boolean print) throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long start = System.nanoTime();
+		byte[] bytes = FORMATS[format].write(trace);
+		long write = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		start = System.nanoTime();
+		FORMATS[format].read(bytes);
+		long read = System.nanoTime() - start;
+		allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+		if (print) {
+			System.out.printf("%-12s %-6s %9d  %8.1f  %7.1f  %13.1f%n", name, NAMES[format], bytes.length,
+					write / 1e6, read / 1e6, allocated / 1e6);
+		}
+	}
+
+	/**
+	 * Streams a trace to JSON and back, and reads it with the tree-based reader too (and the other way round, if
+	 * the trace has nothing the tree-based writer can't write); fails if anything differs.
+	 */
+	private static void checkJson(String name, ExecutionTrace trace, boolean both) throws IOException {
+		byte[] streamed = toStream(trace);
+		String expected = trace.toJsonString();
+		ExecutionTrace back = fromStream(streamed);
+		require(back.toJsonString().equals(expected), name + ": streamed JSON differs");
+		for (HeapEntity e : trace.heap.values()) {
+			if (e instanceof HeapList) {
+				require(((HeapList) back.heap.get(e.id)).items.equals(((HeapList) e).items),
+						name + ": streamed items of " + e.id + " differ");
+			}
+		}
+		if (both) {
+			String text = new String(streamed, StandardCharsets.UTF_8);
+			require(ExecutionTrace.fromJsonString(text).toJsonString().equals(expected),
+					name + ": streamed JSON reads differently as a tree");
+			require(fromStream(expected.getBytes(StandardCharsets.UTF_8)).toJsonString().equals(expected),
+					name + ": JSON from a tree streams back differently");
+		}
+		System.out.printf("%s: %d entities round-trip through streamed JSON%n", name, trace.heap.size());
+	}
+
+	/**
+	 * Writes a trace and reads it back, and fails if anything differs.
+	 */
+	private static void check(String name, ExecutionTrace trace) throws IOException {
+		ExecutionTrace back = fromBinary(toBinary(trace));
+		require(back.toJsonString().equals(trace.toJsonString()), name + ": JSON differs");
+		require(back.statics.equals(trace.statics), name + ": statics differ");
+		require(back.frames.size() == trace.frames.size(), name + ": frames differ");
+		for (int i = 0; i < trace.frames.size(); i++) {
+			require(back.frames.get(i).internal == trace.frames.get(i).internal, name + ": frame " + i + " differs");
+		}
+		for (HeapEntity e : trace.heap.values()) {
+			HeapEntity b = back.heap.get(e.id);
+			require(b != null && b.getClass() == e.getClass(), name + ": entity " + e.id + " differs");
+			if (e instanceof HeapPrimitiveList) {
+				require(((HeapPrimitiveList) b).getElementType() == ((HeapPrimitiveList) e).getElementType(),
+						name + ": element type of " + e.id + " differs");
+			}
+			if (e instanceof HeapList) {
+				// the JSON of doubles is lossy, so compare the values themselves too
+				require(((HeapList) b).items.equals(((HeapList) e).items), name + ": items of " + e.id + " differ");
+			}
+		}
+		System.out.printf("%s: %d entities round-trip through binary%n", name, trace.heap.size());
+	}
+
+	/**
+	 * Every prefix of a trace has to be refused, rather than read as a smaller trace.
+	 */
+	private static void checkTruncated(ExecutionTrace trace) throws IOException {
+		byte[] full = toBinary(trace);
+		int step = Math.max(1, full.length / 500);
+		for (int length = 0; length < full.length; length += step) {
+			try {
+				fromBinary(Arrays.copyOf(full, length));
+				throw new AssertionError("truncated trace of " + length + " bytes was read");
+			} catch (EOFException expected) {
+				// as it should
+			}
+		}
+		System.out.println("truncated traces are refused");
+	}
+
+	private static ExecutionTrace edgeCases() {
+		ExecutionTrace trace = new ExecutionTrace();
+		Frame top = new Frame();
+		top.name = "helper:12";
+		top.internal = true;
+		top.locals.put("s", string(null));
+		top.locals.put("unicode", string("h\u00e9llo \u2603 \ud83d\ude00"));
+		top.locals.put("empty", string(""));
+		Frame bottom = new Frame();
+		bottom.name = "main:3";
+		bottom.locals.put("min", number(Long.MIN_VALUE));
+		bottom.locals.put("max", number(Long.MAX_VALUE));
+		bottom.locals.put("ref", reference(Long.MAX_VALUE));
+		trace.frames.add(top);
+		trace.frames.add(bottom);
+		trace.statics.put("Main.count", number(-1));
+		trace.statics.put("Main.name", string("static"));
+
+		Value.Type[] types = {Value.Type.LONG, Value.Type.DOUBLE, Value.Type.BOOLEAN, Value.Type.CHAR};
+		long id = -3;
+		for (Value.Type type : types) {
+			HeapPrimitiveList list = new HeapPrimitiveList(type, 4);
+			list.setLong(0, Long.MIN_VALUE);
+			list.setDouble(1, Double.NaN);
+			list.setDouble(2, -0.0);
+			list.setChar(3, '\uffff');
+			list.omittedOffset = 2;
+			list.omittedCount = 1000;
+			add(trace, list, HeapEntity.Type.LIST, id++, type.name().toLowerCase() + "[]");
+		}
+		HeapPrimitive primitive = new HeapPrimitive();
+		primitive.value = doubleValue(Double.NEGATIVE_INFINITY);
+		add(trace, primitive, HeapEntity.Type.PRIMITIVE, id++, "Double");
+		add(trace, new HeapStub(), HeapEntity.Type.STUB, Long.MAX_VALUE, null);
+		return trace;
+	}
+
+	private static byte[] toStream(ExecutionTrace trace) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+		trace.writeJson(writer);
+		writer.flush();
+		return os.toByteArray();
+	}
+
+	private static ExecutionTrace fromStream(byte[] bytes) throws IOException {
+		return ExecutionTrace.readJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+	}
+
+	private static byte[] toBinary(ExecutionTrace trace) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		trace.writeBinary(Channels.newChannel(os));
+		return os.toByteArray();
+	}
+
+	private static ExecutionTrace fromBinary(byte[] bytes) throws IOException {
+		return ExecutionTrace.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+	}
+
+	private static void require(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static void add(ExecutionTrace trace, HeapEntity e, HeapEntity.Type type, long id, String label) {
+		e.id = id;
+		e.type = type;
+		e.label = label;
+		trace.heap.put(id, e);
+	}
+
+	private static Value string(String s) {
+		return Value.ofString(s);
+	}
+
+	private static Value number(long n) {
+		return Value.ofLong(n);
+	}
+
+	private static Value doubleValue(double d) {
+		return Value.ofDouble(d);
+	}
+
+	private static Value reference(long id) {
+		return Value.ofReference(id);
+	}
+}
@@ -0,0 +1,35 @@
+package com.aegamesi.java_visualizer.bench;
+
+import com.aegamesi.java_visualizer.backend.Tracer;
+import com.aegamesi.java_visualizer.backend.TracerOptions;
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+
+/**
+ * Measures JDWP round-trips and wall-clock time per step for converting a heap of user objects,
+ * with and without batched field reads.
+ * <p>
+ * Usage: {@code TracerBenchmark [objects] [steps]}
+ */
+public class TracerBenchmark {
+	public static void main(String[] args) throws Exception {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		System.out.println("mode     step  entities      ms  stats");
+		// the debuggee allocates a fresh graph for each step, so no step profits from JDI's mirror caches
+		Debuggee.run("debuggee.HeapDebuggee", objects + " " + steps, (step, thread) -> {
+			TracerOptions options = new TracerOptions();
+			options.batchFieldReads = step % 2 == 1;
+			Tracer tracer = new Tracer(thread, options);
+			try {
+				long start = System.nanoTime();
+				ExecutionTrace trace = tracer.getModel();
+				long ms = (System.nanoTime() - start) / 1_000_000;
+				System.out.printf("%-8s %4d  %8d  %6d  %s%n", options.batchFieldReads ? "batched" : "serial",
+						step, trace.heap.size(), ms, tracer.getStats());
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+}
@@ -0,0 +1,61 @@
+package debuggee;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Debuggee for the collection benchmark: stops in {@link #pause} twice for each collection type,
+ * with a freshly filled collection each time.
+ */
+public class CollectionDebuggee {
+	public static void main(String[] args) {
+		int elements = Integer.parseInt(args[0]);
+		collection("ArrayList", elements, ArrayList::new);
+		collection("LinkedList", elements, LinkedList::new);
+		collection("ArrayDeque", elements, ArrayDeque::new);
+		collection("HashSet", elements, HashSet::new);
+		collection("LinkedHashSet", elements, LinkedHashSet::new);
+		collection("TreeSet", elements, TreeSet::new);
+		// no field-level reader, so always read through iterators
+		collection("CopyOnWriteArrayList", elements, CopyOnWriteArrayList::new);
+		map("HashMap", elements, HashMap::new);
+		map("LinkedHashMap", elements, LinkedHashMap::new);
+		map("TreeMap", elements, TreeMap::new);
+		map("ConcurrentHashMap", elements, ConcurrentHashMap::new);
+	}
+
+	private static void collection(String type, int elements, Supplier<Collection<String>> factory) {
+		for (int rep = 0; rep < 2; rep++) {
+			Collection<String> c = factory.get();
+			for (int i = 0; i < elements; i++) {
+				c.add("e" + rep + "/" + i);
+			}
+			pause(type, c);
+		}
+	}
+
+	private static void map(String type, int elements, Supplier<Map<String, Integer>> factory) {
+		for (int rep = 0; rep < 2; rep++) {
+			Map<String, Integer> m = factory.get();
+			for (int i = 0; i < elements; i++) {
+				m.put("k" + rep + "/" + i, i);
+			}
+			pause(type, m);
+		}
+	}
+
+	private static void pause(String type, Object collection) {
+	}
+}
@@ -0,0 +1,64 @@
+package debuggee;
+
+/**
+ * Debuggee for the tracer benchmarks: builds a fresh graph of user objects for every step,
+ * then stops in {@link #pause}.
+ */
+public class HeapDebuggee {
+	static class Node {
+		int value;
+		String label;
+		Integer boxed;
+		Node next;
+		Tree tree;
+	}
+
+	static class Tree {
+		Tree left;
+		Tree right;
+		double weight;
+	}
+
+	public static void main(String[] args) {
+		int objects = Integer.parseInt(args[0]);
+		int steps = Integer.parseInt(args[1]);
+		for (int step = 0; step < steps; step++) {
+			Node[] nodes = build(objects, step);
+			int[] histogram = new int[objects * 20];
+			for (int i = 0; i < histogram.length; i++) {
+				histogram[i] = i % 97;
+			}
+			pause(nodes, histogram);
+		}
+	}
+
+	private static Node[] build(int objects, int step) {
+		// about half of the objects are nodes, the rest are trees hanging off every eighth node
+		Node[] nodes = new Node[objects / 2];
+		Node head = null;
+		for (int i = 0; i < nodes.length; i++) {
+			Node n = new Node();
+			n.value = i;
+			n.label = "node " + step + "/" + i;
+			n.boxed = i * 1000;
+			n.next = head;
+			n.tree = i % 8 == 0 ? tree(2) : null;
+			nodes[i] = n;
+			head = n;
+		}
+		return nodes;
+	}
+
+	private static Tree tree(int depth) {
+		Tree t = new Tree();
+		t.weight = depth;
+		if (depth > 0) {
+			t.left = tree(depth - 1);
+			t.right = tree(depth - 1);
+		}
+		return t;
+	}
+
+	private static void pause(Node[] nodes, int[] histogram) {
+	}
+}
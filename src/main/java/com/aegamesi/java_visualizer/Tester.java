@@ -1,17 +1,142 @@
 package com.aegamesi.java_visualizer;
 
 import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.TraceRecording;
+import com.aegamesi.java_visualizer.ui.SvgGraphics;
 import com.aegamesi.java_visualizer.ui.VisualizationPanel;
 
+import javax.imageio.ImageIO;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
-import java.io.ByteArrayOutputStream;
+import javax.swing.SwingUtilities;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * Shows a trace saved as JSON, in the binary format if the file name ends in {@code .jvt}, or the last step of a
+ * recording if it ends in {@code .jvrec}; by default the sample trace.
+ * <p>
+ * With {@code --render}, runs headless instead: each trace is laid out and painted to an image in the given
+ * directory, named after the trace, and how long it took to read, lay out, paint and write is reported. Every step
+ * of a recording is rendered, each highlighting what changed since the one before, unless {@code --step} picks one
+ * (counting from 1, as the timeline does). {@code --repeat} lays out and paints each trace that many times, each
+ * time on a new panel but the last, and reports the median, for timings steady enough to compare between builds.
+ * <p>
+ * Usage: {@code Tester [--direct] [trace]} or {@code Tester --render <dir> [--format png|svg] [--direct]
+ * [--scale <s>] [--step <n>] [--repeat <n>] [trace...]}, where {@code --direct} paints the heap with the direct
+ * renderer.
+ */
 public class Tester {
+	private static final String USAGE = "Usage: Tester [--direct] [trace]\n"
+			+ "       Tester --render <dir> [--format png|svg] [--direct] [--scale <s>] [--step <n>] [--repeat <n>]"
+			+ " [trace...]";
+	// the most pixels a PNG is painted with, a gigabyte's worth
+	private static final long MAX_PIXELS = 1L << 28;
+
+	private boolean direct;
+	private Path renderTo;
+	private boolean svg;
+	private double scale = 1;
+	private int step = -1;
+	private int repeat = 1;
+	private final List<String> paths = new ArrayList<>();
+
 	public static void main(String[] args) throws Exception {
-		ExecutionTrace trace = makeTrace();
+		Tester tester = new Tester();
+		try {
+			tester.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+
+		if (tester.renderTo == null) {
+			tester.show();
+			return;
+		}
+		// before anything touches AWT, which decides whether it's headless only once
+		System.setProperty("java.awt.headless", "true");
+		System.exit(tester.renderAll() ? 0 : 1);
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			switch (arg) {
+				case "--direct":
+					direct = true;
+					break;
+				case "--render":
+					renderTo = Paths.get(value(args, ++i, arg));
+					break;
+				case "--format":
+					String format = value(args, ++i, arg);
+					if (!format.equals("png") && !format.equals("svg")) {
+						throw new IllegalArgumentException("Unknown format " + format);
+					}
+					svg = format.equals("svg");
+					break;
+				case "--scale":
+					scale = Double.parseDouble(value(args, ++i, arg));
+					if (!(scale > 0)) {
+						throw new IllegalArgumentException("Scale must be more than 0");
+					}
+					break;
+				case "--step":
+					step = Integer.parseInt(value(args, ++i, arg)) - 1;
+					if (step < 0) {
+						throw new IllegalArgumentException("Steps count from 1");
+					}
+					break;
+				case "--repeat":
+					repeat = Integer.parseInt(value(args, ++i, arg));
+					if (repeat < 1) {
+						throw new IllegalArgumentException("Must repeat at least once");
+					}
+					break;
+				default:
+					if (arg.startsWith("--")) {
+						throw new IllegalArgumentException("Unknown option " + arg);
+					}
+					paths.add(arg);
+			}
+		}
+		if (renderTo == null && paths.size() > 1) {
+			throw new IllegalArgumentException("Only one trace can be shown at a time");
+		}
+	}
+
+	private static String value(String[] args, int i, String option) {
+		if (i >= args.length) {
+			throw new IllegalArgumentException(option + " needs a value");
+		}
+		return args[i];
+	}
+
+	private void show() throws Exception {
+		ExecutionTrace trace = makeTrace(paths.isEmpty() ? null : paths.get(0));
 		VisualizationPanel panel = new VisualizationPanel();
+		if (direct) {
+			panel.setHeapRenderer(VisualizationPanel.HeapRenderer.DIRECT);
+		}
 		panel.setTrace(trace);
 
 		JScrollPane scrollPane = new JScrollPane(panel);
@@ -23,15 +148,216 @@ public class Tester {
 		f.pack();
 	}
 
-	private static ExecutionTrace makeTrace() throws Exception {
-		InputStream is = Tester.class.getResourceAsStream("/sample_trace.json");
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
-		byte[] buf = new byte[1024];
-		int len;
-		while ((len = is.read(buf)) > 0) {
-			os.write(buf, 0, len);
+	/**
+	 * Renders every trace asked for, carrying on past any that fail. Returns whether they all succeeded.
+	 */
+	private boolean renderAll() throws Exception {
+		Files.createDirectories(renderTo);
+		List<String> inputs = paths.isEmpty() ? Arrays.asList((String) null) : paths;
+		boolean ok = true;
+		for (String path : inputs) {
+			try {
+				if (path != null && path.endsWith(".jvrec")) {
+					renderRecording(path);
+				} else {
+					long start = System.nanoTime();
+					ExecutionTrace trace = makeTrace(path);
+					long parse = System.nanoTime() - start;
+					render(newPanel(), trace, name(path), parse);
+				}
+			} catch (IOException | RuntimeException e) {
+				System.err.println((path != null ? path : "sample trace") + ": " + e);
+				ok = false;
+			}
+		}
+		return ok;
+	}
+
+	private void renderRecording(String path) throws Exception {
+		try (TraceRecording recording = TraceRecording.open(Paths.get(path))) {
+			if (step >= recording.size()) {
+				throw new IllegalArgumentException("Recording has only " + recording.size() + " steps");
+			}
+			// one panel for every step, as in the timeline, so each shows what changed since the last
+			VisualizationPanel panel = newPanel();
+			int first = step >= 0 ? step : 0;
+			int last = step >= 0 ? step : recording.size() - 1;
+			for (int i = first; i <= last; i++) {
+				long start = System.nanoTime();
+				ExecutionTrace trace = recording.read(i);
+				long parse = System.nanoTime() - start;
+				render(panel, trace, name(path) + "-" + (i + 1), parse);
+			}
+		}
+	}
+
+	private VisualizationPanel newPanel() throws Exception {
+		VisualizationPanel[] panel = new VisualizationPanel[1];
+		onEdt(() -> {
+			VisualizationPanel p = new VisualizationPanel();
+			p.setBackgroundLayout(false);
+			p.setTileCaching(false);
+			if (direct) {
+				p.setHeapRenderer(VisualizationPanel.HeapRenderer.DIRECT);
+			}
+			p.setScale(scale);
+			// laid out only once it's displayable, which needs no window
+			p.addNotify();
+			panel[0] = p;
+		});
+		return panel[0];
+	}
+
+	/**
+	 * Lays out and paints a trace, as many times as asked, writes out the last painting and reports how long each
+	 * part took.
+	 */
+	private void render(VisualizationPanel panel, ExecutionTrace trace, String name, long parse) throws Exception {
+		Path out = renderTo.resolve(name + (svg ? ".svg" : ".png"));
+		long[] layouts = new long[repeat];
+		long[] paints = new long[repeat];
+		long[] write = new long[1];
+		Dimension[] size = new Dimension[1];
+		for (int i = 0; i < repeat; i++) {
+			boolean last = i == repeat - 1;
+			VisualizationPanel p = last ? panel : newPanel();
+			int run = i;
+			onEdt(() -> {
+				long start = System.nanoTime();
+				p.setTrace(trace);
+				size[0] = p.getPreferredSize();
+				p.setSize(size[0]);
+				p.validate();
+				layouts[run] = System.nanoTime() - start;
+
+				if (svg) {
+					paints[run] = paintSvg(p, size[0], last ? out : null, write);
+				} else {
+					paints[run] = paintPng(p, size[0], last ? out : null, write);
+				}
+			});
+		}
+		System.out.printf("%s: %d entities, %dx%d, parse %.1f ms, layout %.1f ms, paint %.1f ms, write %.1f ms%n",
+				out.getFileName(), trace.heap.size(), size[0].width, size[0].height, parse / 1e6,
+				median(layouts) / 1e6, median(paints) / 1e6, write[0] / 1e6);
+	}
+
+	/**
+	 * Paints to an image, and writes it out if there's somewhere to write it. Returns how long painting took.
+	 */
+	private static long paintPng(VisualizationPanel panel, Dimension size, Path out, long[] write) {
+		if ((long) size.width * size.height > MAX_PIXELS) {
+			throw new IllegalArgumentException(String.format("%dx%d is too big for a PNG; use --scale to shrink it,"
+					+ " or --format svg", size.width, size.height));
+		}
+		BufferedImage image = new BufferedImage(Math.max(1, size.width), Math.max(1, size.height),
+				BufferedImage.TYPE_INT_RGB);
+		long start = System.nanoTime();
+		Graphics2D g = image.createGraphics();
+		panel.paint(g);
+		g.dispose();
+		long paint = System.nanoTime() - start;
+		if (out != null) {
+			start = System.nanoTime();
+			try {
+				ImageIO.write(image, "png", out.toFile());
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			write[0] = System.nanoTime() - start;
+		}
+		return paint;
+	}
+
+	/**
+	 * Paints to an SVG document, written out as it's painted if there's somewhere to write it, so the time taken
+	 * to write it is mostly part of painting. Returns how long painting took.
+	 */
+	private static long paintSvg(VisualizationPanel panel, Dimension size, Path out, long[] write) {
+		try (Writer writer = out != null ? Files.newBufferedWriter(out, StandardCharsets.UTF_8) : new NullWriter()) {
+			long start = System.nanoTime();
+			SvgGraphics g = new SvgGraphics(writer, size.width, size.height);
+			panel.paint(g);
+			long paint = System.nanoTime() - start;
+			start = System.nanoTime();
+			g.finish();
+			if (out != null) {
+				write[0] = System.nanoTime() - start;
+			}
+			return paint;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static long median(long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	/**
+	 * The name of the trace file, without its extension.
+	 */
+	private static String name(String path) {
+		if (path == null) {
+			return "sample_trace";
+		}
+		String name = Paths.get(path).getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	private static void onEdt(Runnable r) throws Exception {
+		try {
+			SwingUtilities.invokeAndWait(r);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	public static ExecutionTrace makeTrace(String path) throws Exception {
+		if (path != null && path.endsWith(".jvt")) {
+			try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+				return ExecutionTrace.readBinary(channel);
+			}
+		}
+		if (path != null && path.endsWith(".jvrec")) {
+			try (TraceRecording recording = TraceRecording.open(Paths.get(path))) {
+				if (recording.size() == 0) {
+					throw new IOException("Recording has no steps");
+				}
+				return recording.read(recording.size() - 1);
+			}
+		}
+		InputStream is = path != null ? new FileInputStream(path) : Tester.class.getResourceAsStream("/sample_trace.json");
+		try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+			return ExecutionTrace.readJson(reader);
+		}
+	}
+
+	/**
+	 * Throws away what's written to it, for paintings that are only timed.
+	 */
+	private static class NullWriter extends Writer {
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+		}
+
+		@Override
+		public Writer append(CharSequence csq) {
+			return this;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
 		}
-		String json = new String(os.toByteArray());
-		return ExecutionTrace.fromJsonString(json);
 	}
 }
@@ -0,0 +1,59 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ArrayReference;
+import com.sun.jdi.IntegerValue;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a {@code java.util.ArrayDeque} straight from its circular buffer.
+ */
+class ArrayDequeReader implements CollectionReader {
+	@Override
+	public boolean isMap() {
+		return false;
+	}
+
+	@Override
+	public boolean canReadTail() {
+		return true;
+	}
+
+	@Override
+	public int size(VmReader vm, ObjectReference obj) {
+		Value[] fields = vm.readFields(obj, "elements", "head", "tail");
+		return size(vm, fields);
+	}
+
+	@Override
+	public List<Value> read(VmReader vm, ObjectReference obj, int from, int count) {
+		Value[] fields = vm.readFields(obj, "elements", "head", "tail");
+		ArrayReference elements = (ArrayReference) fields[0];
+		int head = ((IntegerValue) fields[1]).value();
+		count = Math.min(count, size(vm, fields) - from);
+		List<Value> out = new ArrayList<>();
+		if (count <= 0) {
+			return out;
+		}
+
+		// the range may wrap around the end of the buffer
+		int length = vm.length(elements);
+		int start = (head + from) % length;
+		int first = Math.min(count, length - start);
+		out.addAll(Arrays.asList(vm.readArrayValues(elements, start, first)));
+		out.addAll(Arrays.asList(vm.readArrayValues(elements, 0, count - first)));
+		return out;
+	}
+
+	private static int size(VmReader vm, Value[] fields) {
+		int length = vm.length((ArrayReference) fields[0]);
+		int head = ((IntegerValue) fields[1]).value();
+		int tail = ((IntegerValue) fields[2]).value();
+		// the buffer always keeps a free slot, so head == tail means empty
+		return length == 0 ? 0 : Math.floorMod(tail - head, length);
+	}
+}
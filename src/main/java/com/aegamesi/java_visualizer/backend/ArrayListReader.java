@@ -0,0 +1,41 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ArrayReference;
+import com.sun.jdi.IntegerValue;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a {@code java.util.ArrayList} straight from its backing array.
+ */
+class ArrayListReader implements CollectionReader {
+	@Override
+	public boolean isMap() {
+		return false;
+	}
+
+	@Override
+	public boolean canReadTail() {
+		return true;
+	}
+
+	@Override
+	public int size(VmReader vm, ObjectReference obj) {
+		return vm.readIntField(obj, "size");
+	}
+
+	@Override
+	public List<Value> read(VmReader vm, ObjectReference obj, int from, int count) {
+		Value[] fields = vm.readFields(obj, "elementData", "size");
+		int size = ((IntegerValue) fields[1]).value();
+		count = Math.min(count, size - from);
+		if (count <= 0) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(vm.readArrayValues((ArrayReference) fields[0], from, count));
+	}
+}
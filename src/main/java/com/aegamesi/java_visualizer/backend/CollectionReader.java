@@ -0,0 +1,31 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.List;
+
+/**
+ * Reads the contents of a collection or map in the suspended VM.
+ * Readers are stateless; see {@link CollectionReaders} for how one is chosen.
+ */
+interface CollectionReader {
+	/**
+	 * Whether this reads maps. The elements of a map are its entries, each given as its key followed by its value.
+	 */
+	boolean isMap();
+
+	int size(VmReader vm, ObjectReference obj);
+
+	/**
+	 * Reads elements [from, from + count), or fewer if the collection ends first.
+	 */
+	List<Value> read(VmReader vm, ObjectReference obj, int from, int count);
+
+	/**
+	 * Whether elements near the end can be read without walking past all of the ones before them.
+	 */
+	default boolean canReadTail() {
+		return false;
+	}
+}
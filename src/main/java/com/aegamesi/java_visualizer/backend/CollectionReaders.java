@@ -0,0 +1,40 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ReferenceType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The registry of field-level {@link CollectionReader}s, which read JDK collections straight from their
+ * internal fields without invoking any methods in the VM. Readers are looked up by exact type name, since
+ * subclasses may store their elements differently; anything else falls back to {@link IteratorReader}.
+ */
+class CollectionReaders {
+	static final CollectionReaders DEFAULT = new CollectionReaders();
+
+	private final Map<String, CollectionReader> readers = new HashMap<>();
+
+	CollectionReaders() {
+		register("java.util.ArrayList", new ArrayListReader());
+		register("java.util.LinkedList", new LinkedListReader());
+		register("java.util.ArrayDeque", new ArrayDequeReader());
+		register("java.util.HashMap", new HashMapReader());
+		register("java.util.LinkedHashMap", new LinkedHashMapReader());
+		register("java.util.TreeMap", new TreeMapReader());
+		register("java.util.HashSet", new KeySetReader(this, "map"));
+		register("java.util.LinkedHashSet", new KeySetReader(this, "map"));
+		register("java.util.TreeSet", new KeySetReader(this, "m"));
+	}
+
+	void register(String typeName, CollectionReader reader) {
+		readers.put(typeName, reader);
+	}
+
+	/**
+	 * The field-level reader for objects of exactly this type, or null if there is none.
+	 */
+	CollectionReader get(ReferenceType type) {
+		return readers.get(type.name());
+	}
+}
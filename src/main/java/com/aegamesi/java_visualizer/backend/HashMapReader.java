@@ -0,0 +1,54 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ArrayReference;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a {@code java.util.HashMap} by walking its bucket table, in the same order as its iterators.
+ * Tree bins keep their nodes linked through {@code next} as well, so they need no special handling.
+ */
+class HashMapReader implements CollectionReader {
+	@Override
+	public boolean isMap() {
+		return true;
+	}
+
+	@Override
+	public int size(VmReader vm, ObjectReference obj) {
+		return vm.readIntField(obj, "size");
+	}
+
+	@Override
+	public List<Value> read(VmReader vm, ObjectReference obj, int from, int count) {
+		List<Value> out = new ArrayList<>();
+		ArrayReference table = (ArrayReference) vm.readFields(obj, "table")[0];
+		if (table == null || count <= 0) {
+			return out;
+		}
+
+		int length = vm.length(table);
+		int chunkSize = Math.max(1, vm.options.arrayChunkSize);
+		int index = 0;
+		for (int offset = 0; offset < length; offset += chunkSize) {
+			for (Value bucket : vm.readArrayValues(table, offset, Math.min(chunkSize, length - offset))) {
+				ObjectReference node = (ObjectReference) bucket;
+				while (node != null) {
+					Value[] fields = vm.readFields(node, "key", "value", "next");
+					if (index++ >= from) {
+						out.add(fields[0]);
+						out.add(fields[1]);
+						if (out.size() == count * 2) {
+							return out;
+						}
+					}
+					node = (ObjectReference) fields[2];
+				}
+			}
+		}
+		return out;
+	}
+}
@@ -0,0 +1,65 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.IntegerValue;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads any collection or map by calling its methods in the VM. Every element costs several invocations,
+ * each of which resumes the suspended thread, so this is only the fallback for types without a field-level reader.
+ */
+class IteratorReader implements CollectionReader {
+	static final IteratorReader LIST = new IteratorReader(false, true);
+	static final IteratorReader SET = new IteratorReader(false, false);
+	static final IteratorReader MAP = new IteratorReader(true, false);
+
+	private final boolean map;
+	private final boolean list;
+
+	private IteratorReader(boolean map, boolean list) {
+		this.map = map;
+		this.list = list;
+	}
+
+	@Override
+	public boolean isMap() {
+		return map;
+	}
+
+	@Override
+	public boolean canReadTail() {
+		// lists can be entered anywhere with listIterator(index)
+		return list;
+	}
+
+	@Override
+	public int size(VmReader vm, ObjectReference obj) {
+		Value size = vm.invoke(obj, "size");
+		return size instanceof IntegerValue ? ((IntegerValue) size).value() : 0;
+	}
+
+	@Override
+	public List<Value> read(VmReader vm, ObjectReference obj, int from, int count) {
+		List<Value> out = new ArrayList<>();
+		if (count <= 0) {
+			return out;
+		}
+		ObjectReference collection = map ? (ObjectReference) vm.invoke(obj, "entrySet") : obj;
+		Iterator<Value> i = TracerUtils.getIterator(vm.thread, collection, list, from, vm.stats);
+		for (int n = 0; n < count && i.hasNext(); n++) {
+			Value v = i.next();
+			if (map) {
+				ObjectReference entry = (ObjectReference) v;
+				out.add(vm.invoke(entry, "getKey"));
+				out.add(vm.invoke(entry, "getValue"));
+			} else {
+				out.add(v);
+			}
+		}
+		return out;
+	}
+}
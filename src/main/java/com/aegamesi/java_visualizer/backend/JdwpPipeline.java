@@ -0,0 +1,75 @@
+package com.aegamesi.java_visualizer.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs independent read-only JDI requests from a small pool of worker threads, so that
+ * up to {@code maxInFlight} JDWP round-trips overlap instead of being paid one after another.
+ * <p>
+ * JDI itself is thread-safe. The calling thread (normally the debugger manager thread)
+ * blocks until the whole batch is done, so the VM stays suspended and no other debugger
+ * command runs in between. Only reads may be issued here; method invocations must stay
+ * on the calling thread.
+ */
+class JdwpPipeline {
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "Java Visualizer JDWP reader");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// below this, handing work to other threads costs more than the overlapping saves
+	private static final int MIN_PARALLEL_ITEMS = 4;
+
+	private final int maxInFlight;
+
+	JdwpPipeline(int maxInFlight) {
+		this.maxInFlight = Math.max(1, maxInFlight);
+	}
+
+	/**
+	 * Applies {@code action} to every item, with at most {@code maxInFlight} items being processed at once.
+	 * Returns once all items are done. Exceptions thrown by {@code action} are rethrown on the caller.
+	 */
+	<T> void forEach(List<T> items, Consumer<T> action) {
+		int workers = Math.min(maxInFlight, items.size());
+		if (workers <= 1 || items.size() < MIN_PARALLEL_ITEMS) {
+			items.forEach(action);
+			return;
+		}
+
+		AtomicInteger next = new AtomicInteger();
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int w = 0; w < workers; w++) {
+			tasks.add(() -> {
+				int i;
+				while ((i = next.getAndIncrement()) < items.size()) {
+					action.accept(items.get(i));
+				}
+				return null;
+			});
+		}
+
+		try {
+			for (Future<Void> f : EXECUTOR.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a set that stores its elements as the keys of a backing map, like {@code java.util.HashSet}
+ * and {@code java.util.TreeSet}, through the reader for that map.
+ */
+class KeySetReader implements CollectionReader {
+	private final CollectionReaders readers;
+	private final String mapField;
+
+	KeySetReader(CollectionReaders readers, String mapField) {
+		this.readers = readers;
+		this.mapField = mapField;
+	}
+
+	@Override
+	public boolean isMap() {
+		return false;
+	}
+
+	@Override
+	public int size(VmReader vm, ObjectReference obj) {
+		ObjectReference map = backingMap(vm, obj);
+		return map == null ? IteratorReader.SET.size(vm, obj) : mapReader(vm, map).size(vm, map);
+	}
+
+	@Override
+	public List<Value> read(VmReader vm, ObjectReference obj, int from, int count) {
+		ObjectReference map = backingMap(vm, obj);
+		if (map == null) {
+			return IteratorReader.SET.read(vm, obj, from, count);
+		}
+		List<Value> entries = mapReader(vm, map).read(vm, map, from, count);
+		List<Value> keys = new ArrayList<>(entries.size() / 2);
+		for (int i = 0; i < entries.size(); i += 2) {
+			keys.add(entries.get(i));
+		}
+		return keys;
+	}
+
+	private ObjectReference backingMap(VmReader vm, ObjectReference obj) {
+		ObjectReference map = (ObjectReference) vm.readFields(obj, mapField)[0];
+		// only use the backing map if it can be read without invocations too
+		return (map != null && readers.get(vm.typeOf(map)) != null) ? map : null;
+	}
+
+	private CollectionReader mapReader(VmReader vm, ObjectReference map) {
+		return readers.get(vm.typeOf(map));
+	}
+}
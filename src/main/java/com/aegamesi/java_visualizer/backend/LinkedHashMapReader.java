@@ -0,0 +1,41 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a {@code java.util.LinkedHashMap} by following its before/after links, in iteration order.
+ */
+class LinkedHashMapReader implements CollectionReader {
+	@Override
+	public boolean isMap() {
+		return true;
+	}
+
+	@Override
+	public int size(VmReader vm, ObjectReference obj) {
+		return vm.readIntField(obj, "size");
+	}
+
+	@Override
+	public List<Value> read(VmReader vm, ObjectReference obj, int from, int count) {
+		List<Value> out = new ArrayList<>();
+		if (count <= 0) {
+			return out;
+		}
+		ObjectReference node = (ObjectReference) vm.readFields(obj, "head")[0];
+		for (int i = 0; i < from && node != null; i++) {
+			node = (ObjectReference) vm.readFields(node, "after")[0];
+		}
+		while (out.size() < count * 2 && node != null) {
+			Value[] fields = vm.readFields(node, "key", "value", "after");
+			out.add(fields[0]);
+			out.add(fields[1]);
+			node = (ObjectReference) fields[2];
+		}
+		return out;
+	}
+}
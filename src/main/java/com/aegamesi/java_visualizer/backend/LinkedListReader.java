@@ -0,0 +1,57 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.IntegerValue;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a {@code java.util.LinkedList} by following its node links, from whichever end is closer.
+ */
+class LinkedListReader implements CollectionReader {
+	@Override
+	public boolean isMap() {
+		return false;
+	}
+
+	@Override
+	public boolean canReadTail() {
+		return true;
+	}
+
+	@Override
+	public int size(VmReader vm, ObjectReference obj) {
+		return vm.readIntField(obj, "size");
+	}
+
+	@Override
+	public List<Value> read(VmReader vm, ObjectReference obj, int from, int count) {
+		Value[] fields = vm.readFields(obj, "first", "last", "size");
+		int size = ((IntegerValue) fields[2]).value();
+		count = Math.min(count, size - from);
+		List<Value> out = new ArrayList<>();
+		if (count <= 0) {
+			return out;
+		}
+
+		int skipFromEnd = size - from - count;
+		boolean forward = from <= skipFromEnd;
+		String link = forward ? "next" : "prev";
+		ObjectReference node = (ObjectReference) fields[forward ? 0 : 1];
+		for (int i = forward ? from : skipFromEnd; i > 0 && node != null; i--) {
+			node = (ObjectReference) vm.readFields(node, link)[0];
+		}
+		while (out.size() < count && node != null) {
+			Value[] nodeFields = vm.readFields(node, "item", link);
+			out.add(nodeFields[0]);
+			node = (ObjectReference) nodeFields[1];
+		}
+		if (!forward) {
+			Collections.reverse(out);
+		}
+		return out;
+	}
+}
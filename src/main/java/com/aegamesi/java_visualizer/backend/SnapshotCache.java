@@ -0,0 +1,72 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.LongMap;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.List;
+
+/**
+ * Heap entities converted at earlier pauses of the same debug session, keyed by
+ * {@link ObjectReference#uniqueID()}, so that a {@link Tracer} can reuse the ones that can't have changed.
+ * <p>
+ * An entity is reused without reading anything if all of its fields are final. Otherwise its fields are read
+ * again, and it's reused if they hold the same values as last time. Strings are always reused.
+ * Arrays, collections and maps are always converted again.
+ * <p>
+ * Entries hold on to their object's mirror, which keeps its id valid and lets JDI keep its cached type.
+ */
+public class SnapshotCache {
+	static class Entry {
+		final ObjectReference ref;
+		final HeapEntity entity;
+		// the raw field values the entity was converted from, in field order
+		final List<Value> values;
+		final boolean immutable;
+
+		Entry(ObjectReference ref, HeapEntity entity, List<Value> values, boolean immutable) {
+			this.ref = ref;
+			this.entity = entity;
+			this.values = values;
+			this.immutable = immutable;
+		}
+	}
+
+	private final LongMap<Entry> entries = new LongMap<>();
+
+	Entry get(long id) {
+		return entries.get(id);
+	}
+
+	void put(long id, Entry entry) {
+		entries.put(id, entry);
+	}
+
+	/**
+	 * Drops entries for objects that are no longer reachable from the latest trace.
+	 */
+	void retainAll(LongMap<?> heap) {
+		for (long id : entries.keys()) {
+			if (!heap.containsKey(id)) {
+				entries.remove(id);
+			}
+		}
+	}
+
+	/**
+	 * Forces the object with the given id to be converted again at the next pause,
+	 * e.g. because its fields are known to have been modified.
+	 */
+	public void invalidate(long id) {
+		entries.remove(id);
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+}
@@ -1,15 +1,21 @@
 package com.aegamesi.java_visualizer.backend;
 
 import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.Fields;
 import com.aegamesi.java_visualizer.model.Frame;
 import com.aegamesi.java_visualizer.model.HeapEntity;
 import com.aegamesi.java_visualizer.model.HeapList;
 import com.aegamesi.java_visualizer.model.HeapMap;
 import com.aegamesi.java_visualizer.model.HeapObject;
 import com.aegamesi.java_visualizer.model.HeapPrimitive;
+import com.aegamesi.java_visualizer.model.HeapPrimitiveList;
+import com.aegamesi.java_visualizer.model.HeapStub;
+import com.aegamesi.java_visualizer.model.LongMap;
+import com.aegamesi.java_visualizer.model.LongSet;
 import com.aegamesi.java_visualizer.model.Value;
 import com.sun.jdi.AbsentInformationException;
 import com.sun.jdi.ArrayReference;
+import com.sun.jdi.ArrayType;
 import com.sun.jdi.BooleanValue;
 import com.sun.jdi.ByteValue;
 import com.sun.jdi.CharValue;
@@ -23,6 +29,7 @@ import com.sun.jdi.LocalVariable;
 import com.sun.jdi.Location;
 import com.sun.jdi.LongValue;
 import com.sun.jdi.ObjectReference;
+import com.sun.jdi.PrimitiveValue;
 import com.sun.jdi.ReferenceType;
 import com.sun.jdi.ShortValue;
 import com.sun.jdi.StackFrame;
@@ -32,17 +39,15 @@ import com.sun.jdi.VoidValue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static com.aegamesi.java_visualizer.backend.TracerUtils.displayNameForType;
-import static com.aegamesi.java_visualizer.backend.TracerUtils.doesImplementInterface;
-import static com.aegamesi.java_visualizer.backend.TracerUtils.getIterator;
-import static com.aegamesi.java_visualizer.backend.TracerUtils.invokeSimple;
 
 /**
  * Some code from traceprinter, written by David Pritchard (daveagp@gmail.com)
@@ -65,20 +70,84 @@ public class Tracer {
 	private static final List<ReferenceType> STATIC_LISTABLE = new ArrayList<>();
 
 	private ThreadReference thread;
+	private TracerOptions options;
+	private TracerStats stats = new TracerStats();
+	private VmReader vm;
+	private JdwpPipeline pipeline;
+	private SnapshotCache cache;
 	private ExecutionTrace model;
 
 	/*
 	Converting actual heap objects requires running code on the suspended VM thread.
 	However, once we start running code on the thread, we can no longer read frame locals.
 	Therefore, we have to convert all heap objects at the very end.
+	Each BFS level is converted in the order its objects were found.
 	*/
-	private TreeMap<Long, ObjectReference> pendingConversion = new TreeMap<>();
+	private LongMap<ObjectReference> pendingConversion = new LongMap<>();
+	private LongSet heapDone = new LongSet();
+	private Set<Long> stringsRead = ConcurrentHashMap.newKeySet();
+
+	/*
+	When batching, the type of a newly discovered reference isn't looked up right away, but together with
+	the rest of its BFS level. Boxed values found that way are patched into the values that referenced them,
+	which is done before the call that found them returns, so that no value changes once the model it's in has
+	been handed out.
+	*/
+	private LongMap<List<Value>> unresolvedReferences = new LongMap<>();
+	private LongMap<Value> unboxedValues = new LongMap<>();
+
+	// Lists and maps that were only partially converted, so more of them can be loaded on request
+	private LongMap<ObjectReference> truncated = new LongMap<>();
+
+	// Objects beyond the depth or node limit, left as stubs that can be expanded on request
+	private LongMap<ObjectReference> stubs = new LongMap<>();
+	// BFS levels and objects converted since the last root, i.e. the last getModel() or expansion
+	private int depth;
+	private int nodesConverted;
 
 	public Tracer(ThreadReference thread) {
+		this(thread, new TracerOptions());
+	}
+
+	public Tracer(ThreadReference thread, TracerOptions options) {
+		this(thread, options, null);
+	}
+
+	/**
+	 * @param cache entities from earlier pauses of this debug session to reuse where possible, or null
+	 */
+	public Tracer(ThreadReference thread, TracerOptions options, SnapshotCache cache) {
+		this(thread, options, cache, new TypeCache());
+	}
+
+	/**
+	 * @param cache entities from earlier pauses of this debug session to reuse where possible, or null
+	 * @param types type metadata shared with other tracers of this debug session
+	 */
+	public Tracer(ThreadReference thread, TracerOptions options, SnapshotCache cache, TypeCache types) {
 		this.thread = thread;
+		this.options = options;
+		this.cache = cache;
+		this.vm = new VmReader(thread, options, stats, types);
+		this.pipeline = vm.pipeline;
+	}
+
+	public TracerStats getStats() {
+		return stats;
 	}
 
 	public ExecutionTrace getModel() throws IncompatibleThreadStateException {
+		convertFrames();
+		while (convertNextLevel()) {
+		}
+		return model;
+	}
+
+	/**
+	 * Converts the stack frames and statics, and returns the model. The heap objects they reference are
+	 * only added to the model by subsequent calls to {@link #convertNextLevel()}.
+	 */
+	public ExecutionTrace convertFrames() throws IncompatibleThreadStateException {
 		model = new ExecutionTrace();
 
 		// Convert stack frame locals
@@ -100,22 +169,235 @@ public class Tracer {
 			}
 		}
 
-		// Convert heap
-		Set<Long> heapDone = new HashSet<>();
+		resolvePending();
+		return model;
+	}
+
+	/**
+	 * Converts the next BFS level of the heap into the model.
+	 * Returns false, without doing anything, once the whole heap has been converted.
+	 */
+	public boolean convertNextLevel() {
+		if (pendingConversion.isEmpty()) {
+			if (cache != null) {
+				cache.retainAll(model.heap);
+			}
+			return false;
+		}
+		LongMap<ObjectReference> level = pendingConversion;
+		pendingConversion = new LongMap<>();
+		for (long id : level.keys()) {
+			if (!heapDone.add(id)) {
+				level.remove(id);
+			}
+		}
+		stats.levels.incrementAndGet();
+		depth++;
+		convertLevel(level);
+		return true;
+	}
+
+	/**
+	 * Loads the next page of elements left out of a truncated list or map, or converts a stub left by the
+	 * depth or node limit, along with anything they reference (within a fresh set of limits).
+	 * The VM must still be suspended where {@link #getModel()} was called.
+	 * Returns the updated model; previously returned models are left unchanged.
+	 */
+	public ExecutionTrace loadMoreElements(long id) {
+		ObjectReference stub = stubs.remove(id);
+		if (stub != null) {
+			model = model.copy();
+			model.heap.remove(id);
+			heapDone.remove(id);
+			pendingConversion.put(id, stub);
+			depth = 0;
+			nodesConverted = 0;
+			convertPending();
+			return model;
+		}
+
+		ObjectReference obj = truncated.get(id);
+		HeapEntity entity = model.heap.get(id);
+		if (obj == null || entity == null) {
+			return model;
+		}
+
+		model = model.copy();
+		depth = 0;
+		nodesConverted = 0;
+		int page = options.maxElements > 0 ? options.maxElements : Integer.MAX_VALUE;
+		boolean done;
+		if (entity instanceof HeapList) {
+			HeapList list = (HeapList) entity;
+			int count = Math.min(page, list.omittedCount);
+			List<com.sun.jdi.Value> values = obj instanceof ArrayReference
+					? Arrays.asList(vm.readArrayValues((ArrayReference) obj, list.omittedOffset, count))
+					: readerFor(obj).read(vm, obj, list.omittedOffset, count);
+			List<Value> loaded = new ArrayList<>();
+			for (com.sun.jdi.Value v : values) {
+				loaded.add(convertValue(v));
+			}
+			list = list.withLoaded(loaded);
+			done = !list.isTruncated();
+			entity = list;
+		} else {
+			HeapMap map = (HeapMap) entity;
+			int count = Math.min(page, map.omittedCount);
+			map = map.withLoaded(convertEntries(readerFor(obj).read(vm, obj, map.omittedOffset, count)));
+			done = !map.isTruncated();
+			entity = map;
+		}
+		model.heap.put(id, entity);
+		if (done) {
+			truncated.remove(id);
+		}
+
+		resolvePending();
+		convertPending();
+		return model;
+	}
+
+	private void convertPending() {
 		while (!pendingConversion.isEmpty()) {
-			Map.Entry<Long, ObjectReference> first = pendingConversion.firstEntry();
-			long id = first.getKey();
-			ObjectReference obj = first.getValue();
-			pendingConversion.remove(id);
-			if (heapDone.contains(id))
-				continue;
-			heapDone.add(id);
-			HeapEntity converted = convertObject(obj);
+			convertNextLevel();
+		}
+	}
+
+	private void convertLevel(LongMap<ObjectReference> level) {
+		stubOverLimit(level);
+		Map<Long, Map<Field, com.sun.jdi.Value>> prefetched = options.batchFieldReads
+				? prefetchFields(level)
+				: Collections.emptyMap();
+
+		level.forEachEntry((id, obj) -> {
+			HeapEntity converted = convertObject(obj, prefetched.get(id));
 			converted.id = id;
 			model.heap.put(id, converted);
+		});
+		resolvePending();
+	}
+
+	/**
+	 * Unboxes the boxed primitives among the references found since the last call, when batching, and takes
+	 * them out of the next level. Every value converted until then is final afterwards.
+	 */
+	private void resolvePending() {
+		if (options.batchFieldReads) {
+			resolveLevel(pendingConversion);
+		}
+	}
+
+	/**
+	 * Removes the objects that are beyond the depth or node limit from the level, and adds stubs for them.
+	 */
+	private void stubOverLimit(LongMap<ObjectReference> level) {
+		int allowed = level.size();
+		if (options.maxDepth > 0 && depth > options.maxDepth) {
+			allowed = 0;
+		}
+		if (options.maxNodes > 0) {
+			allowed = Math.min(allowed, Math.max(0, options.maxNodes - nodesConverted));
+		}
+		nodesConverted += allowed;
+		if (allowed == level.size()) {
+			return;
 		}
 
-		return model;
+		long[] ids = level.keys();
+		for (int i = allowed; i < ids.length; i++) {
+			ObjectReference obj = level.remove(ids[i]);
+			HeapStub out = new HeapStub();
+			out.type = HeapEntity.Type.STUB;
+			out.label = obj instanceof ArrayReference
+					? vm.typeOf(obj).name()
+					: vm.describe(obj).displayName;
+			out.id = ids[i];
+			model.heap.put(ids[i], out);
+			stubs.put(ids[i], obj);
+		}
+	}
+
+	/**
+	 * Looks up the types of all objects in the level at once, and unboxes the boxed primitives among them.
+	 * Boxed primitives are removed from the level.
+	 */
+	private void resolveLevel(LongMap<ObjectReference> level) {
+		List<ObjectReference> objs = new ArrayList<>(level.values());
+		pipeline.forEach(objs, vm::typeOf);
+
+		List<ObjectReference> boxed = new ArrayList<>();
+		for (ObjectReference obj : objs) {
+			if (vm.describe(obj).boxed) {
+				boxed.add(obj);
+			}
+		}
+		Map<Long, com.sun.jdi.Value> unboxed = new ConcurrentHashMap<>();
+		pipeline.forEach(boxed, obj -> {
+			unboxed.put(obj.uniqueID(), obj.getValue(obj.referenceType().fieldByName("value")));
+			stats.fieldReads.incrementAndGet();
+		});
+
+		for (ObjectReference obj : boxed) {
+			long id = obj.uniqueID();
+			Value primitive = convertValue(unboxed.get(id));
+			unboxedValues.put(id, primitive);
+			List<Value> references = unresolvedReferences.remove(id);
+			if (references != null) {
+				for (Value v : references) {
+					v.set(primitive);
+				}
+			}
+			level.remove(id);
+		}
+		for (long id : level.keys()) {
+			unresolvedReferences.remove(id);
+		}
+	}
+
+	/**
+	 * Reads the fields of every plain object in the level, grouped by type, keeping several reads in flight.
+	 * String values among the fields are read in the same way.
+	 */
+	private Map<Long, Map<Field, com.sun.jdi.Value>> prefetchFields(LongMap<ObjectReference> level) {
+		Map<ReferenceType, List<Field>> fieldsByType = new HashMap<>();
+		Map<ReferenceType, List<ObjectReference>> byType = new LinkedHashMap<>();
+		for (ObjectReference obj : level.values()) {
+			if (obj instanceof ArrayReference || obj instanceof StringReference) {
+				continue;
+			}
+			TypeDescriptor type = vm.describe(obj);
+			SnapshotCache.Entry cached = cache == null ? null : cache.get(obj.uniqueID());
+			if (!type.internal && (cached == null || !cached.immutable)) {
+				byType.computeIfAbsent(type.type, t -> new ArrayList<>()).add(obj);
+				fieldsByType.put(type.type, type.fields);
+			}
+		}
+
+		List<ObjectReference> work = new ArrayList<>();
+		byType.values().forEach(work::addAll);
+		Map<Long, Map<Field, com.sun.jdi.Value>> fetched = new ConcurrentHashMap<>();
+		pipeline.forEach(work, obj -> {
+			fetched.put(obj.uniqueID(), obj.getValues(fieldsByType.get(obj.referenceType())));
+			stats.fieldReads.incrementAndGet();
+		});
+
+		List<StringReference> strings = new ArrayList<>();
+		for (ObjectReference obj : work) {
+			Map<Field, com.sun.jdi.Value> fields = fetched.get(obj.uniqueID());
+			SnapshotCache.Entry cached = cache == null ? null : cache.get(obj.uniqueID());
+			if (cached != null && cached.values.equals(fieldValues(fieldsByType.get(obj.referenceType()), fields))) {
+				// will be reused as is
+				continue;
+			}
+			for (com.sun.jdi.Value v : fields.values()) {
+				if (v instanceof StringReference) {
+					strings.add((StringReference) v);
+				}
+			}
+		}
+		pipeline.forEach(strings, this::readString);
+
+		return fetched;
 	}
 
 	// TODO clean this up
@@ -220,72 +502,103 @@ public class Tracer {
 	}
 
 	private Value convertReference(ObjectReference obj) {
-		// Special handling for boxed types
-		if (obj.referenceType().name().startsWith("java.lang.")
-				&& BOXED_TYPES.contains(obj.referenceType().name().substring(10))) {
-			return convertValue(obj.getValue(obj.referenceType().fieldByName("value")));
+		long key = obj.uniqueID();
+		if (options.batchFieldReads) {
+			Value unboxed = unboxedValues.get(key);
+			if (unboxed != null) {
+				return unboxed;
+			}
+		} else {
+			// Special handling for boxed types
+			if (vm.describe(obj).boxed) {
+				stats.fieldReads.incrementAndGet();
+				return convertValue(obj.getValue(obj.referenceType().fieldByName("value")));
+			}
 		}
 
-		long key = obj.uniqueID();
 		pendingConversion.put(key, obj);
 
 		// Actually create and return the reference
-		Value out = new Value();
-		out.type = Value.Type.REFERENCE;
-		out.reference = key;
+		Value out = Value.ofReference(key);
+		if (options.batchFieldReads && !heapDone.contains(key)) {
+			unresolvedReferences.computeIfAbsent(key, k -> new ArrayList<>()).add(out);
+		}
 		return out;
 	}
 
-	private HeapEntity convertObject(ObjectReference obj) {
+	private HeapEntity convertObject(ObjectReference obj, Map<Field, com.sun.jdi.Value> prefetchedFields) {
 		if (obj instanceof ArrayReference) {
 			ArrayReference ao = (ArrayReference) obj;
-			int length = ao.length();
-
-			HeapList out = new HeapList();
+			int length = vm.length(ao);
+			Window window = window(length, true);
+			int tailStart = length - window.tail;
+			Value.Type elementType = primitiveElementType((ArrayType) ao.referenceType());
+
+			HeapList out;
+			if (elementType != null) {
+				HeapPrimitiveList primitives = new HeapPrimitiveList(elementType, window.head + window.tail);
+				vm.readArray(ao, 0, window.head, (offset, values) -> setPrimitives(primitives, offset, values));
+				vm.readArray(ao, tailStart, window.tail,
+						(offset, values) -> setPrimitives(primitives, window.head + offset - tailStart, values));
+				out = primitives;
+			} else {
+				out = new HeapList();
+				for (com.sun.jdi.Value v : vm.readArrayValues(ao, 0, window.head)) {
+					out.items.add(convertValue(v));
+				}
+				for (com.sun.jdi.Value v : vm.readArrayValues(ao, tailStart, window.tail)) {
+					out.items.add(convertValue(v));
+				}
+			}
 			out.type = HeapEntity.Type.LIST;
 			out.label = ao.type().name();
-			for (int i = 0; i < length; i++) {
-				// TODO: optional feature, skip runs of zeros
-				out.items.add(convertValue(ao.getValue(i)));
-			}
+			setWindow(obj, out, window, length);
 			return out;
 		} else if (obj instanceof StringReference) {
+			SnapshotCache.Entry cached = cache == null ? null : cache.get(obj.uniqueID());
+			if (cached != null) {
+				model.reused.add(obj.uniqueID());
+				return cached.entity;
+			}
 			HeapPrimitive out = new HeapPrimitive();
 			out.type = HeapEntity.Type.PRIMITIVE;
 			out.label = "String";
-			out.value = new Value();
-			out.value.type = Value.Type.STRING;
-			out.value.stringValue = ((StringReference) obj).value();
+			out.value = Value.ofString(readString((StringReference) obj));
+			if (cache != null) {
+				cache.put(obj.uniqueID(), new SnapshotCache.Entry(obj, out, Collections.emptyList(), true));
+			}
 			return out;
 		}
 
-		String typeName = obj.referenceType().name();
-		if ((doesImplementInterface(obj, "java.util.List")
-				|| doesImplementInterface(obj, "java.util.Set"))
-				&& isInternalPackage(typeName)) {
+		CollectionReader reader = readerFor(obj);
+		if (reader != null && !reader.isMap()) {
 			HeapList out = new HeapList();
 			out.type = HeapEntity.Type.LIST; // XXX: or SET
-			out.label = displayNameForType(obj);
-			Iterator<com.sun.jdi.Value> i = getIterator(thread, obj);
-			while (i.hasNext()) {
-				out.items.add(convertValue(i.next()));
+			out.label = vm.describe(obj).displayName;
+			int size = reader.size(vm, obj);
+			Window window = window(size, reader.canReadTail());
+			for (com.sun.jdi.Value v : reader.read(vm, obj, 0, window.head)) {
+				out.items.add(convertValue(v));
 			}
+			for (com.sun.jdi.Value v : reader.read(vm, obj, size - window.tail, window.tail)) {
+				out.items.add(convertValue(v));
+			}
+			setWindow(obj, out, window, size);
 			return out;
 		}
 
-		if (doesImplementInterface(obj, "java.util.Map") && isInternalPackage(typeName)) {
+		if (reader != null) {
 			HeapMap out = new HeapMap();
 			out.type = HeapEntity.Type.MAP;
-			out.label = displayNameForType(obj);
-
-			ObjectReference entrySet = (ObjectReference) invokeSimple(thread, obj, "entrySet");
-			Iterator<com.sun.jdi.Value> i = getIterator(thread, entrySet);
-			while (i.hasNext()) {
-				ObjectReference entry = (ObjectReference) i.next();
-				HeapMap.Pair pair = new HeapMap.Pair();
-				pair.key = convertValue(invokeSimple(thread, entry, "getKey"));
-				pair.val = convertValue(invokeSimple(thread, entry, "getValue"));
-				out.pairs.add(pair);
+			out.label = vm.describe(obj).displayName;
+
+			int size = reader.size(vm, obj);
+			Window window = window(size, false);
+			out.pairs.addAll(convertEntries(reader.read(vm, obj, 0, window.head)));
+			out.omittedOffset = window.head;
+			out.omittedCount = size - window.head;
+			if (out.isTruncated()) {
+				truncated.put(obj.uniqueID(), obj);
 			}
 			return out;
 		}
@@ -293,71 +606,240 @@ public class Tracer {
 		// now, arbitrary objects
 		HeapObject out = new HeapObject();
 		out.type = HeapEntity.Type.OBJECT;
-		out.label = displayNameForType(obj);
-
-		ReferenceType refType = obj.referenceType();
-
-		if (shouldShowDetails(refType)) {
-			// fields: -inherited -hidden +synthetic
-			// visibleFields: +inherited -hidden +synthetic
-			// allFields: +inherited +hidden +repeated_synthetic
-			Map<Field, com.sun.jdi.Value> fields = obj.getValues(
-					SHOW_ALL_FIELDS ? refType.allFields() : refType.visibleFields()
-			);
-			for (Map.Entry<Field, com.sun.jdi.Value> me : fields.entrySet()) {
-				if (!me.getKey().isStatic() && (SHOW_ALL_FIELDS || !me.getKey().isSynthetic())) {
-					String name = SHOW_ALL_FIELDS ? me.getKey().declaringType().name() + "." : "";
-					name += me.getKey().name();
-					Value value = convertValue(me.getValue());
-					out.fields.put(name, value);
-				}
+		out.label = vm.describe(obj).displayName;
+
+		TypeDescriptor type = vm.describe(obj);
+		if (!type.internal) {
+			long id = obj.uniqueID();
+			SnapshotCache.Entry cached = cache == null ? null : cache.get(id);
+			if (cached != null && cached.immutable) {
+				return reuse(id, cached);
+			}
+
+			List<Field> shown = type.fields;
+			Map<Field, com.sun.jdi.Value> fields = prefetchedFields;
+			if (fields == null) {
+				stats.fieldReads.incrementAndGet();
+				fields = obj.getValues(shown);
+			}
+			List<com.sun.jdi.Value> values = fieldValues(shown, fields);
+			if (cached != null && cached.values.equals(values)) {
+				return reuse(id, cached);
+			}
+
+			// fields go straight into the slots of the type's shape; a name shown twice keeps the last value
+			out.fields = new Fields(type.shape);
+			for (int i = 0; i < shown.size(); i++) {
+				out.fields.set(type.slots[i], convertValue(values.get(i)));
+			}
+			if (cache != null) {
+				cache.put(id, new SnapshotCache.Entry(obj, out, values, type.allFieldsFinal));
 			}
 		}
 		return out;
 	}
 
+	private static List<com.sun.jdi.Value> fieldValues(List<Field> fields, Map<Field, com.sun.jdi.Value> values) {
+		List<com.sun.jdi.Value> out = new ArrayList<>(fields.size());
+		for (Field f : fields) {
+			out.add(values.get(f));
+		}
+		return out;
+	}
+
+	/**
+	 * Reuses an entity from an earlier pause. It still has to be traversed, since the objects it refers to
+	 * may have changed.
+	 */
+	private HeapEntity reuse(long id, SnapshotCache.Entry cached) {
+		for (com.sun.jdi.Value v : cached.values) {
+			if (v instanceof ObjectReference && !(v instanceof StringReference)) {
+				convertReference((ObjectReference) v);
+			}
+		}
+		model.reused.add(id);
+		return cached.entity;
+	}
+
+	/**
+	 * How the contents of an object are read if it's a collection or map, or null if it's neither. Only JDK
+	 * types are shown by their contents: user classes may well implement the interfaces, but their fields
+	 * are more interesting.
+	 */
+	private CollectionReader readerFor(ObjectReference obj) {
+		TypeDescriptor type = vm.describe(obj);
+		if (!type.internal) {
+			return null;
+		}
+		if (options.useCollectionReaders && type.reader != null) {
+			return type.reader;
+		}
+		switch (type.kind) {
+			case LIST:
+				return IteratorReader.LIST;
+			case SET:
+				return IteratorReader.SET;
+			case MAP:
+				return IteratorReader.MAP;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Converts map entries, given as alternating keys and values.
+	 */
+	private List<HeapMap.Pair> convertEntries(List<com.sun.jdi.Value> entries) {
+		List<HeapMap.Pair> out = new ArrayList<>();
+		for (int i = 0; i + 1 < entries.size(); i += 2) {
+			HeapMap.Pair pair = new HeapMap.Pair();
+			pair.key = convertValue(entries.get(i));
+			pair.val = convertValue(entries.get(i + 1));
+			out.add(pair);
+		}
+		return out;
+	}
+
+	private Window window(int size, boolean canReadTail) {
+		int max = options.maxElements;
+		if (max <= 0 || size <= max) {
+			return new Window(size, 0);
+		}
+		int tail = canReadTail ? Math.max(0, Math.min(options.tailElements, max - 1)) : 0;
+		return new Window(max - tail, tail);
+	}
+
+	private void setWindow(ObjectReference obj, HeapList list, Window window, int size) {
+		list.omittedOffset = window.head;
+		list.omittedCount = size - window.head - window.tail;
+		if (list.isTruncated()) {
+			truncated.put(obj.uniqueID(), obj);
+		}
+	}
+
+	private static void setPrimitives(HeapPrimitiveList list, int index, List<com.sun.jdi.Value> values) {
+		for (int i = 0; i < values.size(); i++) {
+			setPrimitive(list, index + i, (PrimitiveValue) values.get(i));
+		}
+	}
+
+	private static void setPrimitive(HeapPrimitiveList list, int index, PrimitiveValue v) {
+		switch (list.getElementType()) {
+			case BOOLEAN:
+				list.setBoolean(index, v.booleanValue());
+				break;
+			case CHAR:
+				list.setChar(index, v.charValue());
+				break;
+			case DOUBLE:
+				list.setDouble(index, v.doubleValue());
+				break;
+			default:
+				list.setLong(index, v.longValue());
+				break;
+		}
+	}
+
+	/**
+	 * The model type of the elements of a primitive array type, or null for arrays of references.
+	 */
+	private static Value.Type primitiveElementType(ArrayType type) {
+		switch (type.componentSignature().charAt(0)) {
+			case 'Z':
+				return Value.Type.BOOLEAN;
+			case 'C':
+				return Value.Type.CHAR;
+			case 'F':
+			case 'D':
+				return Value.Type.DOUBLE;
+			case 'B':
+			case 'S':
+			case 'I':
+			case 'J':
+				return Value.Type.LONG;
+			default:
+				return null;
+		}
+	}
+
+	private String readString(StringReference s) {
+		// the value is cached by the mirror after the first read
+		if (stringsRead.add(s.uniqueID())) {
+			stats.stringReads.incrementAndGet();
+		}
+		return s.value();
+	}
+
 	private Value convertValue(com.sun.jdi.Value v) {
-		Value out = new Value();
 		if (v instanceof BooleanValue) {
-			out.type = Value.Type.BOOLEAN;
-			out.booleanValue = ((BooleanValue) v).value();
+			return Value.ofBoolean(((BooleanValue) v).value());
 		} else if (v instanceof ByteValue) {
-			out.type = Value.Type.LONG;
-			out.longValue = ((ByteValue) v).value();
+			return Value.ofLong(((ByteValue) v).value());
 		} else if (v instanceof ShortValue) {
-			out.type = Value.Type.LONG;
-			out.longValue = ((ShortValue) v).value();
+			return Value.ofLong(((ShortValue) v).value());
 		} else if (v instanceof IntegerValue) {
-			out.type = Value.Type.LONG;
-			out.longValue = ((IntegerValue) v).value();
+			return Value.ofLong(((IntegerValue) v).value());
 		} else if (v instanceof LongValue) {
-			out.type = Value.Type.LONG;
-			out.longValue = ((LongValue) v).value();
+			return Value.ofLong(((LongValue) v).value());
 		} else if (v instanceof FloatValue) {
-			out.type = Value.Type.DOUBLE;
-			out.doubleValue = ((FloatValue) v).value();
+			return Value.ofDouble(((FloatValue) v).value());
 		} else if (v instanceof DoubleValue) {
-			out.type = Value.Type.DOUBLE;
-			out.doubleValue = ((DoubleValue) v).value();
+			return Value.ofDouble(((DoubleValue) v).value());
 		} else if (v instanceof CharValue) {
-            out.type = Value.Type.CHAR;
-			out.charValue = ((CharValue) v).value();
+			return Value.ofChar(((CharValue) v).value());
 		} else if (v instanceof VoidValue) {
-			out.type = Value.Type.VOID;
+			return Value.ofVoid();
 		} else if (!(v instanceof ObjectReference)) {
-			out.type = Value.Type.NULL;
+			return Value.ofNull();
 		} else if (v instanceof StringReference) {
-			out.type = Value.Type.STRING;
-			out.stringValue = ((StringReference) v).value();
+			return Value.ofString(readString((StringReference) v));
 		} else {
-			ObjectReference obj = (ObjectReference) v;
-			out = convertReference(obj);
+			return convertReference((ObjectReference) v);
+		}
+	}
+
+	static boolean isBoxed(String name) {
+		return name.startsWith("java.lang.") && BOXED_TYPES.contains(name.substring(10));
+	}
+
+	/**
+	 * The name a field is shown under.
+	 */
+	static String fieldName(Field f) {
+		return SHOW_ALL_FIELDS ? f.declaringType().name() + "." + f.name() : f.name();
+	}
+
+	/**
+	 * The instance fields shown for objects of the given type.
+	 */
+	static List<Field> fieldsToShow(ReferenceType type) {
+		// fields: -inherited -hidden +synthetic
+		// visibleFields: +inherited -hidden +synthetic
+		// allFields: +inherited +hidden +repeated_synthetic
+		List<Field> fields = new ArrayList<>();
+		for (Field f : SHOW_ALL_FIELDS ? type.allFields() : type.visibleFields()) {
+			if (!f.isStatic() && (SHOW_ALL_FIELDS || !f.isSynthetic())) {
+				fields.add(f);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * The elements of a collection that get converted up front: the first {@code head} and the last {@code tail}.
+	 */
+	private static class Window {
+		final int head;
+		final int tail;
+
+		Window(int head, int tail) {
+			this.head = head;
+			this.tail = tail;
 		}
-		return out;
 	}
 
 	// input format: [package.]ClassName:lineno or [package.]ClassName
-	private static boolean isInternalPackage(final String name) {
+	static boolean isInternalPackage(final String name) {
 		return Arrays.stream(INTERNAL_PACKAGES).anyMatch(name::startsWith);
 	}
 
@@ -365,8 +847,4 @@ public class Tracer {
 		Location loc = frame.location();
 		return !isInternalPackage(loc.toString()) && !loc.method().name().contains("$access");
 	}
-
-	private static boolean shouldShowDetails(ReferenceType type) {
-		return !isInternalPackage(type.name());
-	}
 }
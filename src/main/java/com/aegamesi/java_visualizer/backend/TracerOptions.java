@@ -0,0 +1,51 @@
+package com.aegamesi.java_visualizer.backend;
+
+/**
+ * Tunables for how the {@link Tracer} reads the heap of the suspended VM.
+ */
+public class TracerOptions {
+	/**
+	 * Read the fields of a whole BFS level of pending objects at once, grouped by type,
+	 * instead of one object at a time.
+	 */
+	public boolean batchFieldReads = true;
+
+	/**
+	 * Upper bound on the number of JDWP requests kept in flight while batching.
+	 */
+	public int maxInFlight = 8;
+
+	/**
+	 * Maximum number of array elements read with a single JDWP request.
+	 */
+	public int arrayChunkSize = 4096;
+
+	/**
+	 * Read JDK collections straight from their internal fields where possible, rather than by invoking
+	 * their iterators in the VM. See {@link CollectionReaders}.
+	 */
+	public boolean useCollectionReaders = true;
+
+	/**
+	 * Maximum number of elements converted per array, collection or map (0 for no limit). Bigger ones get
+	 * a head and a tail of {@link #tailElements} elements; the rest can be loaded a page of this size at a time.
+	 */
+	public int maxElements = 100;
+
+	/**
+	 * Number of elements taken from the end of a truncated array or list.
+	 */
+	public int tailElements = 10;
+
+	/**
+	 * Maximum number of references followed from the stack frames and statics (0 for no limit).
+	 * Objects further away are left as stubs, which can be expanded on request.
+	 */
+	public int maxDepth = 0;
+
+	/**
+	 * Maximum number of heap objects converted (0 for no limit). Once it's reached, the remaining objects
+	 * are left as stubs. Expanding a stub or loading more elements gets a budget of its own.
+	 */
+	public int maxNodes = 2000;
+}
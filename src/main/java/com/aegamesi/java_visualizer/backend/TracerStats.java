@@ -0,0 +1,54 @@
+package com.aegamesi.java_visualizer.backend;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the JDWP requests issued while converting the heap, so that different
+ * conversion strategies can be compared.
+ */
+public class TracerStats {
+	final AtomicLong typeReads = new AtomicLong();
+	final AtomicLong fieldReads = new AtomicLong();
+	final AtomicLong arrayReads = new AtomicLong();
+	final AtomicLong stringReads = new AtomicLong();
+	final AtomicLong invocations = new AtomicLong();
+	final AtomicLong levels = new AtomicLong();
+
+	public long getTypeReads() {
+		return typeReads.get();
+	}
+
+	public long getFieldReads() {
+		return fieldReads.get();
+	}
+
+	public long getArrayReads() {
+		return arrayReads.get();
+	}
+
+	public long getStringReads() {
+		return stringReads.get();
+	}
+
+	public long getInvocations() {
+		return invocations.get();
+	}
+
+	/**
+	 * Number of BFS levels the heap was converted in.
+	 */
+	public long getLevels() {
+		return levels.get();
+	}
+
+	public long getRoundTrips() {
+		return getTypeReads() + getFieldReads() + getArrayReads() + getStringReads() + getInvocations();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d round-trips (types=%d fields=%d arrays=%d strings=%d invocations=%d) in %d levels",
+				getRoundTrips(), getTypeReads(), getFieldReads(), getArrayReads(), getStringReads(),
+				getInvocations(), getLevels());
+	}
+}
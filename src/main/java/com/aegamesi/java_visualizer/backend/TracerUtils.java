@@ -2,43 +2,74 @@ package com.aegamesi.java_visualizer.backend;
 
 import com.sun.jdi.BooleanValue;
 import com.sun.jdi.ClassType;
+import com.sun.jdi.IntegerValue;
 import com.sun.jdi.InterfaceType;
+import com.sun.jdi.Method;
 import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
 import com.sun.jdi.ThreadReference;
 import com.sun.jdi.Value;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Queue;
 
 class TracerUtils {
-	static com.sun.jdi.Value invokeSimple(ThreadReference thread, ObjectReference r, String name) {
+	static com.sun.jdi.Value invokeSimple(ThreadReference thread, ObjectReference r, String name, TracerStats stats, Value... args) {
+		stats.invocations.incrementAndGet();
 		try {
-			return r.invokeMethod(thread, r.referenceType().methodsByName(name).get(0), Collections.emptyList(), 0);
+			for (Method m : r.referenceType().methodsByName(name)) {
+				if (m.argumentTypeNames().size() == args.length) {
+					return r.invokeMethod(thread, m, Arrays.asList(args), 0);
+				}
+			}
+			return null;
 		} catch (Exception e) {
 			return null;
 		}
 	}
 
-	static Iterator<Value> getIterator(ThreadReference thread, ObjectReference obj) {
-		ObjectReference i = (ObjectReference) invokeSimple(thread, obj, "iterator");
+	static Iterator<Value> getIterator(ThreadReference thread, ObjectReference obj, TracerStats stats) {
+		ObjectReference i = (ObjectReference) invokeSimple(thread, obj, "iterator", stats);
+		return iterate(thread, i, stats);
+	}
+
+	private static Iterator<Value> iterate(ThreadReference thread, ObjectReference i, TracerStats stats) {
 		return new Iterator<com.sun.jdi.Value>() {
 			@Override
 			public boolean hasNext() {
-				return ((BooleanValue) invokeSimple(thread, i, "hasNext")).value();
+				return ((BooleanValue) invokeSimple(thread, i, "hasNext", stats)).value();
 			}
 
 			@Override
 			public com.sun.jdi.Value next() {
-				return invokeSimple(thread, i, "next");
+				return invokeSimple(thread, i, "next", stats);
 			}
 		};
 	}
 
-	static boolean doesImplementInterface(ObjectReference obj, String iface) {
-		if (obj.referenceType() instanceof ClassType) {
-			Queue<InterfaceType> queue = new LinkedList<>(((ClassType) obj.referenceType()).interfaces());
+	/**
+	 * An iterator over a collection that starts at element {@code from}. Lists are entered there directly,
+	 * other collections have to be stepped through from the beginning.
+	 */
+	static Iterator<Value> getIterator(ThreadReference thread, ObjectReference obj, boolean isList, int from,
+			TracerStats stats) {
+		if (from > 0 && isList) {
+			IntegerValue index = thread.virtualMachine().mirrorOf(from);
+			ObjectReference i = (ObjectReference) invokeSimple(thread, obj, "listIterator", stats, index);
+			return iterate(thread, i, stats);
+		}
+		Iterator<Value> i = getIterator(thread, obj, stats);
+		for (int skipped = 0; skipped < from && i.hasNext(); skipped++) {
+			i.next();
+		}
+		return i;
+	}
+
+	static boolean doesImplementInterface(ReferenceType type, String iface) {
+		if (type instanceof ClassType) {
+			Queue<InterfaceType> queue = new LinkedList<>(((ClassType) type).interfaces());
 			while (!queue.isEmpty()) {
 				InterfaceType t = queue.poll();
 				if (t.name().equals(iface)) {
@@ -51,14 +82,14 @@ class TracerUtils {
 	}
 
 	// TODO clean up!!
-	static String displayNameForType(ObjectReference obj) {
-		String fullName = obj.referenceType().name();
+	static String displayNameForType(ReferenceType type) {
+		String fullName = type.name();
 		if (fullName.indexOf("$") > 0) {
 			// inner, local, anonymous or lambda class
 			if (fullName.contains("$$Lambda")) {
 				fullName = "&lambda;" + fullName.substring(fullName.indexOf("$$Lambda") + 9); // skip $$lambda$
 				try {
-					String interf = ((ClassType) obj.referenceType()).interfaces().get(0).name();
+					String interf = ((ClassType) type).interfaces().get(0).name();
 					if (interf.startsWith("java.util.function."))
 						interf = interf.substring(19);
 
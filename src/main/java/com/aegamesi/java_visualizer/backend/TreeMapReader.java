@@ -0,0 +1,54 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Reads a {@code java.util.TreeMap} with an in-order walk of its red-black tree.
+ */
+class TreeMapReader implements CollectionReader {
+	@Override
+	public boolean isMap() {
+		return true;
+	}
+
+	@Override
+	public int size(VmReader vm, ObjectReference obj) {
+		return vm.readIntField(obj, "size");
+	}
+
+	@Override
+	public List<Value> read(VmReader vm, ObjectReference obj, int from, int count) {
+		List<Value> out = new ArrayList<>();
+		if (count <= 0) {
+			return out;
+		}
+
+		// each entry on the stack holds the key, value, left and right of a node that is yet to be visited
+		Deque<Value[]> stack = new ArrayDeque<>();
+		ObjectReference node = (ObjectReference) vm.readFields(obj, "root")[0];
+		int index = 0;
+		while (node != null || !stack.isEmpty()) {
+			while (node != null) {
+				Value[] fields = vm.readFields(node, "key", "value", "left", "right");
+				stack.push(fields);
+				node = (ObjectReference) fields[2];
+			}
+			Value[] fields = stack.pop();
+			if (index++ >= from) {
+				out.add(fields[0]);
+				out.add(fields[1]);
+				if (out.size() == count * 2) {
+					break;
+				}
+			}
+			node = (ObjectReference) fields[3];
+		}
+		return out;
+	}
+}
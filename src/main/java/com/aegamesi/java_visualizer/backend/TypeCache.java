@@ -0,0 +1,61 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ReferenceType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Type metadata shared by the tracers of a debug session, so that the names, fields and interfaces of a class
+ * are only looked at once.
+ * <p>
+ * A class that is unloaded and loaded again gets a new {@link ReferenceType}, so stale descriptors are never
+ * returned; {@link #invalidate} drops them early, and {@link #clear} drops everything when the session ends.
+ */
+public class TypeCache {
+	private final Map<ReferenceType, TypeDescriptor> descriptors = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	TypeDescriptor describe(ReferenceType type) {
+		TypeDescriptor d = descriptors.get(type);
+		if (d != null) {
+			hits.incrementAndGet();
+			return d;
+		}
+		misses.incrementAndGet();
+		// computed outside the map, since it makes requests to the VM
+		d = new TypeDescriptor(type);
+		TypeDescriptor raced = descriptors.putIfAbsent(type, d);
+		return raced != null ? raced : d;
+	}
+
+	/**
+	 * Drops the descriptor of a type, e.g. because its class was unloaded.
+	 */
+	public void invalidate(ReferenceType type) {
+		descriptors.remove(type);
+	}
+
+	public void clear() {
+		descriptors.clear();
+	}
+
+	public int size() {
+		return descriptors.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d types (%d hits, %d misses)", size(), getHits(), getMisses());
+	}
+}
@@ -0,0 +1,70 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.aegamesi.java_visualizer.model.Shape;
+import com.sun.jdi.Field;
+import com.sun.jdi.ReferenceType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.aegamesi.java_visualizer.backend.TracerUtils.displayNameForType;
+import static com.aegamesi.java_visualizer.backend.TracerUtils.doesImplementInterface;
+
+/**
+ * What the tracer needs to know about a type, worked out once per {@link ReferenceType} by {@link TypeCache}.
+ */
+class TypeDescriptor {
+	enum Kind {
+		OTHER, LIST, SET, MAP
+	}
+
+	final ReferenceType type;
+	final String name;
+	final String displayName;
+	// JDK and other library types, whose fields aren't shown
+	final boolean internal;
+	final boolean boxed;
+	// the instance fields shown for objects of the type; empty for internal types
+	final List<Field> fields;
+	final boolean allFieldsFinal;
+	// the names of the fields shown, shared by every object of the type, and where each field goes in it
+	final Shape shape;
+	final int[] slots;
+	// which collection interface an internal type implements
+	final Kind kind;
+	// the field-level reader registered for the type, if any
+	final CollectionReader reader;
+
+	TypeDescriptor(ReferenceType type) {
+		this.type = type;
+		this.name = type.name();
+		this.displayName = displayNameForType(type);
+		this.internal = Tracer.isInternalPackage(name);
+		this.boxed = Tracer.isBoxed(name);
+		this.fields = internal ? Collections.emptyList() : Collections.unmodifiableList(Tracer.fieldsToShow(type));
+		this.allFieldsFinal = fields.stream().allMatch(Field::isFinal);
+		List<String> names = new ArrayList<>(fields.size());
+		for (Field f : fields) {
+			names.add(Tracer.fieldName(f));
+		}
+		this.shape = Shape.of(names);
+		this.slots = new int[fields.size()];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = shape.indexOf(names.get(i));
+		}
+		this.kind = internal ? kindOf(type) : Kind.OTHER;
+		this.reader = internal ? CollectionReaders.DEFAULT.get(type) : null;
+	}
+
+	private static Kind kindOf(ReferenceType type) {
+		if (doesImplementInterface(type, "java.util.List")) {
+			return Kind.LIST;
+		} else if (doesImplementInterface(type, "java.util.Set")) {
+			return Kind.SET;
+		} else if (doesImplementInterface(type, "java.util.Map")) {
+			return Kind.MAP;
+		}
+		return Kind.OTHER;
+	}
+}
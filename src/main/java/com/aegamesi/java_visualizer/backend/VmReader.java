@@ -0,0 +1,113 @@
+package com.aegamesi.java_visualizer.backend;
+
+import com.sun.jdi.ArrayReference;
+import com.sun.jdi.Field;
+import com.sun.jdi.IntegerValue;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The reads the tracer makes against the suspended VM, each counted in {@link TracerStats}.
+ */
+class VmReader {
+	final ThreadReference thread;
+	final TracerOptions options;
+	final TracerStats stats;
+	final JdwpPipeline pipeline;
+	final TypeCache types;
+
+	// JDI caches the type of a mirror after looking it up once
+	private final Set<Long> typesRead = ConcurrentHashMap.newKeySet();
+
+	VmReader(ThreadReference thread, TracerOptions options, TracerStats stats, TypeCache types) {
+		this.thread = thread;
+		this.options = options;
+		this.stats = stats;
+		this.types = types;
+		this.pipeline = new JdwpPipeline(options.maxInFlight);
+	}
+
+	ReferenceType typeOf(ObjectReference obj) {
+		if (typesRead.add(obj.uniqueID())) {
+			stats.typeReads.incrementAndGet();
+		}
+		return obj.referenceType();
+	}
+
+	TypeDescriptor describe(ObjectReference obj) {
+		return types.describe(typeOf(obj));
+	}
+
+	Value invoke(ObjectReference obj, String method, Value... args) {
+		return TracerUtils.invokeSimple(thread, obj, method, stats, args);
+	}
+
+	/**
+	 * Reads the named fields of an object with a single request, returning their values in the same order.
+	 */
+	Value[] readFields(ObjectReference obj, String... names) {
+		ReferenceType type = typeOf(obj);
+		List<Field> fields = new ArrayList<>(names.length);
+		for (String name : names) {
+			fields.add(type.fieldByName(name));
+		}
+		stats.fieldReads.incrementAndGet();
+		Map<Field, Value> values = obj.getValues(fields);
+		Value[] out = new Value[names.length];
+		for (int i = 0; i < names.length; i++) {
+			out[i] = values.get(fields.get(i));
+		}
+		return out;
+	}
+
+	int readIntField(ObjectReference obj, String name) {
+		return ((IntegerValue) readFields(obj, name)[0]).value();
+	}
+
+	int length(ArrayReference array) {
+		stats.arrayReads.incrementAndGet();
+		return array.length();
+	}
+
+	/**
+	 * Reads elements [from, from + length) of an array with bulk requests of at most
+	 * {@link TracerOptions#arrayChunkSize} elements. When batching, several chunks are read at once,
+	 * so {@code chunkConsumer} may be called concurrently (with disjoint ranges) and in any order.
+	 */
+	void readArray(ArrayReference array, int from, int length, BiConsumer<Integer, List<Value>> chunkConsumer) {
+		int chunkSize = Math.max(1, options.arrayChunkSize);
+		List<Integer> offsets = new ArrayList<>();
+		for (int offset = from; offset < from + length; offset += chunkSize) {
+			offsets.add(offset);
+		}
+		Consumer<Integer> readChunk = offset -> {
+			stats.arrayReads.incrementAndGet();
+			chunkConsumer.accept(offset, array.getValues(offset, Math.min(chunkSize, from + length - offset)));
+		};
+		if (options.batchFieldReads) {
+			pipeline.forEach(offsets, readChunk);
+		} else {
+			offsets.forEach(readChunk);
+		}
+	}
+
+	Value[] readArrayValues(ArrayReference array, int from, int length) {
+		Value[] elements = new Value[length];
+		readArray(array, from, length, (offset, values) -> {
+			for (int i = 0; i < values.size(); i++) {
+				elements[offset - from + i] = values.get(i);
+			}
+		});
+		return elements;
+	}
+}
@@ -0,0 +1,231 @@
+package com.aegamesi.java_visualizer.layout;
+
+import java.util.Arrays;
+
+/**
+ * Lays out a {@link LayoutGraph} from left to right in layers (columns), in the manner of Sugiyama et al.:
+ * <ol>
+ * <li>A depth-first search from the roots finds the nodes to lay out. Cycles are broken by ignoring the edges
+ * that lead back to a node being searched, so cyclic graphs (doubly linked lists, parent pointers) are laid out
+ * as the tree or DAG the search found.</li>
+ * <li>Each node goes one layer to the right of its furthest predecessor (longest-path layering), so every
+ * remaining edge points rightwards. Trees and lists are layered by depth.</li>
+ * <li>The nodes first reached from each root make up a band, and the bands are placed one below the other, so
+ * that unrelated structures don't push each other apart. Within a band, layer by layer, each node wants to be
+ * level with the port of its edge from the layer before, and the nodes of a layer are ordered by that height,
+ * which keeps most edges from crossing. Nodes are then stacked down the layer as close to that height as the
+ * nodes above them allow.</li>
+ * </ol>
+ * Every step is linear in the number of nodes and edges, except ordering the nodes within layers, which is a sort.
+ */
+public class LayeredLayout {
+	private final int horizontalGap;
+	private final int verticalGap;
+
+	public LayeredLayout(int horizontalGap, int verticalGap) {
+		this.horizontalGap = horizontalGap;
+		this.verticalGap = verticalGap;
+	}
+
+	/**
+	 * Where the nodes of a graph were placed.
+	 */
+	public static class Result {
+		/**
+		 * The top-left corner of each node. Nodes that can't be reached from a root aren't placed, and are at -1.
+		 */
+		public final int[] x;
+		public final int[] y;
+		/**
+		 * The placed nodes, in the order the search reached them.
+		 */
+		public final int[] order;
+		/**
+		 * For each placed node, the node in the layer before that it was placed level with, or -1 if there isn't
+		 * one (the first node of a band).
+		 */
+		public final int[] parent;
+		public final int width;
+		public final int height;
+		public final int layers;
+		/**
+		 * Whether edges had to be ignored to break cycles.
+		 */
+		public final boolean cyclic;
+
+		Result(int[] x, int[] y, int[] order, int[] parent, int width, int height, int layers, boolean cyclic) {
+			this.x = x;
+			this.y = y;
+			this.order = order;
+			this.parent = parent;
+			this.width = width;
+			this.height = height;
+			this.layers = layers;
+			this.cyclic = cyclic;
+		}
+
+		public boolean isPlaced(int node) {
+			return x[node] >= 0;
+		}
+	}
+
+	public Result layout(LayoutGraph graph) {
+		int n = graph.getNodeCount();
+		int[] edges = new int[graph.getEdgeCount()];
+		int[] start = graph.sortEdgesBySource(edges);
+
+		// 1. depth-first search, recording the reach order, the finish order, the edges leading back, and the root
+		// (band) each node was reached from
+		int[] band = new int[n];
+		int bands = 0;
+		int[] preorder = new int[n];
+		Arrays.fill(preorder, -1);
+		int[] order = new int[n];
+		int reached = 0;
+		int[] postorder = new int[n];
+		int finished = 0;
+		boolean[] searching = new boolean[n];
+		boolean[] back = new boolean[edges.length];
+		boolean cyclic = false;
+		int[] stack = new int[n];
+		int[] cursor = new int[n];
+		for (int r = 0; r < graph.getRootCount(); r++) {
+			int root = graph.getRoot(r);
+			if (preorder[root] >= 0) {
+				continue;
+			}
+			bands++;
+			int depth = 0;
+			stack[0] = root;
+			cursor[0] = start[root];
+			preorder[root] = reached;
+			order[reached++] = root;
+			band[root] = bands - 1;
+			searching[root] = true;
+			while (depth >= 0) {
+				int u = stack[depth];
+				if (cursor[depth] == start[u + 1]) {
+					searching[u] = false;
+					postorder[finished++] = u;
+					depth--;
+					continue;
+				}
+				int e = edges[cursor[depth]++];
+				int v = graph.getEdgeTo(e);
+				if (searching[v]) {
+					back[e] = true;
+					cyclic = true;
+				} else if (preorder[v] < 0) {
+					depth++;
+					stack[depth] = v;
+					cursor[depth] = start[v];
+					preorder[v] = reached;
+					order[reached++] = v;
+					band[v] = bands - 1;
+					searching[v] = true;
+				}
+			}
+		}
+
+		// 2. longest-path layering, in reverse finish order (a topological order once back edges are ignored),
+		// remembering for each node the first edge into it from the layer before, and where that edge comes from
+		int[] layer = new int[n];
+		int[] primary = new int[n];
+		int[] primarySource = new int[n];
+		Arrays.fill(primary, -1);
+		int layers = reached > 0 ? 1 : 0;
+		for (int i = finished - 1; i >= 0; i--) {
+			int u = postorder[i];
+			for (int k = start[u]; k < start[u + 1]; k++) {
+				int e = edges[k];
+				int v = graph.getEdgeTo(e);
+				if (!back[e] && layer[u] + 1 > layer[v]) {
+					layer[v] = layer[u] + 1;
+					primary[v] = e;
+					primarySource[v] = u;
+					layers = Math.max(layers, layer[v] + 1);
+				}
+			}
+		}
+
+		// the layers' positions
+		int[] layerWidth = new int[layers];
+		for (int i = 0; i < reached; i++) {
+			int v = order[i];
+			layerWidth[layer[v]] = Math.max(layerWidth[layer[v]], graph.getWidth(v));
+		}
+		int[] layerX = new int[layers];
+		for (int l = 1; l < layers; l++) {
+			layerX[l] = layerX[l - 1] + layerWidth[l - 1] + horizontalGap;
+		}
+
+		// 3. the nodes each root reached first come one after another in reach order, and make up its band;
+		// sort them by band, then layer, then reach order, with two stable counting sorts
+		int[] byLayer = countingSort(order, reached, layer, layers);
+		int[] sorted = countingSort(byLayer, reached, band, bands);
+
+		// place the bands one below the other, and each band layer by layer from the left, as the layer before
+		// is placed by then
+		int[] x = new int[n];
+		int[] y = new int[n];
+		Arrays.fill(x, -1);
+		Arrays.fill(y, -1);
+		int height = 0;
+		int bandTop = 0;
+		long[] keys = new long[reached];
+		for (int i = 0; i < reached; ) {
+			int b = band[sorted[i]];
+			int l = layer[sorted[i]];
+			if (i == 0 || b != band[sorted[i - 1]]) {
+				bandTop = i == 0 ? 0 : height + verticalGap;
+			}
+			int count = 0;
+			for (; i < reached && band[sorted[i]] == b && layer[sorted[i]] == l; i++) {
+				int v = sorted[i];
+				int e = primary[v];
+				long wanted = bandTop;
+				// the edge can come from a later band, which isn't placed yet
+				if (e >= 0 && x[primarySource[v]] >= 0) {
+					wanted = Math.max(bandTop, y[primarySource[v]] + graph.getEdgePort(e));
+				}
+				// by wanted height, then reach order, which is below 2^31
+				keys[count++] = (wanted << 32) | preorder[v];
+			}
+			Arrays.sort(keys, 0, count);
+			int bottom = bandTop;
+			for (int k = 0; k < count; k++) {
+				int v = order[(int) keys[k]];
+				int wanted = (int) (keys[k] >>> 32);
+				x[v] = layerX[l];
+				y[v] = Math.max(wanted, bottom);
+				bottom = y[v] + graph.getHeight(v) + verticalGap;
+				height = Math.max(height, y[v] + graph.getHeight(v));
+			}
+		}
+
+		int[] parent = new int[n];
+		for (int v = 0; v < n; v++) {
+			parent[v] = primary[v] >= 0 ? primarySource[v] : -1;
+		}
+		int width = layers > 0 ? layerX[layers - 1] + layerWidth[layers - 1] : 0;
+		return new Result(x, y, Arrays.copyOf(order, reached), parent, width, height, layers, cyclic);
+	}
+
+	/**
+	 * The first {@code count} nodes sorted by the given key, which is below {@code keys}. The sort is stable.
+	 */
+	private static int[] countingSort(int[] nodes, int count, int[] key, int keys) {
+		int[] start = new int[keys + 1];
+		for (int i = 0; i < count; i++) {
+			start[key[nodes[i]] + 1]++;
+		}
+		for (int k = 0; k < keys; k++) {
+			start[k + 1] += start[k];
+		}
+		int[] sorted = new int[count];
+		for (int i = 0; i < count; i++) {
+			sorted[start[key[nodes[i]]]++] = nodes[i];
+		}
+		return sorted;
+	}
+}
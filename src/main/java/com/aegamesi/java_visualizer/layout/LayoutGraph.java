@@ -0,0 +1,122 @@
+package com.aegamesi.java_visualizer.layout;
+
+import java.util.Arrays;
+
+/**
+ * A directed graph of boxes to lay out, such as heap entities and the references between them.
+ * <p>
+ * Nodes are numbered from 0 in the order they're added. An edge leaves its source at a port, some distance down
+ * the source box, and the order edges are added in is the order they're followed in. Only the nodes that can be
+ * reached from a root are laid out; roots are followed in the order they're added in.
+ */
+public class LayoutGraph {
+	private int nodeCount;
+	private int[] widths = new int[16];
+	private int[] heights = new int[16];
+
+	private int edgeCount;
+	private int[] edgeFrom = new int[16];
+	private int[] edgeTo = new int[16];
+	private int[] edgePort = new int[16];
+
+	private int rootCount;
+	private int[] roots = new int[16];
+
+	/**
+	 * Adds a box of the given size, and returns its number.
+	 */
+	public int addNode(int width, int height) {
+		if (nodeCount == widths.length) {
+			widths = Arrays.copyOf(widths, nodeCount * 2);
+			heights = Arrays.copyOf(heights, nodeCount * 2);
+		}
+		widths[nodeCount] = width;
+		heights[nodeCount] = height;
+		return nodeCount++;
+	}
+
+	/**
+	 * Adds an edge leaving {@code from} at {@code portY} pixels below its top.
+	 */
+	public void addEdge(int from, int to, int portY) {
+		checkNode(from);
+		checkNode(to);
+		if (edgeCount == edgeFrom.length) {
+			edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+			edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+			edgePort = Arrays.copyOf(edgePort, edgeCount * 2);
+		}
+		edgeFrom[edgeCount] = from;
+		edgeTo[edgeCount] = to;
+		edgePort[edgeCount] = portY;
+		edgeCount++;
+	}
+
+	/**
+	 * Adds a node the layout starts from. A node can be added as a root more than once.
+	 */
+	public void addRoot(int node) {
+		checkNode(node);
+		if (rootCount == roots.length) {
+			roots = Arrays.copyOf(roots, rootCount * 2);
+		}
+		roots[rootCount++] = node;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	int getWidth(int node) {
+		return widths[node];
+	}
+
+	int getHeight(int node) {
+		return heights[node];
+	}
+
+	int getRootCount() {
+		return rootCount;
+	}
+
+	int getRoot(int i) {
+		return roots[i];
+	}
+
+	int getEdgeTo(int edge) {
+		return edgeTo[edge];
+	}
+
+	int getEdgePort(int edge) {
+		return edgePort[edge];
+	}
+
+	/**
+	 * Where the edges out of each node start in the array of edges sorted by source, {@code edgeCount} at the end.
+	 * The edges of a node keep the order they were added in.
+	 */
+	int[] sortEdgesBySource(int[] sortedEdges) {
+		int[] start = new int[nodeCount + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			start[edgeFrom[e] + 1]++;
+		}
+		for (int n = 0; n < nodeCount; n++) {
+			start[n + 1] += start[n];
+		}
+		int[] next = Arrays.copyOf(start, nodeCount);
+		for (int e = 0; e < edgeCount; e++) {
+			sortedEdges[next[edgeFrom[e]]++] = e;
+		}
+		return start;
+	}
+
+	private void checkNode(int node) {
+		if (node < 0 || node >= nodeCount) {
+			throw new IndexOutOfBoundsException("No node " + node);
+		}
+	}
+}
@@ -0,0 +1,672 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reads and writes traces in a compact binary format, streamed through a small buffer, so that neither side
+ * holds more than the trace itself.
+ * <p>
+ * The format starts with a magic number and a version. Integers are varints (zigzag-encoded where they can be
+ * negative), entity ids are written as the difference from the id before, and names (labels, frame, field and
+ * local names) are written once and referred back to by number afterwards. String values are written as they are.
+ * Unlike JSON, the format keeps statics, whether frames are internal, and primitive arrays as such.
+ * <p>
+ * A trace can also be written as a delta from the one before it (with a magic number of its own), which only holds
+ * the entities that differ; {@link TraceRecording} uses these for the steps between full ones.
+ */
+class BinaryTraceCodec {
+	private static final int MAGIC = 0x4A565452; // "JVTR"
+	private static final int DELTA_MAGIC = 0x4A565444; // "JVTD"
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// how each kind of entity is written
+	private static final int OBJECT = 0;
+	private static final int LIST = 1;
+	private static final int PRIMITIVE_LIST = 2;
+	private static final int MAP = 3;
+	private static final int PRIMITIVE = 4;
+	private static final int STUB = 5;
+
+	private static final HeapEntity.Type[] ENTITY_TYPES = HeapEntity.Type.values();
+	private static final Value.Type[] VALUE_TYPES = Value.Type.values();
+
+	static void write(ExecutionTrace trace, WritableByteChannel channel) throws IOException {
+		Out out = new Out(channel);
+		out.int32(MAGIC);
+		out.varint(VERSION);
+		writeStack(out, trace);
+
+		out.varint(trace.heap.size());
+		long lastId = 0;
+		for (HeapEntity e : trace.heap.values()) {
+			writeEntity(out, e, lastId);
+			lastId = e.id;
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes a trace as the changes from the one before it: the stack and statics as they are, then the ids of
+	 * the entities that are gone, then the entities that are new or have changed. Entities that are the same are
+	 * left out.
+	 */
+	static void writeDelta(ExecutionTrace previous, ExecutionTrace trace, WritableByteChannel channel)
+			throws IOException {
+		Out out = new Out(channel);
+		out.int32(DELTA_MAGIC);
+		out.varint(VERSION);
+		writeStack(out, trace);
+
+		long[] removed = previous.heap.keys();
+		int n = 0;
+		for (long id : removed) {
+			if (!trace.heap.containsKey(id)) {
+				removed[n++] = id;
+			}
+		}
+		out.varint(n);
+		long lastId = 0;
+		for (int i = 0; i < n; i++) {
+			out.zigzag(removed[i] - lastId);
+			lastId = removed[i];
+		}
+
+		List<HeapEntity> changed = new ArrayList<>();
+		trace.heap.forEachEntry((id, e) -> {
+			if (!same(previous.heap.get(id), e)) {
+				changed.add(e);
+			}
+		});
+		out.varint(changed.size());
+		lastId = 0;
+		for (HeapEntity e : changed) {
+			writeEntity(out, e, lastId);
+			lastId = e.id;
+		}
+		out.flush();
+	}
+
+	private static void writeStack(Out out, ExecutionTrace trace) throws IOException {
+		out.varint(trace.frames.size());
+		for (Frame frame : trace.frames) {
+			out.name(frame.name);
+			out.bool(frame.internal);
+			out.values(frame.locals);
+		}
+		out.values(trace.statics);
+	}
+
+	private static void writeEntity(Out out, HeapEntity e, long lastId) throws IOException {
+		out.varint(kind(e));
+		out.zigzag(e.id - lastId);
+		out.varint(e.type.ordinal());
+		out.name(e.label);
+		if (e instanceof HeapObject) {
+			out.values(((HeapObject) e).fields);
+		} else if (e instanceof HeapPrimitiveList) {
+			HeapPrimitiveList list = (HeapPrimitiveList) e;
+			Value.Type elementType = list.getElementType();
+			out.varint(elementType.ordinal());
+			out.varint(list.items.size());
+			for (int i = 0; i < list.items.size(); i++) {
+				if (elementType == Value.Type.DOUBLE) {
+					out.int64(list.getBits(i));
+				} else {
+					out.zigzag(list.getBits(i));
+				}
+			}
+			out.varint(list.omittedOffset);
+			out.varint(list.omittedCount);
+		} else if (e instanceof HeapList) {
+			HeapList list = (HeapList) e;
+			out.varint(list.items.size());
+			for (Value v : list.items) {
+				out.value(v);
+			}
+			out.varint(list.omittedOffset);
+			out.varint(list.omittedCount);
+		} else if (e instanceof HeapMap) {
+			HeapMap map = (HeapMap) e;
+			out.varint(map.pairs.size());
+			for (HeapMap.Pair pair : map.pairs) {
+				out.value(pair.key);
+				out.value(pair.val);
+			}
+			out.varint(map.omittedOffset);
+			out.varint(map.omittedCount);
+		} else if (e instanceof HeapPrimitive) {
+			out.value(((HeapPrimitive) e).value);
+		}
+	}
+
+	static ExecutionTrace read(ReadableByteChannel channel) throws IOException {
+		return read(new In(channel));
+	}
+
+	/**
+	 * Reads a trace from a buffer, such as part of a mapped file, straight from its memory.
+	 */
+	static ExecutionTrace read(ByteBuffer buffer) throws IOException {
+		return read(new In(buffer));
+	}
+
+	private static ExecutionTrace read(In in) throws IOException {
+		header(in, MAGIC);
+		ExecutionTrace trace = new ExecutionTrace();
+		readStack(in, trace);
+
+		int entities = in.count();
+		long lastId = 0;
+		for (int i = 0; i < entities; i++) {
+			HeapEntity e = readEntity(in, lastId);
+			lastId = e.id;
+			trace.heap.put(e.id, e);
+		}
+		return trace;
+	}
+
+	/**
+	 * Reads a trace written by {@link #writeDelta}, given the one before it, which is left as it is. The entities
+	 * that haven't changed are shared with it.
+	 */
+	static ExecutionTrace readDelta(ExecutionTrace previous, ByteBuffer buffer) throws IOException {
+		In in = new In(buffer);
+		header(in, DELTA_MAGIC);
+		ExecutionTrace trace = new ExecutionTrace();
+		readStack(in, trace);
+
+		trace.heap = new LongMap<>(previous.heap);
+		int removed = in.count();
+		long lastId = 0;
+		for (int i = 0; i < removed; i++) {
+			lastId += in.zigzag();
+			trace.heap.remove(lastId);
+		}
+		int changed = in.count();
+		lastId = 0;
+		for (int i = 0; i < changed; i++) {
+			HeapEntity e = readEntity(in, lastId);
+			lastId = e.id;
+			trace.heap.put(e.id, e);
+		}
+		return trace;
+	}
+
+	private static void header(In in, int magic) throws IOException {
+		if (in.int32() != magic) {
+			throw new IOException(magic == MAGIC ? "Not a binary trace" : "Not a binary trace delta");
+		}
+		int version = (int) in.varint();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary trace version " + version);
+		}
+	}
+
+	private static void readStack(In in, ExecutionTrace trace) throws IOException {
+		int frames = in.count();
+		for (int i = 0; i < frames; i++) {
+			Frame frame = new Frame();
+			frame.name = in.name();
+			frame.internal = in.bool();
+			in.values(frame.locals);
+			trace.frames.add(frame);
+		}
+		in.values(trace.statics);
+	}
+
+	private static HeapEntity readEntity(In in, long lastId) throws IOException {
+		int kind = (int) in.varint();
+		long id = lastId + in.zigzag();
+		HeapEntity.Type type = ENTITY_TYPES[in.ordinal(ENTITY_TYPES.length)];
+		String label = in.name();
+		HeapEntity e;
+		switch (kind) {
+			case OBJECT: {
+				HeapObject object = new HeapObject();
+				in.values(object.fields);
+				e = object;
+				break;
+			}
+			case PRIMITIVE_LIST: {
+				Value.Type elementType = VALUE_TYPES[in.ordinal(VALUE_TYPES.length)];
+				int n = in.count();
+				long[] bits = new long[in.capacity(n, elementType == Value.Type.DOUBLE ? 8 : 1)];
+				for (int k = 0; k < n; k++) {
+					if (k == bits.length) {
+						bits = Arrays.copyOf(bits, (int) Math.min(n, 2L * k));
+					}
+					bits[k] = elementType == Value.Type.DOUBLE ? in.int64() : in.zigzag();
+				}
+				HeapPrimitiveList list = new HeapPrimitiveList(elementType, bits);
+				list.omittedOffset = in.count();
+				list.omittedCount = in.count();
+				e = list;
+				break;
+			}
+			case LIST: {
+				HeapList list = new HeapList();
+				int n = in.count();
+				for (int k = 0; k < n; k++) {
+					list.items.add(in.value());
+				}
+				list.omittedOffset = in.count();
+				list.omittedCount = in.count();
+				e = list;
+				break;
+			}
+			case MAP: {
+				HeapMap map = new HeapMap();
+				int n = in.count();
+				for (int k = 0; k < n; k++) {
+					HeapMap.Pair pair = new HeapMap.Pair();
+					pair.key = in.value();
+					pair.val = in.value();
+					map.pairs.add(pair);
+				}
+				map.omittedOffset = in.count();
+				map.omittedCount = in.count();
+				e = map;
+				break;
+			}
+			case PRIMITIVE: {
+				HeapPrimitive primitive = new HeapPrimitive();
+				primitive.value = in.value();
+				e = primitive;
+				break;
+			}
+			case STUB:
+				e = new HeapStub();
+				break;
+			default:
+				throw new IOException("Unknown entity kind " + kind);
+		}
+		e.id = id;
+		e.type = type;
+		e.label = label;
+		return e;
+	}
+
+	/**
+	 * Whether two entities hold the same things; either may be null.
+	 */
+	static boolean same(HeapEntity a, HeapEntity b) {
+		if (a == b) {
+			return true;
+		}
+		if (a == null || b == null || a.getClass() != b.getClass() || a.id != b.id || a.type != b.type
+				|| !Objects.equals(a.label, b.label)) {
+			return false;
+		}
+		if (a instanceof HeapObject) {
+			return ((HeapObject) a).fields.equals(((HeapObject) b).fields);
+		} else if (a instanceof HeapList) {
+			HeapList x = (HeapList) a;
+			HeapList y = (HeapList) b;
+			if (a instanceof HeapPrimitiveList
+					&& ((HeapPrimitiveList) a).getElementType() != ((HeapPrimitiveList) b).getElementType()) {
+				return false;
+			}
+			return x.omittedOffset == y.omittedOffset && x.omittedCount == y.omittedCount && x.items.equals(y.items);
+		} else if (a instanceof HeapMap) {
+			HeapMap x = (HeapMap) a;
+			HeapMap y = (HeapMap) b;
+			if (x.omittedOffset != y.omittedOffset || x.omittedCount != y.omittedCount
+					|| x.pairs.size() != y.pairs.size()) {
+				return false;
+			}
+			for (int i = 0; i < x.pairs.size(); i++) {
+				HeapMap.Pair p = x.pairs.get(i);
+				HeapMap.Pair q = y.pairs.get(i);
+				if (!p.key.equals(q.key) || !p.val.equals(q.val)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (a instanceof HeapPrimitive) {
+			return ((HeapPrimitive) a).value.equals(((HeapPrimitive) b).value);
+		}
+		return true;
+	}
+
+	private static int kind(HeapEntity e) {
+		if (e instanceof HeapObject) {
+			return OBJECT;
+		} else if (e instanceof HeapPrimitiveList) {
+			return PRIMITIVE_LIST;
+		} else if (e instanceof HeapList) {
+			return LIST;
+		} else if (e instanceof HeapMap) {
+			return MAP;
+		} else if (e instanceof HeapPrimitive) {
+			return PRIMITIVE;
+		}
+		return STUB;
+	}
+
+	/**
+	 * Writes to a channel through a buffer.
+	 */
+	private static class Out {
+		private final WritableByteChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		// the number of each name written so far
+		private final Map<String, Integer> names = new HashMap<>();
+
+		Out(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		void values(Map<String, Value> values) throws IOException {
+			varint(values.size());
+			for (Map.Entry<String, Value> e : values.entrySet()) {
+				name(e.getKey());
+				value(e.getValue());
+			}
+		}
+
+		void value(Value v) throws IOException {
+			varint(v.getType().ordinal());
+			switch (v.getType()) {
+				case STRING:
+					string(v.getString());
+					break;
+				case LONG:
+				case REFERENCE:
+					zigzag(v.getBits());
+					break;
+				case DOUBLE:
+					int64(v.getBits());
+					break;
+				case BOOLEAN:
+					bool(v.getBoolean());
+					break;
+				case CHAR:
+					varint(v.getChar());
+					break;
+			}
+		}
+
+		/**
+		 * A name: 0 for null, an even number for one written before (its number times two, plus two), or an odd
+		 * number for a new one (its length in bytes times two, plus one) followed by its bytes.
+		 */
+		void name(String s) throws IOException {
+			if (s == null) {
+				varint(0);
+				return;
+			}
+			Integer known = names.get(s);
+			if (known != null) {
+				varint((known + 1L) * 2);
+				return;
+			}
+			names.put(s, names.size());
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			varint(bytes.length * 2L + 1);
+			bytes(bytes);
+		}
+
+		/**
+		 * A string: 0 for null, otherwise its length in bytes plus one, followed by its bytes.
+		 */
+		void string(String s) throws IOException {
+			if (s == null) {
+				varint(0);
+				return;
+			}
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			varint(bytes.length + 1L);
+			bytes(bytes);
+		}
+
+		void bool(boolean b) throws IOException {
+			room(1);
+			buffer.put((byte) (b ? 1 : 0));
+		}
+
+		void int32(int i) throws IOException {
+			room(4);
+			buffer.putInt(i);
+		}
+
+		void int64(long l) throws IOException {
+			room(8);
+			buffer.putLong(l);
+		}
+
+		void zigzag(long l) throws IOException {
+			varint((l << 1) ^ (l >> 63));
+		}
+
+		/**
+		 * An unsigned varint: 7 bits per byte, least significant first, the high bit set on all but the last.
+		 */
+		void varint(long l) throws IOException {
+			room(10);
+			while ((l & ~0x7FL) != 0) {
+				buffer.put((byte) ((l & 0x7F) | 0x80));
+				l >>>= 7;
+			}
+			buffer.put((byte) l);
+		}
+
+		private void bytes(byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				room(1);
+				int n = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.put(bytes, offset, n);
+				offset += n;
+			}
+		}
+
+		private void room(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Reads from a channel through a buffer.
+	 */
+	private static class In {
+		// null when reading straight from a buffer that holds everything there is
+		private final ReadableByteChannel channel;
+		private final ByteBuffer buffer;
+		private final List<String> names = new ArrayList<>();
+
+		In(ReadableByteChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.flip();
+		}
+
+		In(ByteBuffer buffer) {
+			this.channel = null;
+			this.buffer = buffer.slice();
+		}
+
+		void values(Map<String, Value> out) throws IOException {
+			int n = count();
+			for (int i = 0; i < n; i++) {
+				String name = name();
+				if (name == null) {
+					throw new IOException("Value without a name");
+				}
+				out.put(name, value());
+			}
+		}
+
+		Value value() throws IOException {
+			Value.Type type = VALUE_TYPES[ordinal(VALUE_TYPES.length)];
+			switch (type) {
+				case STRING:
+					return Value.ofString(string());
+				case LONG:
+				case REFERENCE:
+					return Value.ofBits(type, zigzag());
+				case DOUBLE:
+					return Value.ofBits(type, int64());
+				case BOOLEAN:
+					return Value.ofBoolean(bool());
+				case CHAR:
+					return Value.ofChar((char) varint());
+				default:
+					return Value.ofBits(type, 0);
+			}
+		}
+
+		String name() throws IOException {
+			long tag = varint();
+			if (tag == 0) {
+				return null;
+			}
+			if ((tag & 1) == 0) {
+				long index = tag / 2 - 1;
+				if (index >= names.size()) {
+					throw new IOException("Unknown name " + index);
+				}
+				return names.get((int) index);
+			}
+			String s = utf8(tag >>> 1);
+			names.add(s);
+			return s;
+		}
+
+		String string() throws IOException {
+			long tag = varint();
+			return tag == 0 ? null : utf8(tag - 1);
+		}
+
+		boolean bool() throws IOException {
+			need(1);
+			return buffer.get() != 0;
+		}
+
+		int int32() throws IOException {
+			need(4);
+			return buffer.getInt();
+		}
+
+		long int64() throws IOException {
+			need(8);
+			return buffer.getLong();
+		}
+
+		long zigzag() throws IOException {
+			long l = varint();
+			return (l >>> 1) ^ -(l & 1);
+		}
+
+		long varint() throws IOException {
+			long l = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				need(1);
+				byte b = buffer.get();
+				l |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return l;
+				}
+			}
+			throw new IOException("Malformed varint");
+		}
+
+		/**
+		 * A size or offset, which has to fit in an int.
+		 */
+		int count() throws IOException {
+			long n = varint();
+			if (n > Integer.MAX_VALUE) {
+				throw new IOException("Bad count " + n);
+			}
+			return (int) n;
+		}
+
+		/**
+		 * How many of something taking at least the given number of bytes each to make room for up front: all of
+		 * them if there are known to be enough bytes left, or else the first few, so that a corrupt count can only
+		 * make the reader allocate about as much as it actually reads. Throws if there are known to be too few.
+		 */
+		int capacity(int n, int minBytes) throws IOException {
+			long left = buffer.remaining();
+			if (channel instanceof SeekableByteChannel) {
+				SeekableByteChannel file = (SeekableByteChannel) channel;
+				left += Math.max(0, file.size() - file.position());
+			} else if (channel != null) {
+				return Math.min(n, BUFFER_SIZE);
+			}
+			if (n > left / minBytes) {
+				throw new EOFException("Binary trace ends early");
+			}
+			return n;
+		}
+
+		int ordinal(int values) throws IOException {
+			long n = varint();
+			if (n >= values) {
+				throw new IOException("Bad enum ordinal " + n);
+			}
+			return (int) n;
+		}
+
+		private String utf8(long length) throws IOException {
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Bad string length " + length);
+			}
+			int size = (int) length;
+			byte[] bytes = new byte[capacity(size, 1)];
+			int offset = 0;
+			while (offset < size) {
+				if (offset == bytes.length) {
+					bytes = Arrays.copyOf(bytes, (int) Math.min(size, 2L * offset));
+				}
+				need(1);
+				int n = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.get(bytes, offset, n);
+				offset += n;
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Makes sure the buffer has at least the given number of bytes, reading more if needed.
+		 */
+		private void need(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes) {
+				return;
+			}
+			if (channel == null) {
+				throw new EOFException("Binary trace ends early");
+			}
+			buffer.compact();
+			while (buffer.position() < bytes) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException("Binary trace ends early");
+				}
+			}
+			buffer.flip();
+		}
+	}
+}
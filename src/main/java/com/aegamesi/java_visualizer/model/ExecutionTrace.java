@@ -2,6 +2,11 @@ package com.aegamesi.java_visualizer.model;
 
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -9,9 +14,30 @@ import java.util.TreeMap;
 
 public class ExecutionTrace {
 	public List<Frame> frames = new ArrayList<>();
-	public Map<Long, HeapEntity> heap = new TreeMap<>();
+	/**
+	 * The heap entities by id, in the order they were added; for the tracer, that's the order they were found in.
+	 */
+	public LongMap<HeapEntity> heap = new LongMap<>();
 	public Map<String, Value> statics = new TreeMap<>();
 
+	/**
+	 * Ids of the heap entities that were carried over unchanged from the previous trace;
+	 * all other entities in the heap were converted afresh.
+	 */
+	public LongSet reused = new LongSet();
+
+	/**
+	 * A shallow copy: the frames and heap entities are shared, but the collections holding them are not.
+	 */
+	public ExecutionTrace copy() {
+		ExecutionTrace t = new ExecutionTrace();
+		t.frames.addAll(frames);
+		t.heap = new LongMap<>(heap);
+		t.statics.putAll(statics);
+		t.reused = new LongSet(reused);
+		return t;
+	}
+
 	public String toJsonString() {
 		JSONObject obj = new JSONObject();
 		obj.put("frames", frames.stream().map(Frame::toJson).toArray());
@@ -31,4 +57,35 @@ public class ExecutionTrace {
 		}
 		return trace;
 	}
+
+	/**
+	 * Writes this trace as JSON, in the same format as {@link #toJsonString()}, without building it up in memory
+	 * first. The writer is flushed, but left open.
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		JsonTraceCodec.write(this, writer);
+	}
+
+	/**
+	 * Reads a trace from JSON as it's parsed, without holding the whole document in memory like
+	 * {@link #fromJsonString} does. The reader is left open.
+	 */
+	public static ExecutionTrace readJson(Reader reader) throws IOException {
+		return JsonTraceCodec.read(reader);
+	}
+
+	/**
+	 * Writes this trace in the compact binary format, which is smaller and quicker to read back than JSON,
+	 * and unlike JSON also keeps the statics. The channel is left open.
+	 */
+	public void writeBinary(WritableByteChannel channel) throws IOException {
+		BinaryTraceCodec.write(this, channel);
+	}
+
+	/**
+	 * Reads a trace written by {@link #writeBinary}. The channel is left open.
+	 */
+	public static ExecutionTrace readBinary(ReadableByteChannel channel) throws IOException {
+		return BinaryTraceCodec.read(channel);
+	}
 }
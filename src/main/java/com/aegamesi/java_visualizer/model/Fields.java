@@ -0,0 +1,145 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Named values, the fields of an object or the locals of a frame, in name order. The names are kept in a
+ * {@link Shape} shared with every other set of fields that has the same ones; only the values are kept here, in an
+ * array in the same order.
+ * <p>
+ * Works as any map, but is quickest filled through {@link #set(int, Value)}, after making it with its shape.
+ * Not thread-safe.
+ */
+public class Fields extends AbstractMap<String, Value> {
+	private static final Value[] NONE = new Value[0];
+
+	private Shape shape;
+	private Value[] values;
+
+	public Fields() {
+		shape = Shape.EMPTY;
+		values = NONE;
+	}
+
+	/**
+	 * Fields with the names of the given shape, all of them null until set.
+	 */
+	public Fields(Shape shape) {
+		this.shape = shape;
+		this.values = shape.size() == 0 ? NONE : new Value[shape.size()];
+	}
+
+	public Shape shape() {
+		return shape;
+	}
+
+	public Value value(int index) {
+		return values[index];
+	}
+
+	public void set(int index, Value value) {
+		values[index] = value;
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && shape.indexOf((String) key) >= 0;
+	}
+
+	@Override
+	public Value get(Object key) {
+		int i = key instanceof String ? shape.indexOf((String) key) : -1;
+		return i >= 0 ? values[i] : null;
+	}
+
+	@Override
+	public Value put(String key, Value value) {
+		int i = shape.indexOf(key);
+		if (i >= 0) {
+			Value old = values[i];
+			values[i] = value;
+			return old;
+		}
+		i = -i - 1;
+		Value[] more = new Value[values.length + 1];
+		System.arraycopy(values, 0, more, 0, i);
+		System.arraycopy(values, i, more, i + 1, values.length - i);
+		more[i] = value;
+		shape = shape.with(key);
+		values = more;
+		return null;
+	}
+
+	@Override
+	public Value remove(Object key) {
+		int i = key instanceof String ? shape.indexOf((String) key) : -1;
+		if (i < 0) {
+			return null;
+		}
+		Value old = values[i];
+		String[] names = shape.names().toArray(new String[0]);
+		names[i] = names[names.length - 1];
+		shape = Shape.of(Arrays.asList(names).subList(0, names.length - 1));
+		Value[] fewer = new Value[values.length - 1];
+		System.arraycopy(values, 0, fewer, 0, i);
+		System.arraycopy(values, i + 1, fewer, i, values.length - i - 1);
+		values = fewer;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		shape = Shape.EMPTY;
+		values = NONE;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Value>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Value>>() {
+			@Override
+			public Iterator<Map.Entry<String, Value>> iterator() {
+				return new Iterator<Map.Entry<String, Value>>() {
+					private int next;
+
+					@Override
+					public boolean hasNext() {
+						return next < values.length;
+					}
+
+					@Override
+					public Map.Entry<String, Value> next() {
+						if (next >= values.length) {
+							throw new NoSuchElementException();
+						}
+						int i = next++;
+						return new AbstractMap.SimpleEntry<String, Value>(shape.name(i), values[i]) {
+							@Override
+							public Value setValue(Value value) {
+								super.setValue(value);
+								Value old = values[i];
+								values[i] = value;
+								return old;
+							}
+						};
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+	}
+}
@@ -3,13 +3,10 @@ package com.aegamesi.java_visualizer.model;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.Map;
-import java.util.TreeMap;
-
 public class Frame {
 	public String name;
 	public boolean internal;
-	public Map<String, Value> locals = new TreeMap<>();
+	public Fields locals = new Fields();
 
 	JSONObject toJson() {
 		JSONObject o = new JSONObject();
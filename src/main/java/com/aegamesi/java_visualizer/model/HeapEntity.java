@@ -8,7 +8,7 @@ public abstract class HeapEntity {
 	public String label;
 
 	public enum Type {
-		LIST, SET, MAP, OBJECT, PRIMITIVE
+		LIST, SET, MAP, OBJECT, PRIMITIVE, STUB
 	}
 
 	public abstract boolean hasSameStructure(HeapEntity other);
@@ -38,6 +38,9 @@ public abstract class HeapEntity {
 			case PRIMITIVE:
 				e = HeapPrimitive.fromJson(o);
 				break;
+			case STUB:
+				e = new HeapStub();
+				break;
 		}
 		e.id = o.getLong("id");
 		e.type = type;
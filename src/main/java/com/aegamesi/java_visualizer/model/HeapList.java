@@ -9,6 +9,44 @@ import java.util.List;
 public class HeapList extends HeapEntity {
 	public List<Value> items = new ArrayList<>();
 
+	/**
+	 * Lists that are too long only have a window of their elements converted: a head, then {@code omittedCount}
+	 * elements left out, then a tail. {@code omittedOffset} is the index in {@link #items} where the gap is.
+	 */
+	public int omittedOffset;
+	public int omittedCount;
+
+	public boolean isTruncated() {
+		return omittedCount > 0;
+	}
+
+	/**
+	 * The index of {@code items.get(i)} in the actual list.
+	 */
+	public int originalIndex(int i) {
+		return (isTruncated() && i >= omittedOffset) ? i + omittedCount : i;
+	}
+
+	/**
+	 * Returns a copy of this list with the first omitted elements filled in by {@code loaded}.
+	 */
+	public HeapList withLoaded(List<Value> loaded) {
+		HeapList out = new HeapList();
+		out.items.addAll(items.subList(0, omittedOffset));
+		out.items.addAll(loaded);
+		out.items.addAll(items.subList(omittedOffset, items.size()));
+		copyWindow(out, loaded.size());
+		return out;
+	}
+
+	void copyWindow(HeapList out, int loaded) {
+		out.id = id;
+		out.type = type;
+		out.label = label;
+		out.omittedOffset = omittedOffset + loaded;
+		out.omittedCount = omittedCount - loaded;
+	}
+
 	@Override
 	public boolean hasSameStructure(HeapEntity other) {
 		if (other instanceof HeapList) {
@@ -21,6 +59,10 @@ public class HeapList extends HeapEntity {
 	JSONObject toJson() {
 		JSONObject o = super.toJson();
 		o.put("items", items.stream().map(Value::toJson).toArray());
+		if (isTruncated()) {
+			o.put("omitted_offset", omittedOffset);
+			o.put("omitted_count", omittedCount);
+		}
 		return o;
 	}
 
@@ -29,6 +71,8 @@ public class HeapList extends HeapEntity {
 		for (Object item : o.getJSONArray("items")) {
 			e.items.add(Value.fromJson((JSONArray) item));
 		}
+		e.omittedOffset = o.optInt("omitted_offset", 0);
+		e.omittedCount = o.optInt("omitted_count", 0);
 		return e;
 	}
 }
@@ -9,11 +9,38 @@ import java.util.List;
 public class HeapMap extends HeapEntity{
 	public List<Pair> pairs = new ArrayList<>();
 
+	/**
+	 * Maps that are too big only have their first {@code omittedOffset} entries converted;
+	 * the remaining {@code omittedCount} are left out.
+	 */
+	public int omittedOffset;
+	public int omittedCount;
+
 	public static class Pair {
 		public Value key;
 		public Value val;
 	}
 
+	public boolean isTruncated() {
+		return omittedCount > 0;
+	}
+
+	/**
+	 * Returns a copy of this map with the first omitted entries filled in by {@code loaded}.
+	 */
+	public HeapMap withLoaded(List<Pair> loaded) {
+		HeapMap out = new HeapMap();
+		out.id = id;
+		out.type = type;
+		out.label = label;
+		out.pairs.addAll(pairs.subList(0, omittedOffset));
+		out.pairs.addAll(loaded);
+		out.pairs.addAll(pairs.subList(omittedOffset, pairs.size()));
+		out.omittedOffset = omittedOffset + loaded.size();
+		out.omittedCount = omittedCount - loaded.size();
+		return out;
+	}
+
 	@Override
 	public boolean hasSameStructure(HeapEntity other) {
 		if (other instanceof HeapMap) {
@@ -27,6 +54,10 @@ public class HeapMap extends HeapEntity{
 		JSONObject o = super.toJson();
 		o.put("keys", pairs.stream().map(p -> p.key.toJson()).toArray());
 		o.put("vals", pairs.stream().map(p -> p.val.toJson()).toArray());
+		if (isTruncated()) {
+			o.put("omitted_offset", omittedOffset);
+			o.put("omitted_count", omittedCount);
+		}
 		return o;
 	}
 
@@ -41,6 +72,8 @@ public class HeapMap extends HeapEntity{
 			p.val = Value.fromJson(vals.getJSONArray(i));
 			e.pairs.add(p);
 		}
+		e.omittedOffset = o.optInt("omitted_offset", 0);
+		e.omittedCount = o.optInt("omitted_count", 0);
 		return e;
 	}
 }
@@ -3,16 +3,13 @@ package com.aegamesi.java_visualizer.model;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.Map;
-import java.util.TreeMap;
-
 public class HeapObject extends HeapEntity {
-	public Map<String, Value> fields = new TreeMap<>();
+	public Fields fields = new Fields();
 
 	@Override
 	public boolean hasSameStructure(HeapEntity other) {
 		if (other instanceof HeapObject) {
-			return fields.size() == ((HeapObject) other).fields.size();
+			return fields.shape() == ((HeapObject) other).fields.shape();
 		}
 		return false;
 	}
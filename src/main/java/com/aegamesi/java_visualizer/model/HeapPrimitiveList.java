@@ -0,0 +1,82 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A primitive array, stored unboxed: each element takes up a single {@code long}.
+ * {@link #items} is a read-only view that creates {@link Value}s as they're accessed.
+ */
+public class HeapPrimitiveList extends HeapList {
+	private final Value.Type elementType;
+	private final long[] elements;
+
+	public HeapPrimitiveList(Value.Type elementType, int length) {
+		this(elementType, new long[length]);
+	}
+
+	/**
+	 * A list of the given raw elements, which it takes over; for the binary codec.
+	 */
+	HeapPrimitiveList(Value.Type elementType, long[] elements) {
+		this.elementType = elementType;
+		this.elements = elements;
+		this.items = new Items();
+	}
+
+	public Value.Type getElementType() {
+		return elementType;
+	}
+
+	public void setLong(int index, long value) {
+		elements[index] = value;
+	}
+
+	public void setDouble(int index, double value) {
+		elements[index] = Double.doubleToRawLongBits(value);
+	}
+
+	public void setBoolean(int index, boolean value) {
+		elements[index] = value ? 1 : 0;
+	}
+
+	public void setChar(int index, char value) {
+		elements[index] = value;
+	}
+
+	public void set(int index, Value value) {
+		elements[index] = value.getBits();
+	}
+
+	/**
+	 * The raw element at the given index, as stored; for the binary codec.
+	 */
+	long getBits(int index) {
+		return elements[index];
+	}
+
+	@Override
+	public HeapList withLoaded(List<Value> loaded) {
+		int n = loaded.size();
+		HeapPrimitiveList out = new HeapPrimitiveList(elementType, elements.length + n);
+		System.arraycopy(elements, 0, out.elements, 0, omittedOffset);
+		for (int i = 0; i < n; i++) {
+			out.set(omittedOffset + i, loaded.get(i));
+		}
+		System.arraycopy(elements, omittedOffset, out.elements, omittedOffset + n, elements.length - omittedOffset);
+		copyWindow(out, n);
+		return out;
+	}
+
+	private class Items extends AbstractList<Value> {
+		@Override
+		public Value get(int index) {
+			return Value.ofBits(elementType, elements[index]);
+		}
+
+		@Override
+		public int size() {
+			return elements.length;
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package com.aegamesi.java_visualizer.model;
+
+/**
+ * An object that was left out of the trace because it lies beyond the depth or node limit of the tracer.
+ * Only its type is known; its contents can be converted on request.
+ */
+public class HeapStub extends HeapEntity {
+	@Override
+	public boolean hasSameStructure(HeapEntity other) {
+		return other instanceof HeapStub;
+	}
+}
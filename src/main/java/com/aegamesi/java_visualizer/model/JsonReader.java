@@ -0,0 +1,379 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A pull parser for JSON: the caller walks the document a token at a time, and nothing is kept but the token
+ * being read, so a document can be read into a model without first being held as a string or a tree.
+ * <p>
+ * Malformed input is reported as an {@link IOException} with the line it's on.
+ */
+class JsonReader {
+	/**
+	 * What the next token is.
+	 */
+	enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private final Reader in;
+	private final char[] buffer = new char[8192];
+	private int pos;
+	private int limit;
+	private int line = 1;
+
+	// the containers the parser is in: true for an object, false for an array
+	private boolean[] stack = new boolean[32];
+	private int depth;
+	// whether a value has been read in the innermost container (so the next needs a comma before it)
+	private boolean[] started = new boolean[32];
+	// whether the name of an object member has been read, but not its value
+	private boolean afterName;
+
+	private Token peeked;
+	private final StringBuilder text = new StringBuilder();
+
+	JsonReader(Reader in) {
+		this.in = in;
+	}
+
+	Token peek() throws IOException {
+		if (peeked != null) {
+			return peeked;
+		}
+		int c = nextNonSpace();
+		if (c == -1 && depth > 0) {
+			throw error("Unexpected end of document");
+		}
+		if (depth > 0 && !afterName) {
+			boolean object = stack[depth - 1];
+			if (c == (object ? '}' : ']')) {
+				return peeked = object ? Token.END_OBJECT : Token.END_ARRAY;
+			}
+			if (started[depth - 1]) {
+				if (c != ',') {
+					throw error("Expected ',' or '" + (object ? '}' : ']') + "'");
+				}
+				c = nextNonSpace();
+			}
+			if (object) {
+				if (c != '"') {
+					throw error("Expected a name");
+				}
+				readString();
+				return peeked = Token.NAME;
+			}
+		}
+		if (afterName) {
+			if (c != ':') {
+				throw error("Expected ':'");
+			}
+			c = nextNonSpace();
+		}
+		switch (c) {
+			case -1:
+				return peeked = Token.END_DOCUMENT;
+			case '{':
+				return peeked = Token.BEGIN_OBJECT;
+			case '[':
+				return peeked = Token.BEGIN_ARRAY;
+			case '"':
+				readString();
+				return peeked = Token.STRING;
+			case 't':
+				readKeyword("true");
+				return peeked = Token.BOOLEAN;
+			case 'f':
+				readKeyword("false");
+				return peeked = Token.BOOLEAN;
+			case 'n':
+				readKeyword("null");
+				return peeked = Token.NULL;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					readNumber((char) c);
+					return peeked = Token.NUMBER;
+				}
+				throw error("Unexpected character '" + (char) c + "'");
+		}
+	}
+
+	void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+		push(true);
+	}
+
+	void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+		depth--;
+		valueRead();
+	}
+
+	void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+		push(false);
+	}
+
+	void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+		depth--;
+		valueRead();
+	}
+
+	/**
+	 * Whether the object or array being read has another member.
+	 */
+	boolean hasNext() throws IOException {
+		Token t = peek();
+		return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+	}
+
+	String nextName() throws IOException {
+		expect(Token.NAME);
+		afterName = true;
+		return text.toString();
+	}
+
+	String nextString() throws IOException {
+		expect(Token.STRING);
+		valueRead();
+		return text.toString();
+	}
+
+	boolean nextBoolean() throws IOException {
+		expect(Token.BOOLEAN);
+		valueRead();
+		return text.charAt(0) == 't';
+	}
+
+	void nextNull() throws IOException {
+		expect(Token.NULL);
+		valueRead();
+	}
+
+	long nextLong() throws IOException {
+		String s = nextNumber();
+		try {
+			return Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			double d = parseDouble(s);
+			if ((long) d != d) {
+				throw error("Expected an integer but was " + s);
+			}
+			return (long) d;
+		}
+	}
+
+	int nextInt() throws IOException {
+		long l = nextLong();
+		if ((int) l != l) {
+			throw error("Expected an int but was " + l);
+		}
+		return (int) l;
+	}
+
+	/**
+	 * A number; also a string holding one, which is how numbers that JSON can't hold (NaN, the infinities) are
+	 * written.
+	 */
+	double nextDouble() throws IOException {
+		return parseDouble(nextNumber());
+	}
+
+	/**
+	 * Skips the next value, with whatever it contains.
+	 */
+	void skipValue() throws IOException {
+		int level = 0;
+		do {
+			switch (peek()) {
+				case BEGIN_OBJECT:
+					beginObject();
+					level++;
+					break;
+				case BEGIN_ARRAY:
+					beginArray();
+					level++;
+					break;
+				case END_OBJECT:
+					endObject();
+					level--;
+					break;
+				case END_ARRAY:
+					endArray();
+					level--;
+					break;
+				case NAME:
+					nextName();
+					break;
+				case END_DOCUMENT:
+					throw error("Unexpected end of document");
+				default:
+					peeked = null;
+					valueRead();
+			}
+		} while (level > 0);
+	}
+
+	IOException error(String message) {
+		return new IOException(message + " at line " + line);
+	}
+
+	private String nextNumber() throws IOException {
+		Token t = peek();
+		if (t != Token.NUMBER && t != Token.STRING) {
+			throw error("Expected a number but was " + t);
+		}
+		peeked = null;
+		valueRead();
+		return text.toString();
+	}
+
+	private double parseDouble(String s) throws IOException {
+		try {
+			return Double.parseDouble(s);
+		} catch (NumberFormatException e) {
+			throw error("Expected a number but was " + s);
+		}
+	}
+
+	private void expect(Token token) throws IOException {
+		Token t = peek();
+		if (t != token) {
+			throw error("Expected " + token + " but was " + t);
+		}
+		peeked = null;
+	}
+
+	private void push(boolean object) {
+		valueRead();
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth * 2);
+			started = Arrays.copyOf(started, depth * 2);
+		}
+		stack[depth] = object;
+		started[depth] = false;
+		depth++;
+	}
+
+	/**
+	 * Notes that a value has been read (or begun, for an object or array) in the innermost container.
+	 */
+	private void valueRead() {
+		afterName = false;
+		if (depth > 0) {
+			started[depth - 1] = true;
+		}
+	}
+
+	private void readString() throws IOException {
+		text.setLength(0);
+		while (true) {
+			int c = read();
+			if (c == '"') {
+				return;
+			} else if (c == -1) {
+				throw error("Unterminated string");
+			} else if (c == '\\') {
+				c = read();
+				switch (c) {
+					case '"':
+					case '\\':
+					case '/':
+						text.append((char) c);
+						break;
+					case 'b':
+						text.append('\b');
+						break;
+					case 'f':
+						text.append('\f');
+						break;
+					case 'n':
+						text.append('\n');
+						break;
+					case 'r':
+						text.append('\r');
+						break;
+					case 't':
+						text.append('\t');
+						break;
+					case 'u':
+						int code = 0;
+						for (int i = 0; i < 4; i++) {
+							int digit = Character.digit(read(), 16);
+							if (digit < 0) {
+								throw error("Bad unicode escape");
+							}
+							code = code * 16 + digit;
+						}
+						text.append((char) code);
+						break;
+					default:
+						throw error("Bad escape");
+				}
+			} else {
+				if (c == '\n') {
+					line++;
+				}
+				text.append((char) c);
+			}
+		}
+	}
+
+	private void readNumber(char first) throws IOException {
+		text.setLength(0);
+		text.append(first);
+		while (true) {
+			if (pos == limit && !fill()) {
+				return;
+			}
+			char c = buffer[pos];
+			if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+				text.append(c);
+				pos++;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void readKeyword(String keyword) throws IOException {
+		for (int i = 1; i < keyword.length(); i++) {
+			if (read() != keyword.charAt(i)) {
+				throw error("Expected '" + keyword + "'");
+			}
+		}
+		text.setLength(0);
+		text.append(keyword);
+	}
+
+	private int nextNonSpace() throws IOException {
+		while (true) {
+			int c = read();
+			if (c == '\n') {
+				line++;
+			} else if (c != ' ' && c != '\t' && c != '\r') {
+				return c;
+			}
+		}
+	}
+
+	private int read() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos++];
+	}
+
+	private boolean fill() throws IOException {
+		int n = in.read(buffer, 0, buffer.length);
+		if (n <= 0) {
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+}
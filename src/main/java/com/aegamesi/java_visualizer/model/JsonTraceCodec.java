@@ -0,0 +1,384 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes traces as JSON, in the same format as {@link ExecutionTrace#toJsonString()}, but streamed:
+ * frames and entities are built straight from the tokens as they're read, and written straight out, so the only
+ * thing held in memory is the model itself.
+ * <p>
+ * Members of an object may come in any order, as with any JSON; ones that aren't known are skipped.
+ */
+class JsonTraceCodec {
+	static void write(ExecutionTrace trace, Writer writer) throws IOException {
+		JsonWriter out = new JsonWriter(writer);
+		out.beginObject();
+		out.name("frames").beginArray();
+		for (Frame frame : trace.frames) {
+			out.beginObject();
+			out.name("name").value(frame.name);
+			out.name("local_names").beginArray();
+			for (String name : frame.locals.keySet()) {
+				out.value(name);
+			}
+			out.endArray();
+			out.name("local_vals").beginArray();
+			for (Value v : frame.locals.values()) {
+				value(out, v);
+			}
+			out.endArray();
+			out.endObject();
+		}
+		out.endArray();
+
+		out.name("heap").beginArray();
+		for (HeapEntity e : trace.heap.values()) {
+			out.beginObject();
+			out.name("id").value(e.id);
+			out.name("type").value(e.type.name());
+			if (e.label != null) {
+				out.name("label").value(e.label);
+			}
+			if (e instanceof HeapObject) {
+				HeapObject object = (HeapObject) e;
+				out.name("keys").beginArray();
+				for (String name : object.fields.keySet()) {
+					out.value(name);
+				}
+				out.endArray();
+				out.name("vals").beginArray();
+				for (Value v : object.fields.values()) {
+					value(out, v);
+				}
+				out.endArray();
+			} else if (e instanceof HeapList) {
+				HeapList list = (HeapList) e;
+				out.name("items").beginArray();
+				for (Value v : list.items) {
+					value(out, v);
+				}
+				out.endArray();
+				omitted(out, list.omittedOffset, list.omittedCount);
+			} else if (e instanceof HeapMap) {
+				HeapMap map = (HeapMap) e;
+				out.name("keys").beginArray();
+				for (HeapMap.Pair pair : map.pairs) {
+					value(out, pair.key);
+				}
+				out.endArray();
+				out.name("vals").beginArray();
+				for (HeapMap.Pair pair : map.pairs) {
+					value(out, pair.val);
+				}
+				out.endArray();
+				omitted(out, map.omittedOffset, map.omittedCount);
+			} else if (e instanceof HeapPrimitive) {
+				out.name("val");
+				value(out, ((HeapPrimitive) e).value);
+			}
+			out.endObject();
+		}
+		out.endArray();
+		out.endObject();
+		out.flush();
+	}
+
+	static ExecutionTrace read(Reader reader) throws IOException {
+		JsonReader in = new JsonReader(reader);
+		ExecutionTrace trace = new ExecutionTrace();
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+				case "frames":
+					in.beginArray();
+					while (in.hasNext()) {
+						trace.frames.add(frame(in));
+					}
+					in.endArray();
+					break;
+				case "heap":
+					in.beginArray();
+					while (in.hasNext()) {
+						HeapEntity e = entity(in);
+						trace.heap.put(e.id, e);
+					}
+					in.endArray();
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+		return trace;
+	}
+
+	private static Frame frame(JsonReader in) throws IOException {
+		Frame frame = new Frame();
+		List<String> names = null;
+		List<Value> values = null;
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+				case "name":
+					frame.name = in.nextString();
+					break;
+				case "local_names":
+					names = strings(in);
+					break;
+				case "local_vals":
+					values = values(in);
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+		if (frame.name == null) {
+			throw in.error("Frame without a name");
+		}
+		named(in, names, values, frame.locals);
+		return frame;
+	}
+
+	private static HeapEntity entity(JsonReader in) throws IOException {
+		Long id = null;
+		HeapEntity.Type type = null;
+		String label = null;
+		List<String> names = null;
+		List<Value> keys = null;
+		List<Value> values = null;
+		Value value = null;
+		int omittedOffset = 0;
+		int omittedCount = 0;
+
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+				case "id":
+					id = in.nextLong();
+					break;
+				case "type":
+					type = enumValue(in, HeapEntity.Type.class);
+					break;
+				case "label":
+					label = nullableString(in);
+					break;
+				case "keys":
+					// the keys of an object are names, those of a map are values; which it is may not be known yet
+					if (in.peek() == JsonReader.Token.BEGIN_ARRAY) {
+						in.beginArray();
+						if (in.hasNext() && in.peek() == JsonReader.Token.STRING) {
+							names = new ArrayList<>();
+							while (in.hasNext()) {
+								names.add(in.nextString());
+							}
+						} else {
+							keys = new ArrayList<>();
+							while (in.hasNext()) {
+								keys.add(value(in));
+							}
+						}
+						in.endArray();
+					} else {
+						in.skipValue();
+					}
+					break;
+				case "vals":
+				case "items":
+					values = values(in);
+					break;
+				case "val":
+					value = value(in);
+					break;
+				case "omitted_offset":
+					omittedOffset = in.nextInt();
+					break;
+				case "omitted_count":
+					omittedCount = in.nextInt();
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+		if (id == null || type == null) {
+			throw in.error("Heap entity without an id or type");
+		}
+
+		HeapEntity e;
+		switch (type) {
+			case LIST:
+			case SET: {
+				HeapList list = new HeapList();
+				if (values != null) {
+					list.items = values;
+				}
+				list.omittedOffset = omittedOffset;
+				list.omittedCount = omittedCount;
+				e = list;
+				break;
+			}
+			case OBJECT: {
+				HeapObject object = new HeapObject();
+				named(in, names, values, object.fields);
+				e = object;
+				break;
+			}
+			case MAP: {
+				HeapMap map = new HeapMap();
+				int n = keys != null ? keys.size() : 0;
+				if (n != (values != null ? values.size() : 0)) {
+					throw in.error("Map " + id + " has " + n + " keys but a different number of values");
+				}
+				for (int i = 0; i < n; i++) {
+					HeapMap.Pair pair = new HeapMap.Pair();
+					pair.key = keys.get(i);
+					pair.val = values.get(i);
+					map.pairs.add(pair);
+				}
+				map.omittedOffset = omittedOffset;
+				map.omittedCount = omittedCount;
+				e = map;
+				break;
+			}
+			case PRIMITIVE: {
+				if (value == null) {
+					throw in.error("Primitive " + id + " without a value");
+				}
+				HeapPrimitive primitive = new HeapPrimitive();
+				primitive.value = value;
+				e = primitive;
+				break;
+			}
+			default:
+				e = new HeapStub();
+		}
+		e.id = id;
+		e.type = type;
+		e.label = label;
+		return e;
+	}
+
+	/**
+	 * Pairs up names with values, as the locals of a frame or the fields of an object are written.
+	 */
+	private static void named(JsonReader in, List<String> names, List<Value> values, Map<String, Value> out)
+			throws IOException {
+		int n = names != null ? names.size() : 0;
+		if (n != (values != null ? values.size() : 0)) {
+			throw in.error(n + " names but a different number of values");
+		}
+		for (int i = 0; i < n; i++) {
+			out.put(names.get(i), values.get(i));
+		}
+	}
+
+	private static List<String> strings(JsonReader in) throws IOException {
+		List<String> out = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			out.add(in.nextString());
+		}
+		in.endArray();
+		return out;
+	}
+
+	private static List<Value> values(JsonReader in) throws IOException {
+		List<Value> out = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			out.add(value(in));
+		}
+		in.endArray();
+		return out;
+	}
+
+	/**
+	 * A value is written as an array of its type and, unless it's null or void, what it holds.
+	 */
+	private static Value value(JsonReader in) throws IOException {
+		in.beginArray();
+		Value.Type type = enumValue(in, Value.Type.class);
+		Value v;
+		switch (type) {
+			case STRING:
+				v = Value.ofString(nullableString(in));
+				break;
+			case LONG:
+				v = Value.ofLong(in.nextLong());
+				break;
+			case DOUBLE:
+				v = Value.ofDouble(in.nextDouble());
+				break;
+			case BOOLEAN:
+				v = Value.ofBoolean(in.nextBoolean());
+				break;
+			case CHAR:
+				v = Value.ofChar((char) in.nextInt());
+				break;
+			case REFERENCE:
+				v = Value.ofReference(in.nextLong());
+				break;
+			default:
+				v = Value.ofBits(type, 0);
+		}
+		while (in.hasNext()) {
+			in.skipValue();
+		}
+		in.endArray();
+		return v;
+	}
+
+	private static void value(JsonWriter out, Value v) throws IOException {
+		out.beginArray();
+		out.value(v.getType().name());
+		switch (v.getType()) {
+			case STRING:
+				out.value(v.getString());
+				break;
+			case LONG:
+			case REFERENCE:
+				out.value(v.getBits());
+				break;
+			case DOUBLE:
+				out.value(v.getDouble());
+				break;
+			case BOOLEAN:
+				out.value(v.getBoolean());
+				break;
+			case CHAR:
+				out.value((long) v.getChar());
+				break;
+		}
+		out.endArray();
+	}
+
+	private static void omitted(JsonWriter out, int offset, int count) throws IOException {
+		if (count > 0) {
+			out.name("omitted_offset").value(offset);
+			out.name("omitted_count").value(count);
+		}
+	}
+
+	private static String nullableString(JsonReader in) throws IOException {
+		if (in.peek() == JsonReader.Token.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+
+	private static <E extends Enum<E>> E enumValue(JsonReader in, Class<E> type) throws IOException {
+		String name = in.nextString();
+		try {
+			return Enum.valueOf(type, name);
+		} catch (IllegalArgumentException e) {
+			throw in.error("Unknown " + type.getSimpleName() + " " + name);
+		}
+	}
+}
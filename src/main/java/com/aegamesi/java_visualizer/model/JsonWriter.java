@@ -0,0 +1,158 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes JSON a token at a time, straight to a {@link Writer}, so that a model can be written out without first
+ * being turned into a tree or a string. Numbers that JSON can't hold (NaN, the infinities) are written as strings.
+ */
+class JsonWriter {
+	private final Writer out;
+	private final char[] buffer = new char[8192];
+	private int pos;
+
+	// whether a value has been written in each container the writer is in (so the next needs a comma)
+	private boolean[] started = new boolean[32];
+	private int depth;
+	// whether the name of an object member has been written, but not its value
+	private boolean afterName;
+
+	JsonWriter(Writer out) {
+		this.out = out;
+	}
+
+	JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	JsonWriter name(String name) throws IOException {
+		separate();
+		string(name);
+		write(':');
+		afterName = true;
+		return this;
+	}
+
+	JsonWriter value(String s) throws IOException {
+		separate();
+		if (s == null) {
+			write("null");
+		} else {
+			string(s);
+		}
+		return this;
+	}
+
+	JsonWriter value(long l) throws IOException {
+		separate();
+		write(Long.toString(l));
+		return this;
+	}
+
+	JsonWriter value(double d) throws IOException {
+		separate();
+		if (Double.isNaN(d) || Double.isInfinite(d)) {
+			string(Double.toString(d));
+		} else {
+			write(Double.toString(d));
+		}
+		return this;
+	}
+
+	JsonWriter value(boolean b) throws IOException {
+		separate();
+		write(b ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Writes out whatever is buffered; the underlying writer is left open.
+	 */
+	void flush() throws IOException {
+		out.write(buffer, 0, pos);
+		pos = 0;
+		out.flush();
+	}
+
+	private JsonWriter open(char c) throws IOException {
+		separate();
+		if (depth == started.length) {
+			started = Arrays.copyOf(started, depth * 2);
+		}
+		started[depth++] = false;
+		write(c);
+		return this;
+	}
+
+	private JsonWriter close(char c) throws IOException {
+		depth--;
+		write(c);
+		return this;
+	}
+
+	/**
+	 * Writes the comma before a value or name, if it isn't the first in its container.
+	 */
+	private void separate() throws IOException {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+		if (depth > 0) {
+			if (started[depth - 1]) {
+				write(',');
+			}
+			started[depth - 1] = true;
+		}
+	}
+
+	private void string(String s) throws IOException {
+		write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				write('\\');
+				write(c);
+			} else if (c == '\n') {
+				write("\\n");
+			} else if (c == '\r') {
+				write("\\r");
+			} else if (c == '\t') {
+				write("\\t");
+			} else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+				write(String.format("\\u%04x", (int) c));
+			} else {
+				write(c);
+			}
+		}
+		write('"');
+	}
+
+	private void write(char c) throws IOException {
+		if (pos == buffer.length) {
+			out.write(buffer, 0, pos);
+			pos = 0;
+		}
+		buffer[pos++] = c;
+	}
+
+	private void write(String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			write(s.charAt(i));
+		}
+	}
+}
@@ -0,0 +1,385 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map from {@code long} keys, such as entity ids, that doesn't box them: keys and values are kept in arrays, in the
+ * order they were put, and found through an open-addressing hash table of their indices. Iterating goes in that
+ * order too. Null values are allowed.
+ * <p>
+ * The primitive methods ({@link #get(long)}, {@link #put(long, Object)} and so on) are picked over the boxed ones
+ * of {@link Map} whenever the key is a {@code long}; the boxed ones still work, so it can be used as any map.
+ * Not thread-safe.
+ */
+public class LongMap<V> extends AbstractMap<Long, V> {
+	// marks the value of an entry that has been removed, until the entries are compacted
+	private static final Object REMOVED = new Object();
+	// table slots: 0 is empty, -1 an entry that was removed, anything else the index of the entry plus one
+	private static final int DELETED = -1;
+
+	private long[] keys;
+	private Object[] values;
+	// the number of entries in the arrays, removed ones included
+	private int end;
+	private int size;
+	private int[] table;
+	private int modCount;
+
+	public LongMap() {
+		this(8);
+	}
+
+	public LongMap(int capacity) {
+		allocate(Math.max(capacity, 4));
+	}
+
+	/**
+	 * A copy of another map, in the same order.
+	 */
+	public LongMap(LongMap<? extends V> other) {
+		keys = Arrays.copyOf(other.keys, other.keys.length);
+		values = Arrays.copyOf(other.values, other.values.length);
+		table = other.table.clone();
+		end = other.end;
+		size = other.size;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof Long && containsKey((long) (Long) key);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = find(key);
+		return i >= 0 ? (V) values[i] : null;
+	}
+
+	@Override
+	public V get(Object key) {
+		return key instanceof Long ? get((long) (Long) key) : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		int i = find(key);
+		if (i >= 0) {
+			V old = (V) values[i];
+			values[i] = value;
+			return old;
+		}
+		if (end == keys.length) {
+			// compact if enough entries were removed, grow otherwise
+			allocate(size < end / 2 ? keys.length : keys.length * 2);
+		}
+		keys[end] = key;
+		values[end] = value;
+		end++;
+		size++;
+		modCount++;
+		insert(key, end);
+		return null;
+	}
+
+	@Override
+	public V put(Long key, V value) {
+		return put((long) key, value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int mask = table.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			int t = table[slot];
+			if (t == 0) {
+				return null;
+			}
+			if (t > 0 && keys[t - 1] == key) {
+				V old = (V) values[t - 1];
+				values[t - 1] = REMOVED;
+				table[slot] = DELETED;
+				size--;
+				modCount++;
+				return old;
+			}
+		}
+	}
+
+	@Override
+	public V remove(Object key) {
+		return key instanceof Long ? remove((long) (Long) key) : null;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(values, 0, end, null);
+		Arrays.fill(table, 0);
+		end = 0;
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * The keys, in order.
+	 */
+	public long[] keys() {
+		long[] out = new long[size];
+		int n = 0;
+		for (int i = 0; i < end; i++) {
+			if (values[i] != REMOVED) {
+				out[n++] = keys[i];
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Calls the action for each key and value, in order, without boxing the keys.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEachEntry(EntryConsumer<? super V> action) {
+		int expected = modCount;
+		for (int i = 0; i < end; i++) {
+			if (values[i] != REMOVED) {
+				action.accept(keys[i], (V) values[i]);
+				if (modCount != expected) {
+					throw new ConcurrentModificationException();
+				}
+			}
+		}
+	}
+
+	public interface EntryConsumer<V> {
+		void accept(long key, V value);
+	}
+
+	@Override
+	public Set<Long> keySet() {
+		return new AbstractSet<Long>() {
+			@Override
+			public Iterator<Long> iterator() {
+				Iterator<Map.Entry<Long, V>> entries = entrySet().iterator();
+				return new Iterator<Long>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public Long next() {
+						return entries.next().getKey();
+					}
+
+					@Override
+					public void remove() {
+						entries.remove();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				int before = size;
+				LongMap.this.remove(o);
+				return size != before;
+			}
+
+			@Override
+			public void clear() {
+				LongMap.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<Long, V>> entrySet() {
+		return new AbstractSet<Map.Entry<Long, V>>() {
+			@Override
+			public Iterator<Map.Entry<Long, V>> iterator() {
+				return new Iterator<Map.Entry<Long, V>>() {
+					private int next = skipRemoved(0);
+					private int last = -1;
+					private int expected = modCount;
+
+					@Override
+					public boolean hasNext() {
+						return next < end;
+					}
+
+					@Override
+					public Map.Entry<Long, V> next() {
+						if (modCount != expected) {
+							throw new ConcurrentModificationException();
+						}
+						if (next >= end) {
+							throw new NoSuchElementException();
+						}
+						last = next;
+						next = skipRemoved(next + 1);
+						return new Entry(last);
+					}
+
+					@Override
+					public void remove() {
+						if (last < 0) {
+							throw new IllegalStateException();
+						}
+						if (modCount != expected) {
+							throw new ConcurrentModificationException();
+						}
+						LongMap.this.remove(keys[last]);
+						last = -1;
+						expected = modCount;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public void clear() {
+				LongMap.this.clear();
+			}
+		};
+	}
+
+	private int skipRemoved(int i) {
+		while (i < end && values[i] == REMOVED) {
+			i++;
+		}
+		return i;
+	}
+
+	private class Entry implements Map.Entry<Long, V> {
+		private final int index;
+
+		Entry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Long getKey() {
+			return keys[index];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return (V) values[index];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V setValue(V value) {
+			V old = (V) values[index];
+			values[index] = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			Object value = values[index];
+			return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			Object value = values[index];
+			return Long.hashCode(keys[index]) ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return keys[index] + "=" + values[index];
+		}
+	}
+
+	/**
+	 * The index of the entry with the given key, or -1.
+	 */
+	private int find(long key) {
+		int mask = table.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			int t = table[slot];
+			if (t == 0) {
+				return -1;
+			}
+			if (t > 0 && keys[t - 1] == key) {
+				return t - 1;
+			}
+		}
+	}
+
+	/**
+	 * Puts the (one-based) index of an entry in the table, taking the first free slot for its key.
+	 */
+	private void insert(long key, int index) {
+		int mask = table.length - 1;
+		int slot = hash(key) & mask;
+		while (table[slot] > 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = index;
+	}
+
+	/**
+	 * Makes room for the given number of entries, dropping the removed ones and rebuilding the table, which is
+	 * kept at least twice as big as the arrays so that probes stay short.
+	 */
+	private void allocate(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		table = new int[Integer.highestOneBit(capacity - 1) << 2];
+		int n = 0;
+		for (int i = 0; i < end; i++) {
+			if (oldValues[i] != REMOVED) {
+				keys[n] = oldKeys[i];
+				values[n] = oldValues[i];
+				n++;
+				insert(keys[n - 1], n);
+			}
+		}
+		end = n;
+		modCount++;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
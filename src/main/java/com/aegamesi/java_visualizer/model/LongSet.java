@@ -0,0 +1,73 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+/**
+ * A set of {@code long}s, such as entity ids, that doesn't box them; backed by a {@link LongMap}, so it iterates
+ * in the order the values were added.
+ * Not thread-safe.
+ */
+public class LongSet extends AbstractSet<Long> {
+	private final LongMap<Boolean> map;
+
+	public LongSet() {
+		map = new LongMap<>();
+	}
+
+	/**
+	 * A copy of another set, in the same order.
+	 */
+	public LongSet(LongSet other) {
+		map = new LongMap<>(other.map);
+	}
+
+	public boolean add(long value) {
+		return map.put(value, Boolean.TRUE) == null;
+	}
+
+	@Override
+	public boolean add(Long value) {
+		return add((long) value);
+	}
+
+	public boolean contains(long value) {
+		return map.containsKey(value);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return map.containsKey(o);
+	}
+
+	public boolean remove(long value) {
+		return map.remove(value) != null;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return map.remove(o) != null;
+	}
+
+	/**
+	 * The values, in order.
+	 */
+	public long[] toLongArray() {
+		return map.keys();
+	}
+
+	@Override
+	public Iterator<Long> iterator() {
+		return map.keySet().iterator();
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+	}
+}
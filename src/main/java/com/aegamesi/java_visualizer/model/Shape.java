@@ -0,0 +1,136 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The names of a set of fields (or locals), in name order, shared by every {@link Fields} that has them: objects
+ * of the same class all point at the same shape, and only hold their values.
+ * <p>
+ * Shapes are interned, so two sets of fields have the same names exactly when they have the same shape. Each shape
+ * is reached from {@link #EMPTY} by adding its names in order, and remembers the shapes made by adding a name that
+ * comes after all of its own, so that finding one again doesn't allocate.
+ * <p>
+ * Those are only remembered weakly, so a shape that no fields use any more is let go of rather than kept for as
+ * long as the IDE runs. Each shape holds on to the one it was made from instead, so any shape still in use can
+ * still be found from {@link #EMPTY}, and is never made twice. Thread-safe.
+ */
+public final class Shape {
+	public static final Shape EMPTY = new Shape(new String[0], null);
+
+	// where the links to shapes that have been let go of turn up, to be taken out of their parents
+	private static final ReferenceQueue<Shape> RELEASED = new ReferenceQueue<>();
+
+	private final String[] names;
+	private final List<String> view;
+	// the shape this one was made from, kept so that it still leads here
+	private final Shape parent;
+	// guarded by itself
+	private final Map<String, Link> next = new HashMap<>();
+
+	private Shape(String[] names, Shape parent) {
+		this.names = names;
+		this.view = Collections.unmodifiableList(Arrays.asList(names));
+		this.parent = parent;
+	}
+
+	/**
+	 * The shape with the given names, in whatever order and with duplicates ignored.
+	 */
+	public static Shape of(Collection<String> names) {
+		String[] sorted = names.toArray(new String[0]);
+		Arrays.sort(sorted);
+		Shape shape = EMPTY;
+		for (String name : sorted) {
+			shape = shape.with(name);
+		}
+		return shape;
+	}
+
+	/**
+	 * The shape with one more name, or this one if it already has it.
+	 */
+	public Shape with(String name) {
+		int i = indexOf(name);
+		if (i >= 0) {
+			return this;
+		}
+		if (-i - 1 < names.length) {
+			// goes somewhere in the middle: build it up from the start, so it's the same instance as any other
+			String[] more = Arrays.copyOf(names, names.length + 1);
+			more[names.length] = name;
+			return of(Arrays.asList(more));
+		}
+		expunge();
+		synchronized (next) {
+			Link link = next.get(name);
+			Shape shape = link != null ? link.get() : null;
+			if (shape == null) {
+				String[] more = Arrays.copyOf(names, names.length + 1);
+				more[names.length] = name;
+				shape = new Shape(more, this);
+				next.put(name, new Link(this, name, shape));
+			}
+			return shape;
+		}
+	}
+
+	/**
+	 * Takes the shapes that have been let go of out of their parents.
+	 */
+	private static void expunge() {
+		Link link;
+		while ((link = (Link) RELEASED.poll()) != null) {
+			Map<String, Link> siblings = link.parent.next;
+			synchronized (siblings) {
+				if (siblings.get(link.name) == link) {
+					siblings.remove(link.name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The position of a name, or {@code -(insertion point) - 1} if it isn't in this shape.
+	 */
+	public int indexOf(String name) {
+		return Arrays.binarySearch(names, name);
+	}
+
+	public String name(int index) {
+		return names[index];
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	public List<String> names() {
+		return view;
+	}
+
+	@Override
+	public String toString() {
+		return view.toString();
+	}
+
+	/**
+	 * A weak link from a shape to one made from it by adding a name.
+	 */
+	private static class Link extends WeakReference<Shape> {
+		final Shape parent;
+		final String name;
+
+		Link(Shape parent, String name, Shape child) {
+			super(child, RELEASED);
+			this.parent = parent;
+			this.name = name;
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package com.aegamesi.java_visualizer.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The traces of a debug session, one per step, appended to a memory-mapped file instead of being kept on the heap.
+ * Every {@link #KEYFRAME_INTERVAL}th step is written in full, in the binary trace format, and the steps in between
+ * as deltas from the step before, so a step is read back by decoding at most that many records. An index of where
+ * each step starts is kept in memory, and rebuilt by walking the records when a file is opened again.
+ * <p>
+ * The file starts with a magic number, a version and the length of the recording so far, which is only updated
+ * once a step has been written in full; whatever comes after it is ignored. Each step is a record of its length,
+ * whether it's a keyframe, and the trace. Thread-safe.
+ * <p>
+ * The steps read most recently are cached, along with the ones decoded on the way to them, so that moving back and
+ * forth around a step only decodes what hasn't been seen yet.
+ */
+public class TraceRecording implements Closeable {
+	public static final int KEYFRAME_INTERVAL = 32;
+
+	private static final int MAGIC = 0x4A565253; // "JVRS"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int END_OFFSET = 8;
+	private static final int RECORD_HEADER_SIZE = 5;
+	// how much of the file is mapped at once, unless a record needs more
+	private static final int REGION_SIZE = 16 << 20;
+	// decoded steps kept, enough for the keyframe intervals either side of the one being looked at; fewer are kept
+	// if their heaps come to more than the given number of entities, since each holds its own map of them
+	private static final int MAX_CACHED_STEPS = 3 * KEYFRAME_INTERVAL;
+	private static final long MAX_CACHED_ENTITIES = 2_000_000;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final boolean writable;
+
+	// the mapped parts of the file, by where they start; each holds whole records
+	private final List<MappedByteBuffer> regions = new ArrayList<>();
+	private long[] regionStarts = new long[8];
+	// the length of the recording, header included
+	private long end;
+
+	private long[] offsets = new long[64];
+	private final BitSet keyframes = new BitSet();
+	private int size;
+
+	// the last step appended, which the next is written as a delta from
+	private ExecutionTrace last;
+	private final Scratch scratch = new Scratch();
+
+	private final LinkedHashMap<Integer, ExecutionTrace> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedEntities;
+
+	private TraceRecording(Path path, FileChannel channel, boolean writable) {
+		this.path = path;
+		this.channel = channel;
+		this.writable = writable;
+	}
+
+	/**
+	 * Starts a new recording in the given file, replacing whatever was there.
+	 */
+	public static TraceRecording create(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		TraceRecording recording = new TraceRecording(path, channel, true);
+		try {
+			ByteBuffer header = recording.region(0, HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putLong(HEADER_SIZE);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		recording.end = HEADER_SIZE;
+		return recording;
+	}
+
+	/**
+	 * Opens a recording made earlier, to read from.
+	 */
+	public static TraceRecording open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		TraceRecording recording = new TraceRecording(path, channel, false);
+		try {
+			recording.index();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		return recording;
+	}
+
+	private void index() throws IOException {
+		if (channel.size() < HEADER_SIZE) {
+			throw new IOException("Not a trace recording");
+		}
+		ByteBuffer header = region(0, HEADER_SIZE);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a trace recording");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported trace recording version " + version);
+		}
+		long length = header.getLong();
+		if (length < HEADER_SIZE || length > channel.size()) {
+			throw new IOException("Trace recording is cut off");
+		}
+
+		end = HEADER_SIZE;
+		while (end < length) {
+			if (length - end < RECORD_HEADER_SIZE) {
+				throw new IOException("Trace recording is cut off");
+			}
+			ByteBuffer record = region(end, RECORD_HEADER_SIZE);
+			int bytes = record.getInt();
+			boolean keyframe = record.get() != 0;
+			if (bytes < 0 || bytes > length - end - RECORD_HEADER_SIZE || (size == 0 && !keyframe)) {
+				throw new IOException("Bad record at " + end);
+			}
+			add(end, keyframe);
+			end += RECORD_HEADER_SIZE + bytes;
+		}
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * The length of the recording in bytes; the file itself grows in bigger steps until it's closed.
+	 */
+	public synchronized long length() {
+		return end;
+	}
+
+	/**
+	 * The number of steps recorded.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a step. The trace is held on to until the next one is added, to work out what changed, so it mustn't
+	 * be modified in the meantime.
+	 */
+	public synchronized void append(ExecutionTrace trace) throws IOException {
+		if (!writable) {
+			throw new IllegalStateException("Recording was opened for reading");
+		}
+		boolean keyframe = last == null || size % KEYFRAME_INTERVAL == 0;
+		scratch.reset();
+		if (keyframe) {
+			BinaryTraceCodec.write(trace, Channels.newChannel(scratch));
+		} else {
+			BinaryTraceCodec.writeDelta(last, trace, Channels.newChannel(scratch));
+		}
+
+		ByteBuffer record = region(end, RECORD_HEADER_SIZE + scratch.size());
+		record.putInt(scratch.size());
+		record.put((byte) (keyframe ? 1 : 0));
+		scratch.copyTo(record);
+		add(end, keyframe);
+		end += RECORD_HEADER_SIZE + scratch.size();
+		regions.get(0).putLong(END_OFFSET, end);
+		last = trace;
+	}
+
+	/**
+	 * Reads back a step, from the closest step before it that's cached, or else the keyframe at or before it.
+	 * The trace may be shared with later calls, so it mustn't be modified.
+	 */
+	public synchronized ExecutionTrace read(int step) throws IOException {
+		if (step < 0 || step >= size) {
+			throw new IndexOutOfBoundsException("Step " + step + " of " + size);
+		}
+		ExecutionTrace trace = cache.get(step);
+		if (trace != null) {
+			return trace;
+		}
+		int keyframe = keyframes.previousSetBit(step);
+		int from = step - 1;
+		while (from >= keyframe && (trace = cache.get(from)) == null) {
+			from--;
+		}
+		if (trace == null) {
+			from = keyframe;
+			trace = BinaryTraceCodec.read(record(keyframe));
+			cache(keyframe, trace);
+		}
+		for (int i = from + 1; i <= step; i++) {
+			trace = BinaryTraceCodec.readDelta(trace, record(i));
+			cache(i, trace);
+		}
+		return trace;
+	}
+
+	private void cache(int step, ExecutionTrace trace) {
+		cache.put(step, trace);
+		cachedEntities += trace.heap.size();
+		Iterator<ExecutionTrace> eldest = cache.values().iterator();
+		while (cache.size() > 1 && (cache.size() > MAX_CACHED_STEPS || cachedEntities > MAX_CACHED_ENTITIES)) {
+			cachedEntities -= eldest.next().heap.size();
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Closes the file, cutting off what was mapped past the end of the recording. Its mapped parts are only let go
+	 * of once they're garbage collected.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (writable && channel.isOpen()) {
+			regions.get(0).force();
+			try {
+				channel.truncate(end);
+			} catch (IOException e) {
+				// some platforms won't shrink a file while parts of it are mapped; the header still says where the
+				// recording ends, so the file is only bigger than it needs to be
+			}
+		}
+		channel.close();
+		regions.clear();
+		cache.clear();
+		cachedEntities = 0;
+		last = null;
+	}
+
+	private void add(long offset, boolean keyframe) {
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		offsets[size] = offset;
+		keyframes.set(size, keyframe);
+		size++;
+	}
+
+	/**
+	 * The trace of a step, as it's stored.
+	 */
+	private ByteBuffer record(int step) throws IOException {
+		long offset = offsets[step];
+		ByteBuffer header = region(offset, RECORD_HEADER_SIZE);
+		int bytes = header.getInt();
+		ByteBuffer record = region(offset + RECORD_HEADER_SIZE, bytes);
+		record.limit(record.position() + bytes);
+		return record;
+	}
+
+	/**
+	 * A buffer positioned at the given offset, with at least the given number of bytes after it, mapping more of
+	 * the file if need be. When writing, mapping past the end makes the file longer.
+	 */
+	private ByteBuffer region(long offset, int bytes) throws IOException {
+		int i = regions.size() - 1;
+		while (i >= 0 && regionStarts[i] > offset) {
+			i--;
+		}
+		if (i < 0 || offset + bytes > regionStarts[i] + regions.get(i).capacity()) {
+			long size = Math.max(bytes, REGION_SIZE);
+			if (!writable) {
+				size = Math.max(bytes, Math.min(size, channel.size() - offset));
+			}
+			MappedByteBuffer mapped = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+					offset, size);
+			i = regions.size();
+			if (i == regionStarts.length) {
+				regionStarts = Arrays.copyOf(regionStarts, i * 2);
+			}
+			regionStarts[i] = offset;
+			regions.add(mapped);
+		}
+		ByteBuffer buffer = regions.get(i).duplicate();
+		buffer.position((int) (offset - regionStarts[i]));
+		return buffer;
+	}
+
+	/**
+	 * A byte stream whose contents can be copied out without another copy being made first.
+	 */
+	private static class Scratch extends ByteArrayOutputStream {
+		void copyTo(ByteBuffer out) {
+			out.put(buf, 0, count);
+		}
+	}
+}
@@ -2,15 +2,118 @@ package com.aegamesi.java_visualizer.model;
 
 import org.json.JSONArray;
 
+import java.util.Objects;
+
+/**
+ * A primitive or a reference, as held by a local, a field or an element.
+ * <p>
+ * There's one of these for every value in a trace, so they're kept small: whatever the type, a value holds its type,
+ * 64 bits (the long, the double's bits, the boolean, the char or the id referenced) and, for strings only, the
+ * string.
+ */
 public class Value {
-	// primitive or reference
-	public Type type;
-	public long longValue;
-	public double doubleValue;
-	public boolean booleanValue;
-	public String stringValue;
-	public char charValue;
-	public long reference;
+	private Type type;
+	private long bits;
+	private String string;
+
+	private Value(Type type, long bits, String string) {
+		this.type = type;
+		this.bits = bits;
+		this.string = string;
+	}
+
+	public static Value ofNull() {
+		return new Value(Type.NULL, 0, null);
+	}
+
+	public static Value ofVoid() {
+		return new Value(Type.VOID, 0, null);
+	}
+
+	public static Value ofLong(long l) {
+		return new Value(Type.LONG, l, null);
+	}
+
+	public static Value ofDouble(double d) {
+		return new Value(Type.DOUBLE, Double.doubleToRawLongBits(d), null);
+	}
+
+	public static Value ofBoolean(boolean b) {
+		return new Value(Type.BOOLEAN, b ? 1 : 0, null);
+	}
+
+	public static Value ofChar(char c) {
+		return new Value(Type.CHAR, c, null);
+	}
+
+	public static Value ofString(String s) {
+		return new Value(Type.STRING, 0, s);
+	}
+
+	public static Value ofReference(long id) {
+		return new Value(Type.REFERENCE, id, null);
+	}
+
+	/**
+	 * A value of a primitive type from its raw 64 bits, as {@link #getBits()} returns them.
+	 */
+	public static Value ofBits(Type type, long bits) {
+		switch (type) {
+			case BOOLEAN:
+				return ofBoolean(bits != 0);
+			case CHAR:
+				return ofChar((char) bits);
+			default:
+				return new Value(type, bits, null);
+		}
+	}
+
+	/**
+	 * Turns this value into a copy of another, e.g. a reference into the primitive it turned out to box.
+	 */
+	public void set(Value other) {
+		type = other.type;
+		bits = other.bits;
+		string = other.string;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public long getLong() {
+		return bits;
+	}
+
+	public double getDouble() {
+		return Double.longBitsToDouble(bits);
+	}
+
+	public boolean getBoolean() {
+		return bits != 0;
+	}
+
+	public char getChar() {
+		return (char) bits;
+	}
+
+	public String getString() {
+		return string;
+	}
+
+	/**
+	 * The id of the entity referenced.
+	 */
+	public long getReference() {
+		return bits;
+	}
+
+	/**
+	 * The raw 64 bits of a primitive: the long, the double's bits, 1 or 0 for a boolean, or the char.
+	 */
+	public long getBits() {
+		return bits;
+	}
 
 	@Override
 	public String toString() {
@@ -18,15 +121,15 @@ public class Value {
 			case NULL:
 				return "null";
 			case STRING:
-				return "\"" + stringValue + "\"";
+				return "\"" + string + "\"";
 			case LONG:
-				return Long.toString(longValue);
+				return Long.toString(bits);
 			case DOUBLE:
-				return Double.toString(doubleValue);
+				return Double.toString(getDouble());
 			case BOOLEAN:
-				return Boolean.toString(booleanValue);
+				return Boolean.toString(getBoolean());
 			case CHAR:
-				return "'" + charValue + "'";
+				return "'" + getChar() + "'";
 			case REFERENCE:
 				return "*REF*";
 			default:
@@ -34,6 +137,41 @@ public class Value {
 		}
 	}
 
+	/**
+	 * Values are equal if they're of the same type and show the same thing; references are equal if they point
+	 * to the same entity.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Value)) {
+			return false;
+		}
+		Value other = (Value) o;
+		if (type != other.type) {
+			return false;
+		}
+		switch (type) {
+			case STRING:
+				return Objects.equals(string, other.string);
+			case DOUBLE:
+				return Double.compare(getDouble(), other.getDouble()) == 0;
+			default:
+				return bits == other.bits;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		switch (type) {
+			case STRING:
+				return Objects.hashCode(string);
+			case DOUBLE:
+				return Double.hashCode(getDouble());
+			default:
+				return 31 * type.hashCode() + Long.hashCode(bits);
+		}
+	}
+
 	public enum Type {
 		NULL, VOID, LONG, DOUBLE, BOOLEAN, STRING, CHAR, REFERENCE;
 	}
@@ -43,50 +181,42 @@ public class Value {
 		a.put(type.name());
 		switch (type) {
 			case STRING:
-				a.put(stringValue);
+				a.put(string);
 				break;
 			case LONG:
-				a.put(longValue);
+			case REFERENCE:
+				a.put(bits);
 				break;
 			case DOUBLE:
-				a.put(doubleValue);
+				a.put(getDouble());
 				break;
 			case BOOLEAN:
-				a.put(booleanValue);
+				a.put(getBoolean());
 				break;
 			case CHAR:
-				a.put(charValue);
-				break;
-			case REFERENCE:
-				a.put(reference);
+				a.put(getChar());
 				break;
 		}
 		return a;
 	}
 
 	static Value fromJson(JSONArray a) {
-		Value v = new Value();
-		v.type = Type.valueOf(a.getString(0));
-		switch (v.type) {
+		Type type = Type.valueOf(a.getString(0));
+		switch (type) {
 			case STRING:
-				v.stringValue = a.getString(1);
-				break;
+				return ofString(a.getString(1));
 			case LONG:
-				v.longValue = a.getLong(1);
-				break;
+				return ofLong(a.getLong(1));
 			case DOUBLE:
-				v.doubleValue = a.getDouble(1);
-				break;
+				return ofDouble(a.getDouble(1));
 			case BOOLEAN:
-				v.booleanValue = a.getBoolean(1);
-				break;
+				return ofBoolean(a.getBoolean(1));
 			case CHAR:
-				v.charValue = (char) a.getInt(1);
-				break;
+				return ofChar((char) a.getInt(1));
 			case REFERENCE:
-				v.reference = a.getLong(1);
-				break;
+				return ofReference(a.getLong(1));
+			default:
+				return new Value(type, 0, null);
 		}
-		return v;
 	}
 }
@@ -1,6 +1,11 @@
 package com.aegamesi.java_visualizer.plugin;
 
+import com.aegamesi.java_visualizer.backend.SnapshotCache;
 import com.aegamesi.java_visualizer.backend.Tracer;
+import com.aegamesi.java_visualizer.backend.TracerOptions;
+import com.aegamesi.java_visualizer.backend.TypeCache;
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.TraceRecording;
 import com.intellij.debugger.DebuggerManager;
 import com.intellij.debugger.engine.DebugProcess;
 import com.intellij.debugger.engine.SuspendContext;
@@ -8,6 +13,7 @@ import com.intellij.debugger.engine.managerThread.DebuggerCommand;
 import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessListener;
 import com.intellij.execution.ui.RunnerLayoutUi;
+import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.ActionToolbar;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
@@ -25,17 +31,41 @@ import com.sun.jdi.ThreadReference;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.event.AncestorEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class JavaVisualizerManager implements XDebugSessionListener {
 	private static final String CONTENT_ID = "aegamesi.JavaVisualizerContent2";
 
 	static final String PROPERTY_KEY_BASE = "java_visualizer.";
 	static final String KEY_ZOOM = PROPERTY_KEY_BASE + "zoom";
+	static final String KEY_MAX_DEPTH = PROPERTY_KEY_BASE + "max_depth";
+	static final String KEY_MAX_NODES = PROPERTY_KEY_BASE + "max_nodes";
+
+	// how often a trace in progress shows the heap converted so far
+	private static final long PUBLISH_INTERVAL_MS = 100;
 
 	private XDebugSession debugSession;
 	private Content content;
 	private MainPane panel;
 	private Project project;
+	// the tracer for the current pause, kept so that more of the heap can be loaded on request; set on the manager
+	// thread, and cleared from any thread when the pause is over
+	private volatile Tracer tracer;
+	// heap entities from earlier pauses of this session, reused when they haven't changed
+	private final SnapshotCache snapshots = new SnapshotCache();
+	// metadata of the classes seen so far in this session
+	private final TypeCache types = new TypeCache();
+	// bumped whenever the trace in progress becomes stale, which makes it stop at its next level
+	private final AtomicInteger traceGeneration = new AtomicInteger();
+	// where the trace of every pause goes while recording; set on the manager thread
+	private volatile TraceRecording recording;
+	// counts the pauses of this session, so that a pause traced again (to show it, or after a refresh) is only
+	// recorded once; the last one recorded is only used on the manager thread
+	private final AtomicInteger pauses = new AtomicInteger();
+	private int recordedPause = -1;
 
 	JavaVisualizerManager(Project project, XDebugProcess debugProcess) {
 		this.project = project;
@@ -50,6 +80,9 @@ public class JavaVisualizerManager implements XDebugSessionListener {
 
 			@Override
 			public void processTerminated(@NotNull ProcessEvent processEvent) {
+				snapshots.clear();
+				types.clear();
+				stopRecording();
 			}
 
 			@Override
@@ -64,7 +97,7 @@ public class JavaVisualizerManager implements XDebugSessionListener {
 	}
 
 	private void initializeContent() {
-		panel = new MainPane();
+		panel = new MainPane(this::loadMoreElements, this::forceRefreshVisualizer, this::setRecording);
 		panel.addAncestorListener(new AncestorListenerAdapter() {
 			public void ancestorAdded(AncestorEvent event) {
 				forceRefreshVisualizer();
@@ -90,6 +123,11 @@ public class JavaVisualizerManager implements XDebugSessionListener {
 				IconLoader.getIcon("/icons/viz.png", JavaVisualizerManager.class),
 				null);
 		content.setCloseable(false);
+		content.setDisposer(() -> {
+			// the timeline goes with the tab, and the recording with it
+			stopRecording();
+			panel.setTimeline(null);
+		});
 		UIUtil.invokeLaterIfNeeded(() -> ui.addContent(content));
 	}
 
@@ -99,47 +137,216 @@ public class JavaVisualizerManager implements XDebugSessionListener {
 			initializeContent();
 		}
 
-		try {
-			if (panel.isShowing()) {
-				traceAndVisualize();
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		pauses.incrementAndGet();
+		if (panel.isShowing()) {
+			traceAndVisualize(true);
+		} else if (recording != null) {
+			// there's nothing to show it in, but the step is still recorded
+			traceAndVisualize(false);
 		}
 	}
 
+	@Override
+	public void sessionResumed() {
+		cancelTrace();
+	}
+
+	@Override
+	public void sessionStopped() {
+		cancelTrace();
+		snapshots.clear();
+		types.clear();
+	}
+
 	private void forceRefreshVisualizer() {
 		try {
-			DebugProcess p = DebuggerManager.getInstance(project).getDebugProcess(debugSession.getDebugProcess().getProcessHandler());
-			if (p != null) {
-				p.getManagerThread().invokeCommand(new DebuggerCommand() {
-					@Override
-					public void action() {
-						traceAndVisualize();
-					}
-
-					@Override
-					public void commandCancelled() {
-					}
-				});
-			}
+			traceAndVisualize(true);
 		} catch (Exception e) {
 			System.out.println("unable to force refresh visualizer: " + e);
 		}
 	}
 
-	private void traceAndVisualize() {
+	private void loadMoreElements(long id) {
+		invokeOnManagerThread(() -> {
+			try {
+				Tracer t = tracer;
+				if (t != null) {
+					ExecutionTrace model = t.loadMoreElements(id);
+					UIUtil.invokeLaterIfNeeded(() -> panel.setTrace(model));
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		});
+	}
+
+	/**
+	 * Starts or stops recording: while recording, the finished trace of every pause is added to a recording in
+	 * the temporary directory. The panel shows a timeline of the steps recorded so far, along with the file they're
+	 * recorded to, and keeps it once the recording is stopped; the file is deleted when the timeline is closed, or
+	 * replaced by the next recording, unless the user saves a copy of it.
+	 */
+	private void setRecording(boolean on) {
+		invokeOnManagerThread(() -> {
+			if (!on) {
+				stopRecording();
+			} else if (recording == null) {
+				try {
+					Path file = Files.createTempFile("java-visualizer-", ".jvrec");
+					// in case the IDE exits while the timeline is still open
+					file.toFile().deleteOnExit();
+					TraceRecording r = TraceRecording.create(file);
+					recording = r;
+					UIUtil.invokeLaterIfNeeded(() -> panel.setTimeline(r));
+				} catch (IOException e) {
+					e.printStackTrace();
+					UIUtil.invokeLaterIfNeeded(() -> panel.setRecording(false));
+				}
+			}
+		});
+	}
+
+	private void record(int pause, ExecutionTrace model) {
+		TraceRecording r = recording;
+		if (r == null || pause == recordedPause) {
+			return;
+		}
+		recordedPause = pause;
 		try {
-			SuspendContext sc = (SuspendContext) debugSession.getSuspendContext();
-			if (sc == null || sc.getThread() == null) {
+			r.append(model);
+			UIUtil.invokeLaterIfNeeded(() -> panel.stepRecorded());
+		} catch (IOException e) {
+			e.printStackTrace();
+			stopRecording();
+		}
+	}
+
+	private void stopRecording() {
+		TraceRecording r = recording;
+		recording = null;
+		if (r != null) {
+			// the timeline keeps showing the steps, and closes the recording once it's done reading it
+			UIUtil.invokeLaterIfNeeded(() -> {
+				panel.setRecording(false);
+				panel.recordingStopped(r);
+			});
+		}
+	}
+
+	private void invokeOnManagerThread(Runnable action) {
+		DebugProcess p = DebuggerManager.getInstance(project).getDebugProcess(debugSession.getDebugProcess().getProcessHandler());
+		if (p != null) {
+			p.getManagerThread().invokeCommand(new DebuggerCommand() {
+				@Override
+				public void action() {
+					action.run();
+				}
+
+				@Override
+				public void commandCancelled() {
+				}
+			});
+		}
+	}
+
+	/**
+	 * Starts tracing the current pause, superseding any trace still in progress.
+	 * The heap is converted one BFS level per manager thread command, so that other debugger commands
+	 * (such as the next step) aren't held up behind a large heap. The stack is shown as soon as it's
+	 * converted, and the heap fills in as its levels are. Unless it's to be shown, the trace is only recorded.
+	 */
+	private void traceAndVisualize(boolean show) {
+		int generation = cancelTrace();
+		int pause = pauses.get();
+		invokeOnManagerThread(() -> {
+			if (generation != traceGeneration.get()) {
 				return;
 			}
-			ThreadReference thread = sc.getThread().getThreadReference();
+			try {
+				SuspendContext sc = (SuspendContext) debugSession.getSuspendContext();
+				if (sc == null || sc.getThread() == null) {
+					return;
+				}
+				ThreadReference thread = sc.getThread().getThreadReference();
 
-			Tracer t = new Tracer(thread);
-			panel.setTrace(t.getModel());
-		} catch (Exception e) {
-			e.printStackTrace();
+				Tracer t = new Tracer(thread, loadTracerOptions(), snapshots, types);
+				ExecutionTrace model = t.convertFrames();
+				if (show) {
+					ExecutionTrace frames = model.copy();
+					UIUtil.invokeLaterIfNeeded(() -> {
+						if (generation == traceGeneration.get()) {
+							panel.setTracing(true);
+							panel.setTrace(frames);
+						}
+					});
+				}
+				continueTrace(generation, pause, show, t, model, System.currentTimeMillis());
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		});
+	}
+
+	private void continueTrace(int generation, int pause, boolean show, Tracer t, ExecutionTrace model,
+			long lastPublished) {
+		invokeOnManagerThread(() -> {
+			if (generation != traceGeneration.get()) {
+				return;
+			}
+			try {
+				if (t.convertNextLevel()) {
+					long published = lastPublished;
+					if (show && System.currentTimeMillis() - lastPublished >= PUBLISH_INTERVAL_MS) {
+						// the model keeps growing on this thread, so the panel gets a copy
+						ExecutionTrace partial = model.copy();
+						UIUtil.invokeLaterIfNeeded(() -> {
+							if (generation == traceGeneration.get()) {
+								panel.mergeTrace(partial);
+							}
+						});
+						published = System.currentTimeMillis();
+					}
+					continueTrace(generation, pause, show, t, model, published);
+				} else {
+					tracer = t;
+					if (generation != traceGeneration.get()) {
+						// cancelled since this command started, and the cancel may have cleared the tracer first
+						tracer = null;
+						return;
+					}
+					record(pause, model);
+					if (show) {
+						UIUtil.invokeLaterIfNeeded(() -> {
+							if (generation == traceGeneration.get()) {
+								panel.setTracing(false);
+								panel.mergeTrace(model);
+							}
+						});
+					}
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+				UIUtil.invokeLaterIfNeeded(() -> panel.setTracing(false));
+			}
+		});
+	}
+
+	static TracerOptions loadTracerOptions() {
+		TracerOptions options = new TracerOptions();
+		PropertiesComponent properties = PropertiesComponent.getInstance();
+		options.maxDepth = properties.getInt(KEY_MAX_DEPTH, options.maxDepth);
+		options.maxNodes = properties.getInt(KEY_MAX_NODES, options.maxNodes);
+		return options;
+	}
+
+	/**
+	 * Drops the trace in progress, if any, along with the last finished one. Returns the new generation.
+	 */
+	private int cancelTrace() {
+		tracer = null;
+		if (panel != null) {
+			UIUtil.invokeLaterIfNeeded(() -> panel.setTracing(false));
 		}
+		return traceGeneration.incrementAndGet();
 	}
 }
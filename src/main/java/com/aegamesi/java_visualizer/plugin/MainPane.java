@@ -1,6 +1,9 @@
 package com.aegamesi.java_visualizer.plugin;
 
+import com.aegamesi.java_visualizer.backend.TracerOptions;
 import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.TraceRecording;
+import com.aegamesi.java_visualizer.ui.ExpansionListener;
 import com.aegamesi.java_visualizer.ui.VisualizationPanel;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.ui.components.JBScrollPane;
@@ -9,26 +12,83 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
 import java.awt.BorderLayout;
+import java.util.function.Consumer;
 
 class MainPane extends JPanel {
 	private JLabel placeholderLabel;
+	private JLabel tracingLabel;
 	private VisualizationPanel viz;
+	private ExpansionListener expansionListener;
+	private Runnable refreshListener;
+	private Consumer<Boolean> recordingListener;
+	private boolean recording;
+	private TimelinePanel timeline;
+	// the trace of the current pause, and whether an earlier step from the timeline is shown instead
+	private ExecutionTrace live;
+	private boolean showingPast;
 
     private final float[] ZOOM_LEVELS = {0.25f, 0.333f, 0.5f, 0.666f, 0.75f, 0.8f, 0.9f, 1.0f, 1.1f, 1.25f, 1.5f, 1.75f, 2.0f, 2.5f, 3.0f, 4.0f};
 
-	MainPane() {
+	MainPane(ExpansionListener expansionListener, Runnable refreshListener, Consumer<Boolean> recordingListener) {
+		this.expansionListener = expansionListener;
+		this.refreshListener = refreshListener;
+		this.recordingListener = recordingListener;
 		setLayout(new BorderLayout());
 
 		String text = "No execution trace loaded: make sure you've stopped on a breakpoint.";
 		placeholderLabel = new JLabel(text, SwingConstants.CENTER);
 		add(placeholderLabel);
+
+		tracingLabel = new JLabel("Tracing...", SwingConstants.CENTER);
+		tracingLabel.setVisible(false);
+		add(tracingLabel, BorderLayout.NORTH);
+
+		timeline = new TimelinePanel(new TimelinePanel.Listener() {
+			@Override
+			public void showStep(ExecutionTrace trace) {
+				showingPast = true;
+				show(trace);
+			}
+
+			@Override
+			public void showLatest() {
+				showingPast = false;
+				if (live != null) {
+					show(live);
+				}
+			}
+
+			@Override
+			public void dismissed() {
+				setTimeline(null);
+			}
+		});
+		add(timeline, BorderLayout.SOUTH);
 	}
 
+	/**
+	 * Shows the trace of a new pause, leaving the timeline if an earlier step was shown.
+	 */
 	void setTrace(ExecutionTrace trace) {
+		live = trace;
+		if (showingPast) {
+			showingPast = false;
+			timeline.toLatest();
+		}
+		show(trace);
+	}
+
+	private void show(ExecutionTrace trace) {
 		if (viz == null) {
 			remove(placeholderLabel);
 			viz = new VisualizationPanel();
             viz.setScale(getZoom());
+			// the heap of an earlier step can't be loaded any further: the debuggee has moved on
+			viz.setExpansionListener(id -> {
+				if (!showingPast) {
+					expansionListener.loadMoreElements(id);
+				}
+			});
 			JBScrollPane scrollPane = new JBScrollPane(viz);
 			scrollPane.setBorder(null);
 			add(scrollPane);
@@ -37,6 +97,83 @@ class MainPane extends JPanel {
 		viz.setTrace(trace);
 	}
 
+	/**
+	 * Shows a more complete version of the trace passed to {@link #setTrace}.
+	 */
+	void mergeTrace(ExecutionTrace trace) {
+		if (viz == null) {
+			setTrace(trace);
+		} else {
+			live = trace;
+			if (!showingPast) {
+				viz.mergeTrace(trace);
+			}
+		}
+	}
+
+	/**
+	 * Shows or hides the notice that a new trace is being taken, while the previous one stays on screen.
+	 */
+	void setTracing(boolean tracing) {
+		tracingLabel.setVisible(tracing);
+		revalidate();
+	}
+
+	boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * Starts or stops recording the trace of every step.
+	 */
+	void setRecording(boolean recording) {
+		if (this.recording != recording) {
+			this.recording = recording;
+			recordingListener.accept(recording);
+		}
+	}
+
+	/**
+	 * Shows a timeline of the steps of a recording in progress, or hides it if the recording is null.
+	 */
+	void setTimeline(TraceRecording recording) {
+		timeline.setRecording(recording);
+		if (recording == null && showingPast) {
+			showingPast = false;
+			if (live != null) {
+				show(live);
+			}
+		}
+		revalidate();
+	}
+
+	/**
+	 * Keeps the timeline of a recording that has been stopped, until it's closed or replaced; it closes the
+	 * recording once it's done with it.
+	 */
+	void recordingStopped(TraceRecording recording) {
+		timeline.finish(recording);
+	}
+
+	/**
+	 * Takes in a step added to the recording shown by the timeline.
+	 */
+	void stepRecorded() {
+		timeline.stepAdded();
+	}
+
+	void editTraceLimits() {
+		TracerOptions options = JavaVisualizerManager.loadTracerOptions();
+		TraceLimitsDialog dialog = new TraceLimitsDialog(options.maxDepth, options.maxNodes);
+		if (dialog.showAndGet()) {
+			TracerOptions defaults = new TracerOptions();
+			PropertiesComponent properties = PropertiesComponent.getInstance();
+			properties.setValue(JavaVisualizerManager.KEY_MAX_DEPTH, dialog.getMaxDepth(), defaults.maxDepth);
+			properties.setValue(JavaVisualizerManager.KEY_MAX_NODES, dialog.getMaxNodes(), defaults.maxNodes);
+			refreshListener.run();
+		}
+	}
+
     void zoom(int direction) {
         if (viz != null) {
             float currentZoom = getZoom();
@@ -0,0 +1,22 @@
+package com.aegamesi.java_visualizer.plugin;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import org.jetbrains.annotations.NotNull;
+
+public class RecordAction extends ToggleAction {
+	@Override
+	public boolean isSelected(@NotNull AnActionEvent e) {
+		MainPane pane = (MainPane) e.getData(PlatformDataKeys.CONTEXT_COMPONENT);
+		return pane != null && pane.isRecording();
+	}
+
+	@Override
+	public void setSelected(@NotNull AnActionEvent e, boolean state) {
+		MainPane pane = (MainPane) e.getData(PlatformDataKeys.CONTEXT_COMPONENT);
+		if (pane != null) {
+			pane.setRecording(state);
+		}
+	}
+}
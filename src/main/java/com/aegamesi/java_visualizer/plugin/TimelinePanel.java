@@ -0,0 +1,254 @@
+package com.aegamesi.java_visualizer.plugin;
+
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.TraceRecording;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
+import javax.swing.border.EmptyBorder;
+import java.awt.BorderLayout;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A slider over the steps of a recording, for going back to any of them without touching the debuggee.
+ * Steps are read off the EDT, and only the last one asked for is read, so dragging the slider across a long
+ * recording stays smooth however long each step takes to decode. The file being recorded to is named next to the
+ * slider, with its full path in the tooltip.
+ * <p>
+ * Once the recording is stopped, the timeline stays, reading the finished file, until it's closed or a new recording
+ * replaces it. That recording belongs to the timeline, and is closed on the reader thread, after any read of it
+ * still to run; the file is deleted then too, so a recording is only kept by saving a copy of it.
+ */
+class TimelinePanel extends JPanel {
+	private static final ExecutorService READER = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "Java Visualizer timeline");
+		t.setDaemon(true);
+		return t;
+	});
+
+	interface Listener {
+		/**
+		 * Called with a step from before the latest one.
+		 */
+		void showStep(ExecutionTrace trace);
+
+		/**
+		 * Called when the slider is moved back to the latest step.
+		 */
+		void showLatest();
+
+		/**
+		 * Called when the timeline of a finished recording is closed, or the recording can't be read any more.
+		 */
+		void dismissed();
+	}
+
+	private final Listener listener;
+	private final JSlider slider = new JSlider(0, 0, 0);
+	private final JLabel label = new JLabel();
+	private final JButton save = new JButton("Save...");
+	private final JButton close = new JButton("Close");
+	private volatile TraceRecording recording;
+	// whether the recording has been stopped, and so is the timeline's to close and delete
+	private boolean finished;
+	// the step last asked for; reads of any other are dropped
+	private final AtomicInteger wanted = new AtomicInteger(-1);
+	// set while the slider is moved by the code rather than the user
+	private boolean updating;
+
+	TimelinePanel(Listener listener) {
+		this.listener = listener;
+		setLayout(new BorderLayout());
+		setBorder(new EmptyBorder(2, 4, 2, 4));
+		add(slider);
+		JPanel buttons = new JPanel(new BorderLayout(4, 0));
+		buttons.add(save);
+		buttons.add(close, BorderLayout.EAST);
+		JPanel side = new JPanel(new BorderLayout(4, 0));
+		side.add(label);
+		side.add(buttons, BorderLayout.EAST);
+		add(side, BorderLayout.EAST);
+		slider.addChangeListener(e -> {
+			if (!updating) {
+				moved();
+			}
+		});
+		save.addActionListener(e -> save());
+		close.addActionListener(e -> listener.dismissed());
+		setRecording(null);
+	}
+
+	/**
+	 * Shows the steps of a recording in progress, or hides the timeline if it's null.
+	 */
+	void setRecording(TraceRecording recording) {
+		replace(recording, false);
+		wanted.set(-1);
+		setVisible(recording != null);
+		update(true);
+	}
+
+	/**
+	 * Keeps showing a recording that has been stopped: it's closed, and the finished file opened again to read
+	 * from, with the slider left where it is. If that fails, the file is deleted and the timeline dismissed.
+	 */
+	void finish(TraceRecording r) {
+		READER.execute(() -> {
+			TraceRecording reopened = null;
+			try {
+				r.close();
+				reopened = TraceRecording.open(r.getPath());
+			} catch (IOException | RuntimeException e) {
+				e.printStackTrace();
+				delete(r.getPath());
+			}
+			TraceRecording done = reopened;
+			SwingUtilities.invokeLater(() -> {
+				if (recording != r) {
+					// closed or replaced in the meantime
+					if (done != null) {
+						discardLater(done);
+					}
+				} else if (done == null) {
+					listener.dismissed();
+				} else {
+					replace(done, true);
+					update(false);
+				}
+			});
+		});
+	}
+
+	private void replace(TraceRecording recording, boolean finished) {
+		if (this.finished && this.recording != null) {
+			discardLater(this.recording);
+		}
+		this.recording = recording;
+		this.finished = finished;
+		String where = recording == null ? null : (finished ? "Recorded to " : "Recording to ") + recording.getPath();
+		slider.setToolTipText(where);
+		label.setToolTipText(where);
+		save.setVisible(finished);
+		close.setVisible(finished);
+	}
+
+	/**
+	 * Asks where to keep a copy of the finished recording, which the tester can open, and copies it there on the
+	 * reader thread, before the file can be deleted.
+	 */
+	private void save() {
+		TraceRecording r = recording;
+		FileSaverDescriptor descriptor = new FileSaverDescriptor("Save Recording",
+				"Keeps a copy of the recorded steps", "jvrec");
+		VirtualFileWrapper target = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, this)
+				.save(null, r.getPath().getFileName().toString());
+		if (target == null) {
+			return;
+		}
+		Path copy = target.getFile().toPath();
+		READER.execute(() -> {
+			try {
+				Files.copy(r.getPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				SwingUtilities.invokeLater(() -> Messages.showErrorDialog(this,
+						"Couldn't save the recording: " + e.getMessage(), "Save Recording"));
+			}
+		});
+	}
+
+	/**
+	 * Closes a finished recording and deletes its file, once the reads of it already asked for are done.
+	 */
+	private static void discardLater(TraceRecording r) {
+		READER.execute(() -> {
+			try {
+				r.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			delete(r.getPath());
+		});
+	}
+
+	private static void delete(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Takes in a step added to the recording; the slider follows it if it was on the latest step.
+	 */
+	void stepAdded() {
+		update(isAtLatest());
+	}
+
+	/**
+	 * Moves the slider to the latest step, without showing anything.
+	 */
+	void toLatest() {
+		wanted.set(-1);
+		update(true);
+	}
+
+	boolean isAtLatest() {
+		return slider.getValue() == slider.getMaximum();
+	}
+
+	private void update(boolean toLatest) {
+		TraceRecording r = recording;
+		int steps = r != null ? r.size() : 0;
+		updating = true;
+		slider.setMaximum(Math.max(0, steps - 1));
+		if (toLatest) {
+			slider.setValue(slider.getMaximum());
+		}
+		updating = false;
+		String step = steps == 0 ? "No steps" : "Step " + (slider.getValue() + 1) + " of " + steps;
+		label.setText(r != null ? step + " in " + r.getPath().getFileName() : step);
+	}
+
+	private void moved() {
+		update(false);
+		TraceRecording r = recording;
+		if (r == null || isAtLatest()) {
+			wanted.set(-1);
+			listener.showLatest();
+			return;
+		}
+		int step = slider.getValue();
+		wanted.set(step);
+		READER.execute(() -> {
+			if (wanted.get() != step) {
+				return; // the slider has moved on since
+			}
+			try {
+				ExecutionTrace trace = r.read(step);
+				SwingUtilities.invokeLater(() -> {
+					if (wanted.get() == step && recording == r) {
+						listener.showStep(trace);
+					}
+				});
+			} catch (IOException | RuntimeException e) {
+				if (recording == r) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+}
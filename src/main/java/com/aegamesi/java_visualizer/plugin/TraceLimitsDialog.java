@@ -0,0 +1,44 @@
+package com.aegamesi.java_visualizer.plugin;
+
+import com.intellij.openapi.ui.DialogWrapper;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import java.awt.GridLayout;
+
+/**
+ * Edits how much of the heap the tracer follows; 0 stands for no limit.
+ */
+class TraceLimitsDialog extends DialogWrapper {
+	private JSpinner maxDepth;
+	private JSpinner maxNodes;
+
+	TraceLimitsDialog(int depth, int nodes) {
+		super(true);
+		maxDepth = new JSpinner(new SpinnerNumberModel(depth, 0, 1000, 1));
+		maxNodes = new JSpinner(new SpinnerNumberModel(nodes, 0, 1000000, 100));
+		setTitle("Heap Limits");
+		init();
+	}
+
+	@Override
+	protected JComponent createCenterPanel() {
+		JPanel panel = new JPanel(new GridLayout(2, 2, 8, 8));
+		panel.add(new JLabel("Maximum depth from the stack (0 for no limit):"));
+		panel.add(maxDepth);
+		panel.add(new JLabel("Maximum number of objects (0 for no limit):"));
+		panel.add(maxNodes);
+		return panel;
+	}
+
+	int getMaxDepth() {
+		return (Integer) maxDepth.getValue();
+	}
+
+	int getMaxNodes() {
+		return (Integer) maxNodes.getValue();
+	}
+}
@@ -22,6 +22,7 @@ class Constants {
 	static final Color colorHeapVal = new Color(0xFF, 0xFF, 0xC6);
 	static final Color colorHeapLabel = new Color(0x55, 0x55, 0x55);
 	static final Color colorHeapBorder = new Color(0x88, 0x88, 0x88);
+	static final Color colorChanged = new Color(0xFF, 0xD0, 0x8A);
 
 	static final Color colorPointer = new Color(0x00, 0x55, 0x83);
 	static final Color colorPointerInactive = new Color(0xCC, 0xCC, 0xCC);
@@ -38,7 +39,6 @@ class Constants {
 	static final int padStackVertical = 8;
 	static final int padHeapVertical = 16;
 	static final int padHeapHorizontal = 32;
-	static final int padHeapContinuation = 32;
 	static final int padHeapMap = 4;
 
 	static final int pointerSrcRadius = 3;
@@ -0,0 +1,357 @@
+package com.aegamesi.java_visualizer.ui;
+
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.HeapList;
+import com.aegamesi.java_visualizer.model.HeapMap;
+import com.aegamesi.java_visualizer.model.HeapObject;
+import com.aegamesi.java_visualizer.model.HeapStub;
+import com.aegamesi.java_visualizer.model.Value;
+
+import javax.swing.JLabel;
+import javax.swing.plaf.basic.BasicHTML;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The size of a heap entity as drawn by {@link HeapEntityComponent}, and where its references start, worked out
+ * without creating the component. Label sizes are measured with a single shared label.
+ * <p>
+ * The same layout can also be drawn straight onto a {@link Canvas}, which is how the direct renderer paints
+ * entities without components.
+ */
+class EntityGeometry {
+	/**
+	 * A reference value inside an entity, and the entity it points to.
+	 */
+	static class Origin {
+		final long target;
+		// relative to the entity
+		final Rectangle bounds;
+
+		Origin(long target, Rectangle bounds) {
+			this.target = target;
+			this.bounds = bounds;
+		}
+	}
+
+	/**
+	 * Receives the drawing operations of an entity, in painting order, relative to the entity.
+	 */
+	interface Canvas {
+		void fill(Color color, int x, int y, int width, int height);
+
+		void line(Color color, int x1, int y1, int x2, int y2);
+
+		/**
+		 * Text starting at x, centered vertically in a box of the given height, as a label would draw it.
+		 */
+		void text(String text, Font font, Color color, int x, int y, int height);
+	}
+
+	final int width;
+	final int height;
+	final List<Origin> origins;
+	// the "more" label or stub placeholder that loads more of the heap when clicked, relative to the entity
+	final Rectangle expander;
+
+	private EntityGeometry(int width, int height, List<Origin> origins, Rectangle expander) {
+		this.width = width;
+		this.height = height;
+		this.origins = origins;
+		this.expander = expander;
+	}
+
+	/**
+	 * Measures an entity the way {@link HeapEntityComponent} lays it out. Can be called on any thread.
+	 */
+	static EntityGeometry measure(HeapEntity entity) {
+		return new Layout(null, null).run(entity);
+	}
+
+	/**
+	 * Draws an entity the way {@link HeapEntityComponent} paints it, with the given cells (as numbered by
+	 * {@link TraceDiff}) highlighted, if any.
+	 */
+	static void paint(HeapEntity entity, BitSet highlighted, Canvas canvas) {
+		new Layout(canvas, highlighted).run(entity);
+	}
+
+	/**
+	 * Works out where everything in an entity goes, and draws it if there's a canvas.
+	 * Backgrounds and borders are drawn before the text on top of them, as Swing paints a panel before its children.
+	 */
+	private static class Layout {
+		private final Canvas canvas;
+		private final BitSet highlighted;
+		private final List<Origin> origins = new ArrayList<>();
+		private Rectangle expander;
+
+		Layout(Canvas canvas, BitSet highlighted) {
+			this.canvas = canvas;
+			this.highlighted = highlighted;
+		}
+
+		EntityGeometry run(HeapEntity entity) {
+			Dimension top = Ruler.measure(entity.label, Constants.fontUISmall);
+			if (canvas != null) {
+				canvas.text(entity.label, Constants.fontUISmall, Constants.colorHeapLabel, 0, 0, top.height);
+			}
+			Dimension main = new Dimension();
+			if (entity instanceof HeapObject) {
+				main = object((HeapObject) entity, top.height);
+			} else if (entity instanceof HeapList) {
+				main = list((HeapList) entity, top.height);
+			} else if (entity instanceof HeapMap) {
+				main = map((HeapMap) entity, top.height);
+			} else if (entity instanceof HeapStub) {
+				main = stub(top.height);
+			}
+			return new EntityGeometry(Math.max(top.width, main.width), top.height + main.height, origins, expander);
+		}
+
+		private Dimension object(HeapObject e, int y0) {
+			List<Cell> keys = new ArrayList<>();
+			List<Cell> vals = new ArrayList<>();
+			for (int i = 0; i < e.fields.size(); i++) {
+				// right-aligned, so the text starts after the 4 pixels a CustomJLabel adds
+				Cell key = new Cell(e.fields.shape().name(i), Constants.fontUI, Constants.colorText);
+				key.textOffset = 4;
+				keys.add(key);
+				vals.add(highlight(Cell.of(e.fields.value(i)), vals.size()));
+			}
+			return table(keys, vals, y0);
+		}
+
+		private Dimension map(HeapMap e, int y0) {
+			List<Cell> keys = new ArrayList<>();
+			List<Cell> vals = new ArrayList<>();
+			for (HeapMap.Pair pair : e.pairs) {
+				keys.add(Cell.of(pair.key));
+				vals.add(highlight(Cell.of(pair.val), vals.size()));
+			}
+			if (e.isTruncated()) {
+				keys.add(new Cell("\u2026", Ruler.defaultFont, Constants.colorText));
+				Cell more = new Cell("\u2026 " + e.omittedCount + " more", Constants.fontUISmall, Constants.colorHeapLabel);
+				more.expander = true;
+				vals.add(more);
+			}
+			return table(keys, vals, y0);
+		}
+
+		/**
+		 * Mirrors {@link KVComponent#build()} and {@link KVComponent#paintComponent}.
+		 */
+		private Dimension table(List<Cell> keys, List<Cell> vals, int y0) {
+			int padding = Constants.padHeapMap;
+			int n = keys.size();
+			int keyWidth = 0;
+			int valueWidth = 0;
+			int[] heights = new int[n];
+			int y = 0;
+			for (int i = 0; i < n; i++) {
+				keyWidth = Math.max(keyWidth, keys.get(i).size.width);
+				valueWidth = Math.max(valueWidth, vals.get(i).size.width);
+				heights[i] = Math.max(keys.get(i).size.height, vals.get(i).size.height);
+				y += heights[i] + (padding * 2);
+			}
+			int width = (padding * 4) + keyWidth + valueWidth;
+			int hsplit = keyWidth + (padding * 2);
+
+			if (canvas != null) {
+				canvas.fill(Constants.colorHeapKey, 0, y0, hsplit, y);
+				canvas.fill(Constants.colorHeapVal, hsplit, y0, width - hsplit, y);
+				canvas.line(Constants.colorHeapBorder, hsplit, y0, hsplit, y0 + y - 1);
+				int split = 0;
+				for (int i = 0; i < n; i++) {
+					split += heights[i] + (padding * 2);
+					// the component clips its lines to its bounds
+					canvas.line(Constants.colorHeapBorder, 0, y0 + split - 1, width - 1, y0 + split - 1);
+				}
+			}
+
+			y = 0;
+			for (int i = 0; i < n; i++) {
+				Cell key = keys.get(i);
+				int h = heights[i];
+				y += padding;
+				add(key, new Rectangle(padding + keyWidth - key.size.width, y0 + y, key.size.width, h));
+				add(vals.get(i), new Rectangle((padding * 3) + keyWidth, y0 + y, valueWidth, h));
+				y += h + padding;
+			}
+			return new Dimension(width, y);
+		}
+
+		/**
+		 * Mirrors {@code HeapEntityComponent.PanelList}.
+		 */
+		private Dimension list(HeapList e, int y0) {
+			List<Cell> indices = new ArrayList<>();
+			List<Cell> vals = new ArrayList<>();
+			for (int i = 0; i <= e.items.size(); i++) {
+				if (e.isTruncated() && i == e.omittedOffset) {
+					indices.add(new Cell("\u2026", Constants.fontUISmall, Constants.colorHeapLabel));
+					Cell more = new Cell("\u2026 " + e.omittedCount + " more", Constants.fontUISmall, Constants.colorHeapLabel);
+					more.expander = true;
+					vals.add(more);
+				}
+				if (i < e.items.size()) {
+					indices.add(new Cell(Integer.toString(e.originalIndex(i)), Constants.fontUISmall, Constants.colorHeapLabel));
+					vals.add(highlight(Cell.of(e.items.get(i)), i));
+				}
+			}
+
+			int width = 0;
+			int height = 0;
+			for (int i = 0; i < vals.size(); i++) {
+				width += 8 + vals.get(i).size.width + 8;
+				height = Math.max(height, indices.get(i).size.height + vals.get(i).size.height);
+			}
+			height += 8 + 8;
+
+			if (canvas != null) {
+				canvas.fill(Constants.colorHeapVal, 0, y0, width, height);
+				canvas.line(Constants.colorHeapBorder, 1, y0 + height - 1, width - 1, y0 + height - 1);
+			}
+			int x = 0;
+			for (int i = 0; i < vals.size(); i++) {
+				if (canvas != null) {
+					canvas.line(Constants.colorHeapBorder, x + 1, y0, x + 1, y0 + height - 1);
+				}
+				x += 16 + vals.get(i).size.width;
+			}
+
+			x = 0;
+			for (int i = 0; i < vals.size(); i++) {
+				Cell index = indices.get(i);
+				Cell value = vals.get(i);
+				add(index, new Rectangle(x + 4, y0 + 4, index.size.width, index.size.height));
+				x += 8;
+				add(value, new Rectangle(x, y0 + 4 + index.size.height + 4, value.size.width, value.size.height));
+				x += value.size.width + 8;
+			}
+			return new Dimension(width, height);
+		}
+
+		/**
+		 * Mirrors {@code HeapEntityComponent.PanelStub}.
+		 */
+		private Dimension stub(int y0) {
+			Cell label = new Cell("\u2026", Constants.fontUISmall, Constants.colorHeapLabel);
+			label.expander = true;
+			int width = label.size.width + 2;
+			int height = label.size.height + 2;
+			if (canvas != null) {
+				canvas.fill(Constants.colorHeapVal, 0, y0, width, height);
+				canvas.line(Constants.colorHeapBorder, 0, y0, width - 1, y0);
+				canvas.line(Constants.colorHeapBorder, width - 1, y0, width - 1, y0 + height - 1);
+				canvas.line(Constants.colorHeapBorder, 0, y0 + height - 1, width - 1, y0 + height - 1);
+				canvas.line(Constants.colorHeapBorder, 0, y0, 0, y0 + height - 1);
+			}
+			add(label, new Rectangle(1, y0 + 1, label.size.width, label.size.height));
+			return new Dimension(width, height);
+		}
+
+		private Cell highlight(Cell cell, int index) {
+			cell.highlighted = highlighted != null && highlighted.get(index);
+			return cell;
+		}
+
+		/**
+		 * Places a cell: references become origins, and the highlight and text are drawn.
+		 */
+		private void add(Cell cell, Rectangle bounds) {
+			if (cell.highlighted && canvas != null) {
+				canvas.fill(Constants.colorChanged, bounds.x, bounds.y, bounds.width, bounds.height);
+			}
+			if (cell.reference != null) {
+				origins.add(new Origin(cell.reference, bounds));
+				return;
+			}
+			if (cell.expander) {
+				expander = bounds;
+			}
+			if (canvas != null) {
+				canvas.text(cell.text, cell.font, cell.color, bounds.x + cell.textOffset, bounds.y, bounds.height);
+			}
+		}
+	}
+
+	/**
+	 * A label or value in an entity, mirroring {@link CustomJLabel} and {@link ValueComponent}.
+	 */
+	private static class Cell {
+		final String text;
+		final Font font;
+		final Color color;
+		final Dimension size;
+		// the entity a reference points to, for reference values (which show no text)
+		Long reference;
+		int textOffset;
+		boolean expander;
+		// a value that changed, as ValueComponent shows it
+		boolean highlighted;
+
+		Cell(String text, Font font, Color color) {
+			this.text = text;
+			this.font = font;
+			this.color = color;
+			this.size = Ruler.measure(text, font);
+		}
+
+		private Cell(String text, Font font, Dimension size, Long reference) {
+			this.text = text;
+			this.font = font;
+			this.color = Constants.colorText;
+			this.size = size;
+			this.reference = reference;
+		}
+
+		static Cell of(Value v) {
+			boolean mono = v.getType() == Value.Type.STRING || v.getType() == Value.Type.CHAR;
+			Font font = mono ? Constants.fontUIMono : Constants.fontUI;
+			String text = v.toString();
+			Dimension label = Ruler.measure(text, font);
+			if (v.getType() == Value.Type.REFERENCE) {
+				return new Cell(text, font, new Dimension(Constants.pointerWidth, label.height), v.getReference());
+			}
+			return new Cell(text, font, label, null);
+		}
+	}
+
+	/**
+	 * Measures text the way a {@link CustomJLabel} would, from font metrics rather than a label, so that entities
+	 * can be measured off the EDT. The metrics are taken from a label, and kept per font.
+	 */
+	private static class Ruler {
+		private static final JLabel label = new CustomJLabel("");
+		static final Font defaultFont = label.getFont();
+		// the insets and padding around the text
+		private static final Dimension empty = label.getPreferredSize();
+		private static final Map<Font, FontMetrics> metrics = new ConcurrentHashMap<>();
+
+		static Dimension measure(String text, Font font) {
+			font = font != null ? font : defaultFont;
+			if (text == null || text.isEmpty()) {
+				return new Dimension(empty);
+			}
+			if (BasicHTML.isHTMLString(text)) {
+				// rendered as HTML, which only the label knows how to measure
+				synchronized (label) {
+					label.setFont(font);
+					label.setText(text);
+					return label.getPreferredSize();
+				}
+			}
+			FontMetrics fm = metrics.computeIfAbsent(font, label::getFontMetrics);
+			return new Dimension(empty.width + fm.stringWidth(text), empty.height + fm.getHeight());
+		}
+	}
+}
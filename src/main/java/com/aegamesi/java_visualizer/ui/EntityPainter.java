@@ -0,0 +1,87 @@
+package com.aegamesi.java_visualizer.ui;
+
+import com.aegamesi.java_visualizer.model.HeapEntity;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Paints heap entities straight onto a graphics context, without components.
+ * <p>
+ * Font metrics and glyph vectors are kept between paints: most of the text in a heap (field names, type names,
+ * small numbers) repeats, and laying it out is the expensive part of drawing a label.
+ */
+class EntityPainter implements EntityGeometry.Canvas {
+	private static final int MAX_CACHED = 10000;
+
+	private final Map<Font, FontMetrics> metrics = new HashMap<>();
+	private final Map<Font, Map<String, GlyphVector>> glyphs = new HashMap<>();
+	// glyph vectors are only valid for the context they were laid out for, which changes with the zoom
+	private FontRenderContext glyphContext;
+
+	private Graphics2D g;
+	private int x0;
+	private int y0;
+
+	/**
+	 * Paints an entity with its top-left corner at the given position, highlighting the given cells (as numbered
+	 * by {@link TraceDiff}), if any.
+	 */
+	void paint(Graphics2D g, HeapEntity entity, BitSet highlighted, Rectangle position) {
+		this.g = g;
+		this.x0 = position.x;
+		this.y0 = position.y;
+		FontRenderContext context = g.getFontRenderContext();
+		if (!context.equals(glyphContext)) {
+			glyphs.clear();
+			metrics.clear();
+			glyphContext = context;
+		}
+		EntityGeometry.paint(entity, highlighted, this);
+		this.g = null;
+	}
+
+	@Override
+	public void fill(Color color, int x, int y, int width, int height) {
+		g.setColor(color);
+		g.fillRect(x0 + x, y0 + y, width, height);
+	}
+
+	@Override
+	public void line(Color color, int x1, int y1, int x2, int y2) {
+		g.setColor(color);
+		g.drawLine(x0 + x1, y0 + y1, x0 + x2, y0 + y2);
+	}
+
+	@Override
+	public void text(String text, Font font, Color color, int x, int y, int height) {
+		if (text.isEmpty()) {
+			return;
+		}
+		FontMetrics fm = metrics.computeIfAbsent(font, g::getFontMetrics);
+		// centered the way SwingUtilities.layoutCompoundLabel centers a label's text
+		int baseline = y + (height / 2) - (fm.getHeight() / 2) + fm.getAscent();
+		g.setColor(color);
+		g.drawGlyphVector(glyphs(text, font), x0 + x, y0 + baseline);
+	}
+
+	private GlyphVector glyphs(String text, Font font) {
+		Map<String, GlyphVector> cache = glyphs.computeIfAbsent(font, f -> new HashMap<>());
+		GlyphVector gv = cache.get(text);
+		if (gv == null) {
+			gv = font.createGlyphVector(glyphContext, text);
+			if (cache.size() < MAX_CACHED) {
+				cache.put(text, gv);
+			}
+		}
+		return gv;
+	}
+}
@@ -0,0 +1,12 @@
+package com.aegamesi.java_visualizer.ui;
+
+/**
+ * Handles requests from the visualization for parts of the heap that haven't been loaded yet.
+ */
+public interface ExpansionListener {
+	/**
+	 * Called when the user asks for the next page of elements of the truncated list or map with the given id,
+	 * or for the contents of the stub with the given id.
+	 */
+	void loadMoreElements(long id);
+}
@@ -4,25 +4,38 @@ import com.aegamesi.java_visualizer.model.HeapEntity;
 import com.aegamesi.java_visualizer.model.HeapList;
 import com.aegamesi.java_visualizer.model.HeapMap;
 import com.aegamesi.java_visualizer.model.HeapObject;
+import com.aegamesi.java_visualizer.model.HeapStub;
 import com.aegamesi.java_visualizer.model.Value;
 
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import java.awt.BorderLayout;
+import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
 class HeapEntityComponent extends JPanel {
+	static final String TOOLTIP_MORE = "Load the next elements";
+	static final String TOOLTIP_STUB = "Not loaded (beyond the depth or object limit): click to load";
+
 	private VisualizationPanel viz;
 	private HeapEntity entity;
 	private List<ValueComponent> valueComponents = new ArrayList<>();
+	// the cells that changed since the step before, as numbered by TraceDiff
+	private BitSet highlighted;
 
 	HeapEntityComponent(VisualizationPanel viz, HeapEntity entity) {
 		this.viz = viz;
 		this.entity = entity;
+		this.highlighted = viz.getDiff().entity(entity.id);
 
 		setOpaque(false);
 		setLayout(new BorderLayout());
@@ -40,6 +53,8 @@ class HeapEntityComponent extends JPanel {
 			mainPanel = new PanelList((HeapList) entity);
 		} else if (entity instanceof HeapMap) {
 			mainPanel = new PanelMap((HeapMap) entity);
+		} else if (entity instanceof HeapStub) {
+			mainPanel = new PanelStub();
 		}
 
 		if (mainPanel != null) {
@@ -55,6 +70,12 @@ class HeapEntityComponent extends JPanel {
 		return valueComponents;
 	}
 
+	private void highlight(ValueComponent value, int cell) {
+		if (highlighted != null && highlighted.get(cell)) {
+			value.setHighlighted(true);
+		}
+	}
+
 	private class PanelObject extends KVComponent {
 		PanelObject(HeapObject e) {
 			List<JLabel> keys = new ArrayList<>();
@@ -65,6 +86,7 @@ class HeapEntityComponent extends JPanel {
 				key.setForeground(Constants.colorText);
 
 				ValueComponent val = new ValueComponent(viz, local.getValue());
+				highlight(val, vals.size());
 				valueComponents.add(val);
 				keys.add(key);
 				vals.add(val);
@@ -77,18 +99,54 @@ class HeapEntityComponent extends JPanel {
 		}
 	}
 
+	/**
+	 * A placeholder for the elements left out of a truncated list or map, which loads the next page when clicked.
+	 */
+	private JLabel createMoreLabel(int omitted) {
+		return createExpandLabel("\u2026 " + omitted + " more", TOOLTIP_MORE);
+	}
+
+	private JLabel createExpandLabel(String text, String tooltip) {
+		JLabel more = new CustomJLabel(text);
+		more.setFont(Constants.fontUISmall);
+		more.setForeground(Constants.colorHeapLabel);
+		more.setToolTipText(tooltip);
+		more.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+		more.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				viz.loadMoreElements(entity);
+			}
+		});
+		return more;
+	}
+
+	private class PanelStub extends JPanel {
+		PanelStub() {
+			setBackground(Constants.colorHeapVal);
+			setBorder(BorderFactory.createLineBorder(Constants.colorHeapBorder));
+			setLayout(new BorderLayout());
+			add(createExpandLabel("\u2026", TOOLTIP_STUB));
+		}
+	}
+
 	private class PanelMap extends KVComponent {
 		PanelMap(HeapMap e) {
-			List<ValueComponent> keys = new ArrayList<>();
-			List<ValueComponent> vals = new ArrayList<>();
+			List<JComponent> keys = new ArrayList<>();
+			List<JComponent> vals = new ArrayList<>();
 			for (HeapMap.Pair entry : e.pairs) {
 				ValueComponent key = new ValueComponent(viz, entry.key);
 				ValueComponent val = new ValueComponent(viz, entry.val);
-				valueComponents.add(val);
+				highlight(val, vals.size());
+				valueComponents.add(key);
 				valueComponents.add(val);
 				keys.add(key);
 				vals.add(val);
 			}
+			if (e.isTruncated()) {
+				keys.add(new CustomJLabel("\u2026"));
+				vals.add(createMoreLabel(e.omittedCount));
+			}
 
 			setColors(Constants.colorHeapKey, Constants.colorHeapVal, Constants.colorHeapBorder);
 			setPadding(Constants.padHeapMap);
@@ -100,34 +158,47 @@ class HeapEntityComponent extends JPanel {
 	private class PanelList extends JPanel {
 		private int[] splits;
 
+		private int x = 0;
+		private int height = 0;
+
 		PanelList(HeapList e) {
 			setBackground(Constants.colorHeapVal);
 			setLayout(null);
-			splits = new int[e.items.size()];
-
-			int height = 0;
-			int x = 0;
-			for (int i = 0; i < e.items.size(); i++) {
-				splits[i] = x;
-				ValueComponent value = new ValueComponent(viz, e.items.get(i));
-				valueComponents.add(value);
-				Dimension size = value.getPreferredSize();
-				JLabel indexLabel = new CustomJLabel(Integer.toString(i));
-				indexLabel.setFont(Constants.fontUISmall);
-				indexLabel.setForeground(Constants.colorHeapLabel);
-				Dimension indexSize = indexLabel.getPreferredSize();
-				indexLabel.setBounds(x + 4, 4, indexSize.width, indexSize.height);
-				add(indexLabel);
-				x += 8;
-				value.setBounds(x, 4 + indexSize.height + 4, size.width, size.height);
-				x += size.width + 8;
-				add(value);
-				height = Math.max(height, indexSize.height + size.height);
+			splits = new int[e.items.size() + (e.isTruncated() ? 1 : 0)];
+
+			int cell = 0;
+			for (int i = 0; i <= e.items.size(); i++) {
+				if (e.isTruncated() && i == e.omittedOffset) {
+					splits[cell++] = x;
+					addCell("\u2026", createMoreLabel(e.omittedCount));
+				}
+				if (i < e.items.size()) {
+					splits[cell++] = x;
+					ValueComponent value = new ValueComponent(viz, e.items.get(i));
+					highlight(value, i);
+					valueComponents.add(value);
+					addCell(Integer.toString(e.originalIndex(i)), value);
+				}
 			}
 			height += 8 + 8;
 			setPreferredSize(new Dimension(x, height));
 		}
 
+		private void addCell(String index, JComponent value) {
+			Dimension size = value.getPreferredSize();
+			JLabel indexLabel = new CustomJLabel(index);
+			indexLabel.setFont(Constants.fontUISmall);
+			indexLabel.setForeground(Constants.colorHeapLabel);
+			Dimension indexSize = indexLabel.getPreferredSize();
+			indexLabel.setBounds(x + 4, 4, indexSize.width, indexSize.height);
+			add(indexLabel);
+			x += 8;
+			value.setBounds(x, 4 + indexSize.height + 4, size.width, size.height);
+			x += size.width + 8;
+			add(value);
+			height = Math.max(height, indexSize.height + size.height);
+		}
+
 		@Override
 		protected void paintComponent(Graphics g) {
 			super.paintComponent(g);
@@ -0,0 +1,314 @@
+package com.aegamesi.java_visualizer.ui;
+
+import com.aegamesi.java_visualizer.layout.LayeredLayout;
+import com.aegamesi.java_visualizer.layout.LayoutGraph;
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.Frame;
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.LongMap;
+import com.aegamesi.java_visualizer.model.Value;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Where the heap entities of a trace go: their geometry, their positions in the heap panel, and the pointers
+ * between them, along with what changed since the step before.
+ * <p>
+ * It's worked out from the trace alone, without components, so it can be computed off the EDT and handed to
+ * {@link HeapPanel} when done. It isn't changed once computed.
+ */
+class HeapLayout {
+	private static final int GRID_CELL_SIZE = 256;
+
+	final ExecutionTrace trace;
+	final LongMap<HeapEntity> heap;
+	final LongMap<EntityGeometry> geometry;
+	final LongMap<Rectangle> positions;
+	// the ids of the laid out entities, in layout order, and where they are
+	final long[] laidOut;
+	final SpatialGrid grid;
+	final Dimension size;
+	// the pointers out of the laid out entities, in layout order, relative to the heap panel
+	final Map<PointerConnection.Key, PointerConnection> pointers;
+	final PointerIndex pointerIndex;
+	final TraceDiff diff;
+
+	private HeapLayout(ExecutionTrace trace, LongMap<EntityGeometry> geometry,
+			LongMap<Rectangle> positions, long[] laidOut, SpatialGrid grid, Dimension size,
+			Map<PointerConnection.Key, PointerConnection> pointers, HeapLayout previous, TraceDiff diff) {
+		this.trace = trace;
+		this.heap = trace.heap;
+		this.geometry = geometry;
+		this.positions = positions;
+		this.laidOut = laidOut;
+		this.grid = grid;
+		this.size = size;
+		this.pointers = pointers;
+		// the same pointers, when nothing that has any moved
+		this.pointerIndex = previous != null && pointers.equals(previous.pointers)
+				? previous.pointerIndex
+				: new PointerIndex(new ArrayList<>(pointers.values()), previous != null ? previous.pointerIndex : null);
+		this.diff = diff;
+	}
+
+	/**
+	 * Lays out the heap of a trace, starting from the references on its stack, and works out the pointers between
+	 * the entities. The geometry of entities that are the same as in the previous layout, if there is one, is
+	 * reused, and so are pointers that haven't moved.
+	 * <p>
+	 * {@code base} is the layout of the step before, if there is one (it's the previous layout too, unless the
+	 * trace is a more complete version of the previous one). Entities that were already shown, in either, stay
+	 * where they were, and the changes since the step before are worked out.
+	 * <p>
+	 * Can be called on any thread. Throws {@link CancellationException} if the thread is interrupted.
+	 */
+	static HeapLayout compute(ExecutionTrace trace, HeapLayout previous, HeapLayout base) {
+		LongMap<HeapEntity> heap = trace.heap;
+		// the nodes of the graph are the entities in id order, whatever order they were converted in
+		long[] ids = heap.keys();
+		Arrays.sort(ids);
+		LongMap<EntityGeometry> geometry = new LongMap<>(ids.length);
+		for (long id : ids) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException();
+			}
+			HeapEntity entity = heap.get(id);
+			EntityGeometry g = null;
+			if (previous != null && previous.heap.get(id) == entity) {
+				g = previous.geometry.get(id);
+			}
+			geometry.put(id, g != null ? g : EntityGeometry.measure(entity));
+		}
+
+		LayoutGraph graph = new LayoutGraph();
+		for (long id : ids) {
+			EntityGeometry g = geometry.get(id);
+			graph.addNode(g.width, g.height);
+		}
+		for (int node = 0; node < ids.length; node++) {
+			for (EntityGeometry.Origin origin : geometry.get(ids[node]).origins) {
+				int target = Arrays.binarySearch(ids, origin.target);
+				if (target >= 0) { // otherwise not converted yet
+					graph.addEdge(node, target, origin.bounds.y);
+				}
+			}
+		}
+		// start from the stack, in the order StackPanel shows it, then from anything referenced elsewhere
+		// in the heap
+		for (int i = trace.frames.size() - 1; i >= 0; i--) {
+			Frame frame = trace.frames.get(i);
+			for (Value local : frame.locals.values()) {
+				int target = local.getType() == Value.Type.REFERENCE ? Arrays.binarySearch(ids, local.getReference()) : -1;
+				if (target >= 0) {
+					graph.addRoot(target);
+				}
+			}
+		}
+		for (long id : ids) {
+			for (EntityGeometry.Origin origin : geometry.get(id).origins) {
+				int target = Arrays.binarySearch(ids, origin.target);
+				if (target >= 0) {
+					graph.addRoot(target);
+				}
+			}
+		}
+
+		LayeredLayout.Result layout = new LayeredLayout(Constants.padHeapHorizontal, Constants.padHeapVertical)
+				.layout(graph);
+		Rectangle[] placed = new Rectangle[ids.length];
+		for (int node : layout.order) {
+			EntityGeometry g = geometry.get(ids[node]);
+			placed[node] = new Rectangle(layout.x[node], layout.y[node], g.width, g.height);
+		}
+		Dimension size = new Dimension(layout.width, layout.height);
+		if (previous != null || base != null) {
+			size = keepPlaces(layout, ids, placed, previous, base);
+		}
+
+		LongMap<Rectangle> positions = new LongMap<>(layout.order.length);
+		long[] laidOut = new long[layout.order.length];
+		SpatialGrid grid = new SpatialGrid(GRID_CELL_SIZE);
+		for (int i = 0; i < laidOut.length; i++) {
+			int node = layout.order[i];
+			laidOut[i] = ids[node];
+			positions.put(ids[node], placed[node]);
+			grid.add(i, placed[node]);
+		}
+
+		Map<PointerConnection.Key, PointerConnection> pointers = new LinkedHashMap<>();
+		for (long id : laidOut) {
+			Rectangle position = positions.get(id);
+			List<EntityGeometry.Origin> origins = geometry.get(id).origins;
+			for (int i = 0; i < origins.size(); i++) {
+				Rectangle target = positions.get(origins.get(i).target);
+				if (target == null) {
+					continue; // not converted yet
+				}
+				Rectangle refBounds = new Rectangle(origins.get(i).bounds);
+				refBounds.translate(position.x, position.y);
+				PointerConnection.Key key = new PointerConnection.Key(id, i);
+				pointers.put(key, PointerConnection.between(true, refBounds, target,
+						previous != null ? previous.pointers.get(key) : null));
+			}
+		}
+		TraceDiff diff = TraceDiff.between(base != null ? base.trace : null, trace);
+		return new HeapLayout(trace, geometry, positions, laidOut, grid, size, pointers, previous, diff);
+	}
+
+	/**
+	 * Moves the freshly laid out entities back to where they were in the previous layout or, failing that, the
+	 * layout of the step before, so that the heap doesn't shift around as the program is stepped through. New
+	 * entities keep their place relative to the entity they were laid out next to. Entities that would overlap
+	 * one already placed are pushed down, below it.
+	 * <p>
+	 * Returns the size of the area the entities take up.
+	 */
+	private static Dimension keepPlaces(LayeredLayout.Result layout, long[] ids, Rectangle[] placed,
+			HeapLayout previous, HeapLayout base) {
+		Rectangle[] fresh = placed.clone();
+		Placement placement = new Placement(placed);
+		List<Integer> unplaced = new ArrayList<>();
+		for (int node : layout.order) {
+			long id = ids[node];
+			Rectangle before = previous != null ? previous.positions.get(id) : null;
+			// entities of the same size where they were in the previous layout don't overlap each other
+			boolean still = before != null && before.width == fresh[node].width
+					&& before.height == fresh[node].height;
+			if (before == null && base != null) {
+				before = base.positions.get(id);
+			}
+			if (before != null) {
+				placement.place(node, before.x, before.y, fresh[node], still);
+			} else {
+				placed[node] = null;
+				unplaced.add(node);
+			}
+		}
+		// by layer, so that the node each one was laid out next to comes first
+		unplaced.sort((a, b) -> Integer.compare(fresh[a].x, fresh[b].x));
+		for (int node : unplaced) {
+			int parent = layout.parent[node];
+			int dx = 0;
+			int dy = 0;
+			if (parent >= 0) {
+				dx = placed[parent].x - fresh[parent].x;
+				dy = placed[parent].y - fresh[parent].y;
+			}
+			placement.place(node, fresh[node].x + dx, fresh[node].y + dy, fresh[node], false);
+		}
+		return placement.size;
+	}
+
+	/**
+	 * Nodes placed one at a time, each as close as it can below where it's wanted without overlapping the nodes
+	 * placed before it.
+	 */
+	private static class Placement {
+		private final Rectangle[] placed;
+		private final SpatialGrid all = new SpatialGrid(GRID_CELL_SIZE);
+		// the nodes that weren't placed where they were in the previous layout
+		private final SpatialGrid moved = new SpatialGrid(GRID_CELL_SIZE);
+		final Dimension size = new Dimension();
+
+		Placement(Rectangle[] placed) {
+			this.placed = placed;
+		}
+
+		/**
+		 * Places a node at or below the given position. A node that's still where it was in the previous layout
+		 * only needs checking against the nodes that have moved, which are usually few.
+		 */
+		void place(int node, int x, int y, Rectangle fresh, boolean still) {
+			int hGap = Constants.padHeapHorizontal;
+			int vGap = Constants.padHeapVertical;
+			Rectangle r = new Rectangle(Math.max(x, 0), Math.max(y, 0), fresh.width, fresh.height);
+			SpatialGrid others = still ? moved : all;
+			boolean pushed = true;
+			while (pushed) {
+				pushed = false;
+				BitSet near = others.in(new Rectangle(r.x - hGap, r.y - vGap, r.width + (hGap * 2),
+						r.height + (vGap * 2)));
+				for (int i = near.nextSetBit(0); i >= 0; i = near.nextSetBit(i + 1)) {
+					Rectangle other = placed[i];
+					Rectangle clearance = new Rectangle(other.x - hGap, other.y - vGap,
+							other.width + (hGap * 2), other.height + (vGap * 2));
+					if (clearance.intersects(r)) {
+						r.y = other.y + other.height + vGap;
+						pushed = true;
+						// it has moved after all, so it can overlap anything
+						others = all;
+					}
+				}
+			}
+			placed[node] = r;
+			all.add(node, r);
+			if (others == all) {
+				moved.add(node, r);
+			}
+			size.width = Math.max(size.width, r.x + r.width);
+			size.height = Math.max(size.height, r.y + r.height);
+		}
+	}
+
+	/**
+	 * The areas, relative to the heap panel, that look different from the given layout: those of the entities
+	 * that were added, removed, moved or changed, or whose highlights did, and those of the pointers that did.
+	 */
+	List<Rectangle2D> changesSince(HeapLayout previous) {
+		List<Rectangle2D> out = new ArrayList<>();
+		for (long id : laidOut) {
+			Rectangle now = positions.get(id);
+			Rectangle before = previous.positions.get(id);
+			if (before == null || !before.equals(now) || heap.get(id) != previous.heap.get(id)
+					|| !Objects.equals(diff.entity(id), previous.diff.entity(id))) {
+				out.add(now);
+				if (before != null) {
+					out.add(before);
+				}
+			}
+		}
+		for (long id : previous.laidOut) {
+			if (!positions.containsKey(id)) {
+				out.add(previous.positions.get(id));
+			}
+		}
+		for (Map.Entry<PointerConnection.Key, PointerConnection> e : pointers.entrySet()) {
+			PointerConnection before = previous.pointers.get(e.getKey());
+			if (before != e.getValue()) {
+				out.add(e.getValue().getBounds());
+				if (before != null) {
+					out.add(before.getBounds());
+				}
+			}
+		}
+		for (Map.Entry<PointerConnection.Key, PointerConnection> e : previous.pointers.entrySet()) {
+			if (!pointers.containsKey(e.getKey())) {
+				out.add(e.getValue().getBounds());
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * The ids of the entities that may intersect the given area, in layout order.
+	 */
+	long[] entitiesIn(Rectangle area) {
+		BitSet found = grid.in(area);
+		long[] out = new long[found.cardinality()];
+		int n = 0;
+		for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+			out[n++] = laidOut[i];
+		}
+		return out;
+	}
+}
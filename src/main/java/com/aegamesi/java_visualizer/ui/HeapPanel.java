@@ -1,101 +1,178 @@
 package com.aegamesi.java_visualizer.ui;
 
 import com.aegamesi.java_visualizer.model.HeapEntity;
-import com.aegamesi.java_visualizer.model.Value;
+import com.aegamesi.java_visualizer.model.LongMap;
 
 import javax.swing.JPanel;
-import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.awt.Toolkit;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
-
+import java.util.Objects;
+
+/**
+ * Lays out the heap entities to the right of the stack.
+ * <p>
+ * Where the entities go is worked out beforehand, possibly off the EDT, as a {@link HeapLayout}; the pointers out of
+ * the entities come from their geometry too.
+ * Big heaps are virtualized: components are only created for the entities in view, as the view is scrolled.
+ * With the direct renderer there are no components at all, and the entities in the clip are painted from their
+ * geometry.
+ */
 class HeapPanel extends JPanel {
-	private VisualizationPanel viz;
-	private Map<Long, HeapEntity> heap;
+	// heaps with more entities than this are virtualized
+	static final int VIRTUALIZE_THRESHOLD = 1000;
+
+	/**
+	 * How entities are shown: a component each, components for the entities in view, or painted directly.
+	 */
+	enum Mode {
+		COMPONENTS, VIRTUAL, DIRECT
+	}
 
-	private Map<Long, HeapEntityComponent> components = new HashMap<>();
+	private VisualizationPanel viz;
+	private HeapLayout layout;
+	private final Mode mode;
+	private final EntityPainter painter = new EntityPainter();
 
-	private Set<Long> layoutCompleted = new HashSet<>();
-	private LinkedList<ValueComponent> layoutPending = new LinkedList<>();
+	private LongMap<HeapEntityComponent> components = new LongMap<>();
 
-	HeapPanel(VisualizationPanel viz, Map<Long, HeapEntity> heap) {
+	HeapPanel(VisualizationPanel viz, HeapLayout layout, Mode mode) {
 		this.viz = viz;
-		this.heap = heap;
+		this.mode = mode;
 
 		setOpaque(false);
 		setLayout(null);
 
-		createComponents();
-		computeLayout();
+		install(layout);
 	}
 
-	Map<Long, HeapEntityComponent> getHeapComponents() {
-		return components;
+	Mode getMode() {
+		return mode;
 	}
 
-	private void createComponents() {
-		// Create the heap components (but don't lay them out yet)
-		for (Map.Entry<Long, HeapEntity> pair : heap.entrySet()) {
-			HeapEntityComponent obj = new HeapEntityComponent(viz, pair.getValue());
-			components.put(pair.getKey(), obj);
-			add(obj);
-		}
+	/**
+	 * Where the entity with the given id is, relative to this panel, or null if it isn't shown.
+	 */
+	Rectangle getEntityBounds(long id) {
+		return layout.positions.get(id);
+	}
+
+	HeapLayout getHeapLayout() {
+		return layout;
 	}
 
-	private void computeLayout() {
-		layoutPending.addAll(viz.getReferenceComponents());
-
-		Rectangle bounds = new Rectangle();
-		int x = 0;
-		int y = 0;
-		int rowHeight = 0;
-		HeapEntityComponent lastEntity = null;
-		while (!layoutPending.isEmpty()) {
-			ValueComponent vc = layoutPending.removeFirst();
-			long id = vc.getValue().reference;
-			if (layoutCompleted.contains(id)) {
-				continue;
+	/**
+	 * Shows a new layout, e.g. of the next step, or of the next BFS level of a trace still in progress.
+	 * Components are only created for entities that weren't already shown, or have changed, or whose highlighted
+	 * values have.
+	 */
+	void install(HeapLayout layout) {
+		HeapLayout previous = this.layout;
+		this.layout = layout;
+		Iterator<Map.Entry<Long, HeapEntityComponent>> it = components.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long, HeapEntityComponent> e = it.next();
+			long id = e.getKey();
+			if (layout.heap.get(id) != previous.heap.get(id)
+					|| !Objects.equals(layout.diff.entity(id), previous.diff.entity(id))) {
+				viz.getReferenceComponents().removeAll(e.getValue().getValueComponents());
+				remove(e.getValue());
+				it.remove();
 			}
-			layoutCompleted.add(id);
+		}
+		if (mode == Mode.COMPONENTS) {
+			// otherwise they are created once the entity is in view, or never when painting directly
+			layout.heap.forEachEntry((id, entity) -> {
+				if (!components.containsKey(id)) {
+					HeapEntityComponent obj = new HeapEntityComponent(viz, entity);
+					// pointers from heap entities are drawn from their geometry
+					viz.getReferenceComponents().removeAll(obj.getValueComponents());
+					components.put(id, obj);
+					add(obj);
+				}
+			});
+		}
+		for (Map.Entry<Long, HeapEntityComponent> e : components.entrySet()) {
+			Rectangle position = layout.positions.get(e.getKey());
+			// entities that aren't laid out aren't shown
+			e.getValue().setBounds(position != null ? position : new Rectangle());
+		}
+		setPreferredSize(layout.size);
+	}
 
-			HeapEntityComponent component = components.get(id);
-			addValuesToLayout(component.getValueComponents());
+	/**
+	 * The entity whose "more" label or stub placeholder is at the given point (relative to this panel), if any.
+	 * Only needed when painting directly, as there are no labels to click.
+	 */
+	HeapEntity getExpandableAt(int x, int y) {
+		for (int i : layout.grid.at(x, y)) {
+			long id = layout.laidOut[i];
+			Rectangle position = layout.positions.get(id);
+			if (position.contains(x, y)) {
+				Rectangle expander = layout.geometry.get(id).expander;
+				if (expander != null && expander.contains(x - position.x, y - position.y)) {
+					return layout.heap.get(id);
+				}
+				return null;
+			}
+		}
+		return null;
+	}
 
-			Dimension size = component.getPreferredSize();
-			boolean sameRow = lastEntity == null || lastEntity.getEntity().hasSameStructure(component.getEntity());
-			if (!sameRow) {
-				y += rowHeight + Constants.padHeapVertical;
-				x = 0;
-				rowHeight = 0;
+	/**
+	 * Creates the components for the entities in the given area (relative to this panel) and drops the others.
+	 * Only needed when virtualized.
+	 */
+	void updateViewport(Rectangle visible) {
+		if (mode != Mode.VIRTUAL) {
+			return;
+		}
+		Iterator<Map.Entry<Long, HeapEntityComponent>> it = components.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long, HeapEntityComponent> e = it.next();
+			Rectangle position = layout.positions.get(e.getKey());
+			if (position == null || !visible.intersects(position)) {
+				remove(e.getValue());
+				it.remove();
 			}
-			Rectangle originBounds = Constants.getRelativeBounds(this, vc);
-			if (originBounds != null) {
-				x = Math.max(x, originBounds.x + Constants.padHeapContinuation);
+		}
+		for (long id : layout.entitiesIn(visible)) {
+			Rectangle position = layout.positions.get(id);
+			if (visible.intersects(position) && !components.containsKey(id)) {
+				HeapEntityComponent obj = new HeapEntityComponent(viz, layout.heap.get(id));
+				// pointers from heap entities are drawn from their geometry
+				viz.getReferenceComponents().removeAll(obj.getValueComponents());
+				obj.setBounds(position);
+				obj.validate();
+				components.put(id, obj);
+				add(obj);
 			}
-			component.setBounds(x, y, size.width, size.height);
-
-			x += size.width + Constants.padHeapHorizontal;
-			rowHeight = Math.max(rowHeight, size.height);
-			bounds = bounds.union(component.getBounds());
-
-			lastEntity = component;
 		}
-		setPreferredSize(new Dimension(bounds.width, bounds.height));
+		repaint();
 	}
 
-	private void addValuesToLayout(List<ValueComponent> vals) {
-		for (int i = vals.size() - 1; i >= 0; i -= 1) {
-			ValueComponent vc = vals.get(i);
-			Value v = vc.getValue();
-			if (v.type == Value.Type.REFERENCE) {
-				if (!layoutCompleted.contains(v.reference)) {
-					layoutPending.addFirst(vc);
-				}
+	@Override
+	protected void paintComponent(Graphics _g) {
+		super.paintComponent(_g);
+		if (mode != Mode.DIRECT) {
+			return;
+		}
+		Graphics2D g = (Graphics2D) _g.create();
+		// labels draw their text with the desktop's antialiasing settings
+		Map<?, ?> hints = (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+		if (hints != null) {
+			g.addRenderingHints(hints);
+		}
+		Rectangle clip = g.getClipBounds();
+		for (long id : clip != null ? layout.entitiesIn(clip) : layout.laidOut) {
+			Rectangle position = layout.positions.get(id);
+			if (clip == null || clip.intersects(position)) {
+				painter.paint(g, layout.heap.get(id), layout.diff.entity(id), position);
 			}
 		}
+		g.dispose();
 	}
 }
@@ -2,18 +2,20 @@ package com.aegamesi.java_visualizer.ui;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
 import java.awt.geom.Path2D;
 import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
 
 class PointerConnection {
 	private static final double curviness = 10.0;
 	private Shape mainShape;
 	private Path2D arrow;
 
-	private boolean selected;
 	private boolean active;
 	private double x1, y1, x2, y2;
 
@@ -81,8 +83,24 @@ class PointerConnection {
 		arrow.transform(AffineTransform.getTranslateInstance(x2, y2));
 	}
 
-	void setSelected(boolean selected) {
-		this.selected = selected;
+	/**
+	 * The pointer from a reference to the entity it points to, given where both are. If {@code previous} is that
+	 * same pointer already, it's returned rather than a new one.
+	 */
+	static PointerConnection between(boolean active, Rectangle refBounds, Rectangle objBounds,
+			PointerConnection previous) {
+		double x1 = refBounds.x + refBounds.width - (Constants.pointerWidth / 2.0);
+		double y1 = refBounds.y + (refBounds.height / 2.0);
+		double x2 = objBounds.x;
+		double y2 = objBounds.y + (objBounds.height / 2.0);
+		if (previous != null && previous.hasEnds(active, x1, y1, x2, y2)) {
+			return previous;
+		}
+		return new PointerConnection(active, x1, y1, x2, y2);
+	}
+
+	private boolean hasEnds(boolean active, double x1, double y1, double x2, double y2) {
+		return this.active == active && this.x1 == x1 && this.y1 == y1 && this.x2 == x2 && this.y2 == y2;
 	}
 
 	boolean isNear(int x, int y) {
@@ -92,7 +110,55 @@ class PointerConnection {
 		return Math.abs(x - x1) < 8 && Math.abs(y - y1) < 8;
 	}
 
-	void paint(Graphics2D g) {
+	/**
+	 * The flattened path of the pointer's line, without its source dot and arrow head.
+	 */
+	PathIterator getPathIterator(double flatness) {
+		return mainShape.getPathIterator(null, flatness);
+	}
+
+	/**
+	 * The area the pointer paints in, including its source dot and arrow head.
+	 */
+	Rectangle2D getBounds() {
+		Rectangle2D bounds = mainShape.getBounds2D().createUnion(arrow.getBounds2D());
+		int r = Constants.pointerSrcRadius;
+		bounds.add(new Rectangle2D.Double(x1 - r, y1 - r, r * 2, r * 2));
+		return bounds;
+	}
+
+	/**
+	 * Identifies a reference, so that its pointer can be kept across layouts: the id of the heap entity it's in
+	 * (-1 for the stack) and its position among the references there.
+	 */
+	static final class Key {
+		final long source;
+		final int index;
+
+		Key(long source, int index) {
+			this.source = source;
+			this.index = index;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return source == other.source && index == other.index;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(source) * 31 + index;
+		}
+	}
+
+	/**
+	 * Paints the pointer, highlighted if it's the one under the mouse.
+	 */
+	void paint(Graphics2D g, boolean selected) {
 		Color c = Constants.colorPointerInactive;
 		if (active) {
 			c = Constants.colorPointer;
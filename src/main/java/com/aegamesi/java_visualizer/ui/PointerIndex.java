@@ -0,0 +1,117 @@
+package com.aegamesi.java_visualizer.ui;
+
+import java.awt.Rectangle;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pointers of a visualization in a {@link SpatialGrid}, so that finding the pointer under the mouse,
+ * or the pointers to paint in a clip, only looks at the pointers nearby.
+ * <p>
+ * Each pointer is entered in every cell its curve passes close to. Long pointers are split into pieces no longer
+ * than a cell, so they only occupy the cells along them, rather than every cell of their bounding box.
+ * Following the curves is most of the work, so the cells of each pointer are kept, for the next index to reuse
+ * for the pointers that haven't changed.
+ */
+class PointerIndex {
+	private static final int CELL_SIZE = 256;
+	// covers the hover tolerance around the curve and source, the source dot, and the arrow head
+	private static final int MARGIN = 12;
+	private static final double FLATNESS = 1.0;
+
+	private final List<PointerConnection> pointers;
+	private final SpatialGrid grid = new SpatialGrid(CELL_SIZE);
+	// the cells of each pointer
+	private final Map<PointerConnection, long[]> cells = new IdentityHashMap<>();
+
+	/**
+	 * Indexes the given pointers, reusing the cells of the ones that are in {@code previous}, if given.
+	 */
+	PointerIndex(List<PointerConnection> pointers, PointerIndex previous) {
+		this.pointers = new ArrayList<>(pointers);
+		for (int i = 0; i < this.pointers.size(); i++) {
+			PointerConnection p = this.pointers.get(i);
+			long[] keys = previous != null ? previous.cells.get(p) : null;
+			if (keys == null) {
+				keys = cellsAlong(p);
+			}
+			cells.put(p, keys);
+			grid.add(i, keys);
+		}
+	}
+
+	/**
+	 * The first pointer that is near the given point, as {@link PointerConnection#isNear} decides.
+	 */
+	PointerConnection find(int x, int y) {
+		for (int i : grid.at(x, y)) {
+			PointerConnection p = pointers.get(i);
+			if (p.isNear(x, y)) {
+				return p;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The pointers that may paint in the given area, in the order they were added. All of them if there's no area.
+	 */
+	List<PointerConnection> find(Rectangle area) {
+		if (area == null) {
+			return pointers;
+		}
+		BitSet found = grid.in(area);
+		List<PointerConnection> out = new ArrayList<>(found.cardinality());
+		for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+			out.add(pointers.get(i));
+		}
+		return out;
+	}
+
+	/**
+	 * The cells a pointer's curve passes close to, in the order the curve does. A cell can come up more than once.
+	 */
+	private long[] cellsAlong(PointerConnection p) {
+		long[] keys = new long[8];
+		int count = 0;
+		double[] coords = new double[6];
+		PathIterator it = p.getPathIterator(FLATNESS);
+		double x = 0;
+		double y = 0;
+		while (!it.isDone()) {
+			int type = it.currentSegment(coords);
+			double x1 = type == PathIterator.SEG_LINETO ? x : coords[0];
+			double y1 = type == PathIterator.SEG_LINETO ? y : coords[1];
+			if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+				double x2 = coords[0];
+				double y2 = coords[1];
+				int pieces = Math.max(1, (int) Math.ceil(Math.hypot(x2 - x1, y2 - y1) / CELL_SIZE));
+				for (int k = 0; k < pieces; k++) {
+					double ax = x1 + (x2 - x1) * k / pieces;
+					double ay = y1 + (y2 - y1) * k / pieces;
+					double bx = x1 + (x2 - x1) * (k + 1) / pieces;
+					double by = y1 + (y2 - y1) * (k + 1) / pieces;
+					for (long key : grid.cells(
+							Math.min(ax, bx) - MARGIN, Math.min(ay, by) - MARGIN,
+							Math.max(ax, bx) + MARGIN, Math.max(ay, by) + MARGIN)) {
+						if (count == 0 || keys[count - 1] != key) {
+							if (count == keys.length) {
+								keys = Arrays.copyOf(keys, count * 2);
+							}
+							keys[count++] = key;
+						}
+					}
+				}
+			}
+			x = coords[0];
+			y = coords[1];
+			it.next();
+		}
+		return Arrays.copyOf(keys, count);
+	}
+}
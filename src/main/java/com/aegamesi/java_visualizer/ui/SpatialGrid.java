@@ -0,0 +1,134 @@
+package com.aegamesi.java_visualizer.ui;
+
+import com.aegamesi.java_visualizer.model.LongMap;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A sparse grid of square cells, each holding the items (numbered from 0) whose areas overlap it.
+ * Only occupied cells take up memory, so it suits the large, mostly empty areas of big heaps.
+ */
+class SpatialGrid {
+	private static final int[] NONE = new int[0];
+
+	private final int cellSize;
+	// the items in each cell, in the order they were added; the first element is the count
+	private final LongMap<int[]> cells = new LongMap<>();
+
+	SpatialGrid(int cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Adds an item to every cell that overlaps the given area, bounds included.
+	 * An item can be added several times, as long as no other item is added in between.
+	 */
+	void add(int item, double x1, double y1, double x2, double y2) {
+		int cx1 = (int) Math.floor(x1 / cellSize);
+		int cy1 = (int) Math.floor(y1 / cellSize);
+		int cx2 = (int) Math.floor(x2 / cellSize);
+		int cy2 = (int) Math.floor(y2 / cellSize);
+		for (int cx = cx1; cx <= cx2; cx++) {
+			for (int cy = cy1; cy <= cy2; cy++) {
+				add(key(cx, cy), item);
+			}
+		}
+	}
+
+	/**
+	 * The keys of the cells that overlap the given area, bounds included, to add an item to with
+	 * {@link #add(int, long[])}.
+	 */
+	long[] cells(double x1, double y1, double x2, double y2) {
+		int cx1 = (int) Math.floor(x1 / cellSize);
+		int cy1 = (int) Math.floor(y1 / cellSize);
+		int cx2 = (int) Math.floor(x2 / cellSize);
+		int cy2 = (int) Math.floor(y2 / cellSize);
+		long[] keys = new long[(cx2 - cx1 + 1) * (cy2 - cy1 + 1)];
+		int k = 0;
+		for (int cx = cx1; cx <= cx2; cx++) {
+			for (int cy = cy1; cy <= cy2; cy++) {
+				keys[k++] = key(cx, cy);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Adds an item to the given cells, as found by {@link #cells}.
+	 */
+	void add(int item, long[] cells) {
+		for (long key : cells) {
+			add(key, item);
+		}
+	}
+
+	void add(int item, Rectangle r) {
+		add(item, r.x, r.y, r.x + r.width - 1, r.y + r.height - 1);
+	}
+
+	/**
+	 * The items whose cell contains the given point, in the order they were added.
+	 * They are only near the point: their areas don't necessarily contain it.
+	 */
+	int[] at(int x, int y) {
+		int[] cell = cells.get(key(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize)));
+		return cell == null ? NONE : Arrays.copyOfRange(cell, 1, cell[0] + 1);
+	}
+
+	/**
+	 * The items in the cells that overlap the given area.
+	 */
+	BitSet in(Rectangle area) {
+		BitSet found = new BitSet();
+		int cx1 = Math.floorDiv(area.x, cellSize);
+		int cy1 = Math.floorDiv(area.y, cellSize);
+		int cx2 = Math.floorDiv(area.x + area.width, cellSize);
+		int cy2 = Math.floorDiv(area.y + area.height, cellSize);
+		if ((long) (cx2 - cx1 + 1) * (cy2 - cy1 + 1) > cells.size()) {
+			// bigger than the occupied part of the grid: look at every occupied cell instead
+			cells.forEachEntry((key, cell) -> {
+				int cx = (int) (key >> 32);
+				int cy = (int) key;
+				if (cx >= cx1 && cx <= cx2 && cy >= cy1 && cy <= cy2) {
+					addAll(found, cell);
+				}
+			});
+		} else {
+			for (int cx = cx1; cx <= cx2; cx++) {
+				for (int cy = cy1; cy <= cy2; cy++) {
+					addAll(found, cells.get(key(cx, cy)));
+				}
+			}
+		}
+		return found;
+	}
+
+	private static void addAll(BitSet found, int[] cell) {
+		if (cell != null) {
+			for (int k = 1; k <= cell[0]; k++) {
+				found.set(cell[k]);
+			}
+		}
+	}
+
+	private void add(long key, int item) {
+		int[] cell = cells.get(key);
+		if (cell == null) {
+			cell = new int[4];
+		} else if (cell[cell[0]] == item) {
+			return; // a repeat is always the last item added
+		} else if (cell[0] + 1 == cell.length) {
+			cell = Arrays.copyOf(cell, cell.length * 2);
+		}
+		cell[0] += 1;
+		cell[cell[0]] = item;
+		cells.put(key, cell);
+	}
+
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+}
@@ -13,6 +13,7 @@ import javax.swing.border.CompoundBorder;
 import javax.swing.border.MatteBorder;
 import java.awt.Dimension;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
@@ -20,7 +21,10 @@ class StackFrameComponent extends JPanel {
 	private Frame frame;
 	private VisualizationPanel viz;
 
-	StackFrameComponent(VisualizationPanel viz, Frame frame, boolean first) {
+	/**
+	 * {@code highlighted} are the locals, in name order, that changed since the step before, if any.
+	 */
+	StackFrameComponent(VisualizationPanel viz, Frame frame, boolean first, BitSet highlighted) {
 		this.frame = frame;
 		this.viz = viz;
 		setBackground(first ? Constants.colorFrameBGFirst : Constants.colorFrameBG);
@@ -42,6 +46,7 @@ class StackFrameComponent extends JPanel {
 			localLabel.setForeground(Constants.colorText);
 			localLabel.setFont(Constants.fontUI);
 			ValueComponent value = new ValueComponent(viz, local.getValue(), first);
+			value.setHighlighted(highlighted != null && highlighted.get(vals.size()));
 			Border b1 = new MatteBorder(0, 1, 1, 0, Constants.colorFrameOutline);
 			Border b2 = BorderFactory.createEmptyBorder(2, 2, 2, 2);
 			value.setBorder(new CompoundBorder(b1, b2));
@@ -0,0 +1,936 @@
+package com.aegamesi.java_visualizer.ui;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextAttribute;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.awt.image.renderable.RenderableImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.AttributedCharacterIterator;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Paints into an SVG document instead of pixels, so a visualization can be saved as a diagram that stays sharp at
+ * any size. Everything is written as it's painted: shapes and strokes as filled paths, strings as text in the
+ * font they were painted in, and images as embedded PNGs. Glyph vectors are written as their outlines, as their
+ * text isn't known. Clips are kept; XOR mode and copying areas aren't supported.
+ * <p>
+ * Graphics made from this one with {@link #create()} write to the same document, which is finished by calling
+ * {@link #finish()} on this one once everything has been painted.
+ */
+public class SvgGraphics extends Graphics2D {
+	private static final int BUFFER_SIZE = 64 << 10;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * What all the graphics painting into one document share.
+	 */
+	private static class Document {
+		final Writer out;
+		final StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 1024);
+		// for font metrics and the device configuration, which a document doesn't have
+		final Graphics2D scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+		IOException error;
+		int clips;
+
+		Document(Writer out) {
+			this.out = out;
+		}
+
+		void flush(boolean force) {
+			if (!force && buffer.length() < BUFFER_SIZE) {
+				return;
+			}
+			if (error == null) {
+				try {
+					out.append(buffer);
+				} catch (IOException e) {
+					error = e;
+				}
+			}
+			buffer.setLength(0);
+		}
+	}
+
+	private final Document doc;
+	private AffineTransform transform = new AffineTransform();
+	// in device space, and null for none
+	private Shape clip;
+	// the id of the clip path written for the clip, or -1 if it hasn't been yet
+	private int clipId = -1;
+	private Color color = Color.BLACK;
+	private Paint paint = Color.BLACK;
+	private Color background = Color.WHITE;
+	private Font font = new Font(Font.DIALOG, Font.PLAIN, 12);
+	private Stroke stroke = new BasicStroke();
+	private Composite composite = AlphaComposite.SrcOver;
+	private RenderingHints hints = new RenderingHints(null);
+
+	/**
+	 * Starts a document of the given size, in pixels, written to the given writer.
+	 */
+	public SvgGraphics(Writer out, int width, int height) {
+		doc = new Document(out);
+		doc.buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+				.append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"")
+				.append(" width=\"").append(width).append("\" height=\"").append(height)
+				.append("\" viewBox=\"0 0 ").append(width).append(' ').append(height).append("\">\n");
+	}
+
+	private SvgGraphics(SvgGraphics g) {
+		doc = g.doc;
+		transform = new AffineTransform(g.transform);
+		clip = g.clip;
+		clipId = g.clipId;
+		color = g.color;
+		paint = g.paint;
+		background = g.background;
+		font = g.font;
+		stroke = g.stroke;
+		composite = g.composite;
+		hints = (RenderingHints) g.hints.clone();
+	}
+
+	/**
+	 * Ends the document, and writes out what's left of it. The writer isn't closed.
+	 */
+	public void finish() throws IOException {
+		doc.buffer.append("</svg>\n");
+		doc.flush(true);
+		if (doc.error == null) {
+			doc.out.flush();
+		}
+		if (doc.error != null) {
+			throw doc.error;
+		}
+	}
+
+	@Override
+	public Graphics create() {
+		return new SvgGraphics(this);
+	}
+
+	@Override
+	public void dispose() {
+	}
+
+	// painting
+
+	@Override
+	public void fill(Shape s) {
+		fillDevice(transform.createTransformedShape(s));
+	}
+
+	@Override
+	public void draw(Shape s) {
+		Object control = hints.get(RenderingHints.KEY_STROKE_CONTROL);
+		if (control != RenderingHints.VALUE_STROKE_PURE && stroke instanceof BasicStroke) {
+			// as when rasterizing, lines go through the middle of pixels rather than along their edges
+			s = AffineTransform.getTranslateInstance(0.5, 0.5).createTransformedShape(s);
+		}
+		fill(stroke.createStrokedShape(s));
+	}
+
+	private void fillDevice(Shape s) {
+		double opacity = opacity(color);
+		if (opacity <= 0) {
+			return;
+		}
+		Rectangle2D bounds = s.getBounds2D();
+		String clipPath = clipPath(bounds);
+		if (clipPath == null) {
+			return;
+		}
+		StringBuilder b = doc.buffer;
+		b.append("<path d=\"");
+		path(b, s.getPathIterator(null));
+		b.append("\" fill=\"");
+		color(b, color);
+		b.append('"');
+		if (opacity < 1) {
+			b.append(" fill-opacity=\"");
+			number(b, opacity);
+			b.append('"');
+		}
+		if (s.getPathIterator(null).getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+			b.append(" fill-rule=\"evenodd\"");
+		}
+		b.append(clipPath).append("/>\n");
+		doc.flush(false);
+	}
+
+	@Override
+	public void drawString(String str, float x, float y) {
+		drawString(str, x, y, font);
+	}
+
+	private void drawString(String str, float x, float y, Font font) {
+		double opacity = opacity(color);
+		if (str.isEmpty() || opacity <= 0) {
+			return;
+		}
+		Rectangle2D textBounds = font.getStringBounds(str, getFontRenderContext());
+		Rectangle2D bounds = transform.createTransformedShape(new Rectangle2D.Double(x + textBounds.getX(),
+				y + textBounds.getY(), textBounds.getWidth(), textBounds.getHeight())).getBounds2D();
+		String clipPath = clipPath(bounds);
+		if (clipPath == null) {
+			return;
+		}
+		StringBuilder b = doc.buffer;
+		b.append("<text x=\"");
+		number(b, x);
+		b.append("\" y=\"");
+		number(b, y);
+		b.append("\" font-family=\"");
+		escape(b, fontFamily(font));
+		b.append("\" font-size=\"");
+		number(b, font.getSize2D());
+		b.append('"');
+		if (font.isBold()) {
+			b.append(" font-weight=\"bold\"");
+		}
+		if (font.isItalic()) {
+			b.append(" font-style=\"italic\"");
+		}
+		// keeps the text as wide as it was laid out to be, should the viewer not have the font
+		b.append(" textLength=\"");
+		number(b, textBounds.getWidth());
+		b.append("\" lengthAdjust=\"spacingAndGlyphs\" fill=\"");
+		color(b, color);
+		b.append('"');
+		if (opacity < 1) {
+			b.append(" fill-opacity=\"");
+			number(b, opacity);
+			b.append('"');
+		}
+		if (!transform.isIdentity()) {
+			b.append(" transform=\"");
+			matrix(b, transform);
+			b.append('"');
+		}
+		b.append(clipPath).append(" xml:space=\"preserve\">");
+		escape(b, str);
+		b.append("</text>\n");
+		doc.flush(false);
+	}
+
+	@Override
+	public void drawString(String str, int x, int y) {
+		drawString(str, (float) x, (float) y);
+	}
+
+	/**
+	 * Writes the text in the font it starts with; other attributes are left out.
+	 */
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+		Object attribute = iterator.getAttribute(TextAttribute.FONT);
+		Font f = attribute instanceof Font ? (Font) attribute : font;
+		StringBuilder text = new StringBuilder(iterator.getEndIndex() - iterator.getBeginIndex());
+		for (char c = iterator.first(); c != AttributedCharacterIterator.DONE; c = iterator.next()) {
+			text.append(c);
+		}
+		drawString(text.toString(), x, y, f);
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+		drawString(iterator, (float) x, (float) y);
+	}
+
+	@Override
+	public void drawGlyphVector(GlyphVector g, float x, float y) {
+		fill(g.getOutline(x, y));
+	}
+
+	@Override
+	public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
+		BufferedImage image = buffered(img);
+		if (image == null) {
+			return false;
+		}
+		AffineTransform at = new AffineTransform(transform);
+		if (xform != null) {
+			at.concatenate(xform);
+		}
+		Rectangle2D bounds = at.createTransformedShape(
+				new Rectangle(image.getWidth(), image.getHeight())).getBounds2D();
+		String clipPath = clipPath(bounds);
+		if (clipPath == null) {
+			return true;
+		}
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		try {
+			ImageIO.write(image, "png", png);
+		} catch (IOException e) {
+			return false;
+		}
+		StringBuilder b = doc.buffer;
+		b.append("<image width=\"").append(image.getWidth()).append("\" height=\"").append(image.getHeight())
+				.append("\" transform=\"");
+		matrix(b, at);
+		b.append('"');
+		double opacity = opacity(Color.BLACK);
+		if (opacity < 1) {
+			b.append(" opacity=\"");
+			number(b, opacity);
+			b.append('"');
+		}
+		b.append(clipPath).append(" xlink:href=\"data:image/png;base64,")
+				.append(Base64.getEncoder().encodeToString(png.toByteArray())).append("\"/>\n");
+		doc.flush(false);
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+		return drawImage(img, AffineTransform.getTranslateInstance(x, y), observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+		int w = img.getWidth(null);
+		int h = img.getHeight(null);
+		if (w <= 0 || h <= 0) {
+			return false;
+		}
+		AffineTransform at = AffineTransform.getTranslateInstance(x, y);
+		at.scale(width / (double) w, height / (double) h);
+		return drawImage(img, at, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+		return drawImage(img, x, y, img.getWidth(null), img.getHeight(null), bgcolor, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+		if (bgcolor != null) {
+			Paint p = paint;
+			setColor(bgcolor);
+			fillRect(x, y, width, height);
+			setPaint(p);
+		}
+		return drawImage(img, x, y, width, height, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
+			ImageObserver observer) {
+		return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
+			Color bgcolor, ImageObserver observer) {
+		BufferedImage image = buffered(img);
+		if (image == null) {
+			return false;
+		}
+		int x = Math.max(0, Math.min(sx1, sx2));
+		int y = Math.max(0, Math.min(sy1, sy2));
+		int w = Math.min(image.getWidth(), Math.max(sx1, sx2)) - x;
+		int h = Math.min(image.getHeight(), Math.max(sy1, sy2)) - y;
+		if (w <= 0 || h <= 0) {
+			return true;
+		}
+		BufferedImage part = image.getSubimage(x, y, w, h);
+		AffineTransform at = AffineTransform.getTranslateInstance(dx1, dy1);
+		at.scale((dx2 - dx1) / (double) (sx2 - sx1), (dy2 - dy1) / (double) (sy2 - sy1));
+		if (sx2 < sx1) {
+			at.translate(-w, 0);
+		}
+		if (sy2 < sy1) {
+			at.translate(0, -h);
+		}
+		if (bgcolor != null) {
+			Paint p = paint;
+			setColor(bgcolor);
+			fill(at.createTransformedShape(new Rectangle(w, h)));
+			setPaint(p);
+		}
+		return drawImage(part, at, observer);
+	}
+
+	@Override
+	public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+		drawImage(op != null ? op.filter(img, null) : img, x, y, null);
+	}
+
+	@Override
+	public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+		BufferedImage image;
+		if (img instanceof BufferedImage) {
+			image = (BufferedImage) img;
+		} else {
+			WritableRaster raster = img.getColorModel().createCompatibleWritableRaster(img.getWidth(), img.getHeight());
+			img.copyData(raster.createWritableTranslatedChild(img.getMinX(), img.getMinY()));
+			image = new BufferedImage(img.getColorModel(), raster, img.getColorModel().isAlphaPremultiplied(), null);
+		}
+		drawImage(image, xform, null);
+	}
+
+	@Override
+	public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+		drawRenderedImage(img.createDefaultRendering(), xform);
+	}
+
+	private static BufferedImage buffered(Image img) {
+		if (img instanceof BufferedImage) {
+			return (BufferedImage) img;
+		}
+		int w = img.getWidth(null);
+		int h = img.getHeight(null);
+		if (w <= 0 || h <= 0) {
+			return null;
+		}
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.drawImage(img, 0, 0, null);
+		g.dispose();
+		return image;
+	}
+
+	@Override
+	public void drawLine(int x1, int y1, int x2, int y2) {
+		draw(new Line2D.Float(x1, y1, x2, y2));
+	}
+
+	@Override
+	public void drawRect(int x, int y, int width, int height) {
+		if (width >= 0 && height >= 0) {
+			draw(new Rectangle(x, y, width, height));
+		}
+	}
+
+	@Override
+	public void fillRect(int x, int y, int width, int height) {
+		if (width > 0 && height > 0) {
+			fill(new Rectangle(x, y, width, height));
+		}
+	}
+
+	@Override
+	public void clearRect(int x, int y, int width, int height) {
+		Paint p = paint;
+		Composite c = composite;
+		setColor(background);
+		composite = AlphaComposite.SrcOver;
+		fillRect(x, y, width, height);
+		setPaint(p);
+		composite = c;
+	}
+
+	@Override
+	public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+		draw(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+	}
+
+	@Override
+	public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+		fill(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+	}
+
+	@Override
+	public void drawOval(int x, int y, int width, int height) {
+		draw(new Ellipse2D.Float(x, y, width, height));
+	}
+
+	@Override
+	public void fillOval(int x, int y, int width, int height) {
+		fill(new Ellipse2D.Float(x, y, width, height));
+	}
+
+	@Override
+	public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		draw(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+	}
+
+	@Override
+	public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		fill(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+	}
+
+	@Override
+	public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+		if (nPoints < 2) {
+			return;
+		}
+		Path2D.Float path = new Path2D.Float();
+		path.moveTo(xPoints[0], yPoints[0]);
+		for (int i = 1; i < nPoints; i++) {
+			path.lineTo(xPoints[i], yPoints[i]);
+		}
+		draw(path);
+	}
+
+	@Override
+	public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		draw(new Polygon(xPoints, yPoints, nPoints));
+	}
+
+	@Override
+	public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		fill(new Polygon(xPoints, yPoints, nPoints));
+	}
+
+	@Override
+	public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+	}
+
+	@Override
+	public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+		if (onStroke) {
+			s = stroke.createStrokedShape(s);
+		}
+		return transform.createTransformedShape(s).intersects(rect);
+	}
+
+	// clipping
+
+	@Override
+	public Shape getClip() {
+		if (clip == null) {
+			return null;
+		}
+		try {
+			return userShape(clip, transform.createInverse());
+		} catch (NoninvertibleTransformException e) {
+			return new Rectangle();
+		}
+	}
+
+	@Override
+	public Rectangle getClipBounds() {
+		Shape c = getClip();
+		return c != null ? c.getBounds() : null;
+	}
+
+	@Override
+	public void setClip(Shape s) {
+		clip = s != null ? userShape(s, transform) : null;
+		clipId = -1;
+	}
+
+	@Override
+	public void setClip(int x, int y, int width, int height) {
+		setClip(new Rectangle(x, y, width, height));
+	}
+
+	@Override
+	public void clip(Shape s) {
+		if (clip == null || s == null) {
+			setClip(s);
+			return;
+		}
+		Shape added = userShape(s, transform);
+		if (clip instanceof Rectangle2D && added instanceof Rectangle2D) {
+			clip = ((Rectangle2D) clip).createIntersection((Rectangle2D) added);
+		} else {
+			Area area = new Area(clip);
+			area.intersect(new Area(added));
+			clip = area;
+		}
+		clipId = -1;
+	}
+
+	@Override
+	public void clipRect(int x, int y, int width, int height) {
+		clip(new Rectangle(x, y, width, height));
+	}
+
+	/**
+	 * The shape transformed, kept a rectangle if it was one and the transform doesn't rotate or shear it, as
+	 * almost every clip is.
+	 */
+	private static Shape userShape(Shape s, AffineTransform at) {
+		if (s instanceof Rectangle2D && (at.getType() & (AffineTransform.TYPE_GENERAL_ROTATION
+				| AffineTransform.TYPE_QUADRANT_ROTATION | AffineTransform.TYPE_GENERAL_TRANSFORM)) == 0) {
+			Rectangle2D r = (Rectangle2D) s;
+			double x1 = r.getMinX() * at.getScaleX() + at.getTranslateX();
+			double y1 = r.getMinY() * at.getScaleY() + at.getTranslateY();
+			double x2 = r.getMaxX() * at.getScaleX() + at.getTranslateX();
+			double y2 = r.getMaxY() * at.getScaleY() + at.getTranslateY();
+			return new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1));
+		}
+		return at.createTransformedShape(s);
+	}
+
+	/**
+	 * The attribute clipping something with the given bounds in device space to the clip, writing the clip path
+	 * first if need be: empty if the clip doesn't cut it, or null if it's clipped out altogether.
+	 */
+	private String clipPath(Rectangle2D bounds) {
+		if (clip == null) {
+			return "";
+		}
+		Rectangle2D clipBounds = clip instanceof Rectangle2D ? (Rectangle2D) clip : clip.getBounds2D();
+		if (!clipBounds.intersects(bounds) && !(bounds.isEmpty() && clipBounds.contains(bounds.getX(), bounds.getY()))) {
+			return null;
+		}
+		if (clip instanceof Rectangle2D && clipBounds.contains(bounds)) {
+			return "";
+		}
+		if (clipId < 0) {
+			clipId = doc.clips++;
+			StringBuilder b = doc.buffer;
+			b.append("<clipPath id=\"clip").append(clipId).append("\"><path d=\"");
+			path(b, clip.getPathIterator(null));
+			b.append("\"/></clipPath>\n");
+		}
+		return " clip-path=\"url(#clip" + clipId + ")\"";
+	}
+
+	// state
+
+	@Override
+	public void translate(int x, int y) {
+		transform.translate(x, y);
+	}
+
+	@Override
+	public void translate(double tx, double ty) {
+		transform.translate(tx, ty);
+	}
+
+	@Override
+	public void rotate(double theta) {
+		transform.rotate(theta);
+	}
+
+	@Override
+	public void rotate(double theta, double x, double y) {
+		transform.rotate(theta, x, y);
+	}
+
+	@Override
+	public void scale(double sx, double sy) {
+		transform.scale(sx, sy);
+	}
+
+	@Override
+	public void shear(double shx, double shy) {
+		transform.shear(shx, shy);
+	}
+
+	@Override
+	public void transform(AffineTransform tx) {
+		transform.concatenate(tx);
+	}
+
+	@Override
+	public void setTransform(AffineTransform tx) {
+		transform = new AffineTransform(tx);
+	}
+
+	@Override
+	public AffineTransform getTransform() {
+		return new AffineTransform(transform);
+	}
+
+	@Override
+	public Color getColor() {
+		return color;
+	}
+
+	@Override
+	public void setColor(Color c) {
+		if (c != null) {
+			color = c;
+			paint = c;
+		}
+	}
+
+	@Override
+	public Paint getPaint() {
+		return paint;
+	}
+
+	/**
+	 * Only colors are painted as such; anything else is painted in the last color set.
+	 */
+	@Override
+	public void setPaint(Paint paint) {
+		if (paint instanceof Color) {
+			setColor((Color) paint);
+		} else if (paint != null) {
+			this.paint = paint;
+		}
+	}
+
+	@Override
+	public void setPaintMode() {
+	}
+
+	@Override
+	public void setXORMode(Color c1) {
+	}
+
+	@Override
+	public Color getBackground() {
+		return background;
+	}
+
+	@Override
+	public void setBackground(Color color) {
+		background = color;
+	}
+
+	@Override
+	public Composite getComposite() {
+		return composite;
+	}
+
+	@Override
+	public void setComposite(Composite comp) {
+		composite = comp;
+	}
+
+	@Override
+	public Stroke getStroke() {
+		return stroke;
+	}
+
+	@Override
+	public void setStroke(Stroke s) {
+		stroke = s;
+	}
+
+	@Override
+	public Font getFont() {
+		return font;
+	}
+
+	@Override
+	public void setFont(Font font) {
+		if (font != null) {
+			this.font = font;
+		}
+	}
+
+	@Override
+	public FontMetrics getFontMetrics(Font f) {
+		return doc.scratch.getFontMetrics(f);
+	}
+
+	@Override
+	public FontRenderContext getFontRenderContext() {
+		AffineTransform tx = new AffineTransform(transform.getScaleX(), transform.getShearY(),
+				transform.getShearX(), transform.getScaleY(), 0, 0);
+		Object aa = hints.get(RenderingHints.KEY_TEXT_ANTIALIASING);
+		if (aa == null || aa == RenderingHints.VALUE_TEXT_ANTIALIAS_DEFAULT) {
+			aa = hints.get(RenderingHints.KEY_ANTIALIASING) == RenderingHints.VALUE_ANTIALIAS_ON
+					? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF;
+		}
+		Object fm = hints.get(RenderingHints.KEY_FRACTIONALMETRICS);
+		return new FontRenderContext(tx, aa, fm != null ? fm : RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+	}
+
+	@Override
+	public GraphicsConfiguration getDeviceConfiguration() {
+		return doc.scratch.getDeviceConfiguration();
+	}
+
+	@Override
+	public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+		hints.put(hintKey, hintValue);
+	}
+
+	@Override
+	public Object getRenderingHint(RenderingHints.Key hintKey) {
+		return hints.get(hintKey);
+	}
+
+	@Override
+	public void setRenderingHints(Map<?, ?> hints) {
+		this.hints.clear();
+		this.hints.putAll(hints);
+	}
+
+	@Override
+	public void addRenderingHints(Map<?, ?> hints) {
+		this.hints.putAll(hints);
+	}
+
+	@Override
+	public RenderingHints getRenderingHints() {
+		return (RenderingHints) hints.clone();
+	}
+
+	// writing
+
+	/**
+	 * How opaque something painted in the given color comes out, with the composite's alpha.
+	 */
+	private double opacity(Color c) {
+		double opacity = c.getAlpha() / 255.0;
+		if (composite instanceof AlphaComposite && ((AlphaComposite) composite).getRule() == AlphaComposite.SRC_OVER) {
+			opacity *= ((AlphaComposite) composite).getAlpha();
+		}
+		return opacity;
+	}
+
+	private static String fontFamily(Font font) {
+		String family = font.getFamily();
+		switch (family) {
+			case Font.DIALOG:
+			case Font.SANS_SERIF:
+				return "sans-serif";
+			case Font.DIALOG_INPUT:
+			case Font.MONOSPACED:
+				return "monospace";
+			case Font.SERIF:
+				return "serif";
+			default:
+				boolean mono = family.contains("Mono") || family.contains("Code");
+				return "'" + family.replace("'", "") + "', " + (mono ? "monospace" : "sans-serif");
+		}
+	}
+
+	private static void path(StringBuilder b, PathIterator it) {
+		double[] c = new double[6];
+		boolean first = true;
+		for (; !it.isDone(); it.next()) {
+			if (!first) {
+				b.append(' ');
+			}
+			first = false;
+			int type = it.currentSegment(c);
+			switch (type) {
+				case PathIterator.SEG_MOVETO:
+					b.append('M');
+					points(b, c, 1);
+					break;
+				case PathIterator.SEG_LINETO:
+					b.append('L');
+					points(b, c, 1);
+					break;
+				case PathIterator.SEG_QUADTO:
+					b.append('Q');
+					points(b, c, 2);
+					break;
+				case PathIterator.SEG_CUBICTO:
+					b.append('C');
+					points(b, c, 3);
+					break;
+				case PathIterator.SEG_CLOSE:
+					b.append('Z');
+					break;
+			}
+		}
+	}
+
+	private static void points(StringBuilder b, double[] c, int n) {
+		for (int i = 0; i < n * 2; i++) {
+			if (i > 0) {
+				b.append(' ');
+			}
+			number(b, c[i]);
+		}
+	}
+
+	private static void matrix(StringBuilder b, AffineTransform at) {
+		b.append("matrix(");
+		number(b, at.getScaleX());
+		b.append(' ');
+		number(b, at.getShearY());
+		b.append(' ');
+		number(b, at.getShearX());
+		b.append(' ');
+		number(b, at.getScaleY());
+		b.append(' ');
+		number(b, at.getTranslateX());
+		b.append(' ');
+		number(b, at.getTranslateY());
+		b.append(')');
+	}
+
+	/**
+	 * Writes a number to a hundredth of a pixel, which is as precise as anything painted needs to be.
+	 */
+	private static void number(StringBuilder b, double d) {
+		long hundredths = Math.round(d * 100);
+		if (hundredths < 0) {
+			b.append('-');
+			hundredths = -hundredths;
+		}
+		b.append(hundredths / 100);
+		int fraction = (int) (hundredths % 100);
+		if (fraction != 0) {
+			b.append('.').append((char) ('0' + fraction / 10));
+			if (fraction % 10 != 0) {
+				b.append((char) ('0' + fraction % 10));
+			}
+		}
+	}
+
+	private static void color(StringBuilder b, Color c) {
+		int rgb = c.getRGB();
+		b.append('#');
+		for (int shift = 20; shift >= 0; shift -= 4) {
+			b.append(HEX[(rgb >> shift) & 0xF]);
+		}
+	}
+
+	private static void escape(StringBuilder b, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '&':
+					b.append("&amp;");
+					break;
+				case '<':
+					b.append("&lt;");
+					break;
+				case '>':
+					b.append("&gt;");
+					break;
+				case '"':
+					b.append("&quot;");
+					break;
+				default:
+					// characters XML can't hold at all are left out
+					if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+						if (c != 0xFFFE && c != 0xFFFF) {
+							b.append(c);
+						}
+					}
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.aegamesi.java_visualizer.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Square images of a painted scene, kept per zoom level, so that painting an area that was painted before at the
+ * same zoom is a matter of copying images.
+ * <p>
+ * Tiles are rendered at the resolution of the screen they're painted to, so that they stay sharp on HiDPI screens.
+ * Only the most recently used tiles are kept.
+ */
+class TileCache {
+	static final int TILE_SIZE = 256;
+	// about 24 MB of tiles on a regular screen: a few screens' worth, at a couple of zoom levels
+	private static final int MAX_TILES = 96;
+
+	/**
+	 * Paints the scene, in the coordinates of the component the tiles are painted to.
+	 */
+	interface Scene {
+		void paint(Graphics2D g);
+	}
+
+	private final Map<Key, BufferedImage> tiles = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+			return size() > MAX_TILES;
+		}
+	};
+
+	/**
+	 * Drops every tile, when the scene has changed.
+	 */
+	void clear() {
+		tiles.clear();
+	}
+
+	/**
+	 * Drops the tiles that show any of the given area of the scene (before scaling), when only that has changed.
+	 */
+	void invalidate(Rectangle2D area) {
+		tiles.keySet().removeIf(key -> key.shows(area));
+	}
+
+	/**
+	 * Paints the tiles that cover the given area, rendering the ones that aren't cached.
+	 */
+	void paint(Graphics2D g, Rectangle area, double zoom, Color background, Scene scene, GraphicsConfiguration gc) {
+		double deviceScale = g.getTransform().getScaleX();
+		int tx1 = Math.floorDiv(area.x, TILE_SIZE);
+		int ty1 = Math.floorDiv(area.y, TILE_SIZE);
+		int tx2 = Math.floorDiv(area.x + area.width - 1, TILE_SIZE);
+		int ty2 = Math.floorDiv(area.y + area.height - 1, TILE_SIZE);
+		for (int tx = tx1; tx <= tx2; tx++) {
+			for (int ty = ty1; ty <= ty2; ty++) {
+				Key key = new Key(zoom, deviceScale, tx, ty);
+				BufferedImage tile = tiles.get(key);
+				if (tile == null) {
+					tile = render(tx, ty, deviceScale, background, scene, gc);
+					tiles.put(key, tile);
+				}
+				g.drawImage(tile, tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE, null);
+			}
+		}
+	}
+
+	private static BufferedImage render(int tx, int ty, double deviceScale, Color background, Scene scene,
+			GraphicsConfiguration gc) {
+		int size = (int) Math.ceil(TILE_SIZE * deviceScale);
+		// a compatible image is managed: Java2D keeps a copy in video memory where it can
+		BufferedImage tile = gc != null
+				? gc.createCompatibleImage(size, size, Transparency.OPAQUE)
+				: new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = tile.createGraphics();
+		g.scale(deviceScale, deviceScale);
+		g.translate(-tx * TILE_SIZE, -ty * TILE_SIZE);
+		g.setClip(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+		g.setColor(background);
+		g.fillRect(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+		scene.paint(g);
+		g.dispose();
+		return tile;
+	}
+
+	private static final class Key {
+		final double zoom;
+		final double deviceScale;
+		final int x;
+		final int y;
+
+		Key(double zoom, double deviceScale, int x, int y) {
+			this.zoom = zoom;
+			this.deviceScale = deviceScale;
+			this.x = x;
+			this.y = y;
+		}
+
+		boolean shows(Rectangle2D area) {
+			double size = TILE_SIZE / zoom;
+			return area.intersects(x * size, y * size, size, size);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return zoom == other.zoom && deviceScale == other.deviceScale && x == other.x && y == other.y;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(zoom, deviceScale, x, y);
+		}
+	}
+}
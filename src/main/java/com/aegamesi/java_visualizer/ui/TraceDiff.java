@@ -0,0 +1,175 @@
+package com.aegamesi.java_visualizer.ui;
+
+import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.Fields;
+import com.aegamesi.java_visualizer.model.Frame;
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.HeapList;
+import com.aegamesi.java_visualizer.model.HeapMap;
+import com.aegamesi.java_visualizer.model.HeapObject;
+import com.aegamesi.java_visualizer.model.LongMap;
+import com.aegamesi.java_visualizer.model.Value;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The values that changed from one trace to the next, e.g. over a step, so that they can be highlighted.
+ * <p>
+ * Entities are matched by id, and only the entities in both traces are compared: new entities aren't
+ * highlighted, but the references to them are. Frames are matched by their depth from the bottom of the stack,
+ * for as long as they're in the same method. Changes are kept as the cells that changed, numbered in the order
+ * they're shown: fields, elements or map entries (whose value is highlighted) for an entity, locals for a frame.
+ */
+class TraceDiff {
+	static final TraceDiff NONE = new TraceDiff(new LongMap<>(), Collections.emptyMap());
+
+	// the changed cells of each entity that has any, by id
+	private final LongMap<BitSet> entities;
+	// the changed locals of each frame that has any, by index in the newer trace
+	private final Map<Integer, BitSet> frames;
+
+	private TraceDiff(LongMap<BitSet> entities, Map<Integer, BitSet> frames) {
+		this.entities = entities;
+		this.frames = frames;
+	}
+
+	/**
+	 * Compares two traces. Entities carried over from one trace to the next as they are (the same instance) are
+	 * skipped, so a step that changes little is quick to compare however big the heap.
+	 * <p>
+	 * Can be called on any thread. Throws {@link CancellationException} if the thread is interrupted.
+	 */
+	static TraceDiff between(ExecutionTrace before, ExecutionTrace after) {
+		if (before == null) {
+			return NONE;
+		}
+		LongMap<BitSet> entities = new LongMap<>();
+		after.heap.forEachEntry((id, entity) -> {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException();
+			}
+			HeapEntity old = before.heap.get(id);
+			if (old != null && old != entity) {
+				BitSet changed = compare(old, entity);
+				if (changed != null && !changed.isEmpty()) {
+					entities.put(id, changed);
+				}
+			}
+		});
+
+		Map<Integer, BitSet> frames = new HashMap<>();
+		int depth = Math.min(before.frames.size(), after.frames.size());
+		for (int k = 1; k <= depth; k++) {
+			Frame old = before.frames.get(before.frames.size() - k);
+			Frame now = after.frames.get(after.frames.size() - k);
+			if (!method(old).equals(method(now))) {
+				break; // a different call from here up
+			}
+			BitSet changed = compare(old.locals, now.locals);
+			if (!changed.isEmpty()) {
+				frames.put(after.frames.size() - k, changed);
+			}
+		}
+		return new TraceDiff(entities, frames);
+	}
+
+	/**
+	 * The changed cells of an entity, or null if none changed.
+	 */
+	BitSet entity(long id) {
+		return entities.get(id);
+	}
+
+	/**
+	 * The changed locals of a frame, by its index in the newer trace, or null if none changed.
+	 */
+	BitSet frame(int index) {
+		return frames.get(index);
+	}
+
+	private static BitSet compare(HeapEntity old, HeapEntity now) {
+		if (old instanceof HeapObject && now instanceof HeapObject) {
+			return compare(((HeapObject) old).fields, ((HeapObject) now).fields);
+		} else if (old instanceof HeapList && now instanceof HeapList) {
+			return compare((HeapList) old, (HeapList) now);
+		} else if (old instanceof HeapMap && now instanceof HeapMap) {
+			return compare((HeapMap) old, (HeapMap) now);
+		}
+		return null; // a stub that's been loaded, or the other way round: nothing to compare
+	}
+
+	/**
+	 * Named values (fields or locals), in name order; the ones that are new count as changed. With the same
+	 * shape, as objects of the same class have, they're simply compared slot by slot.
+	 */
+	private static BitSet compare(Fields old, Fields now) {
+		BitSet changed = new BitSet();
+		boolean sameShape = old.shape() == now.shape();
+		for (int i = 0; i < now.size(); i++) {
+			Value before = sameShape ? old.value(i) : old.get(now.shape().name(i));
+			if (!now.value(i).equals(before)) {
+				changed.set(i);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Elements, matched by their index in the actual list; the ones that weren't shown before count as changed.
+	 */
+	private static BitSet compare(HeapList old, HeapList now) {
+		BitSet changed = new BitSet();
+		List<Value> items = now.items;
+		for (int i = 0; i < items.size(); i++) {
+			int j = shownIndex(old, now.originalIndex(i));
+			if (j < 0 || !items.get(i).equals(old.items.get(j))) {
+				changed.set(i);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * The index in {@code items} of the element at the given index of the actual list, or -1 if it isn't shown.
+	 */
+	private static int shownIndex(HeapList list, int index) {
+		if (list.isTruncated() && index >= list.omittedOffset) {
+			index -= list.omittedCount;
+			if (index < list.omittedOffset) {
+				return -1; // left out
+			}
+		}
+		return index < list.items.size() ? index : -1;
+	}
+
+	/**
+	 * Entries, matched by key; the ones with a new key count as changed.
+	 */
+	private static BitSet compare(HeapMap old, HeapMap now) {
+		Map<Value, Value> oldValues = new HashMap<>();
+		for (HeapMap.Pair pair : old.pairs) {
+			oldValues.put(pair.key, pair.val);
+		}
+		BitSet changed = new BitSet();
+		for (int i = 0; i < now.pairs.size(); i++) {
+			HeapMap.Pair pair = now.pairs.get(i);
+			if (!pair.val.equals(oldValues.get(pair.key))) {
+				changed.set(i);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * The method a frame is in, without the line number.
+	 */
+	private static String method(Frame frame) {
+		int colon = frame.name.lastIndexOf(':');
+		return colon >= 0 ? frame.name.substring(0, colon) : frame.name;
+	}
+}
@@ -25,12 +25,12 @@ class ValueComponent extends JPanel {
 
 		JLabel label = new CustomJLabel(val.toString());
 		label.setForeground(Constants.colorText);
-		if (val.type == Value.Type.STRING || val.type == Value.Type.CHAR) {
+		if (val.getType() == Value.Type.STRING || val.getType() == Value.Type.CHAR) {
 			label.setFont(Constants.fontUIMono);
 		} else {
 			label.setFont(Constants.fontUI);
 		}
-		if (val.type == Value.Type.REFERENCE) {
+		if (val.getType() == Value.Type.REFERENCE) {
 			int h = label.getPreferredSize().height;
 			setLayout(null);
 			setPreferredSize(new Dimension(Constants.pointerWidth, h));
@@ -38,6 +38,14 @@ class ValueComponent extends JPanel {
 		add(label);
 	}
 
+	/**
+	 * Highlights the value, e.g. as changed since the step before.
+	 */
+	void setHighlighted(boolean highlighted) {
+		setOpaque(highlighted);
+		setBackground(highlighted ? Constants.colorChanged : null);
+	}
+
 	Value getValue() {
 		return val;
 	}
@@ -1,10 +1,16 @@
 package com.aegamesi.java_visualizer.ui;
 
 import com.aegamesi.java_visualizer.model.ExecutionTrace;
+import com.aegamesi.java_visualizer.model.HeapEntity;
+import com.aegamesi.java_visualizer.model.HeapStub;
 import com.aegamesi.java_visualizer.model.Value;
 
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeListener;
+import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
@@ -12,86 +18,301 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.aegamesi.java_visualizer.ui.Constants.*;
 
 public class VisualizationPanel extends JPanel {
+	/**
+	 * How heap entities are drawn: as a tree of components each, or painted directly onto the heap panel.
+	 */
+	public enum HeapRenderer {
+		COMPONENTS, DIRECT
+	}
+
+	// heaps with more entities than this are laid out off the EDT
+	static final int BACKGROUND_LAYOUT_THRESHOLD = 500;
+	private static final ExecutorService LAYOUT_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "Java Visualizer layout");
+		t.setDaemon(true);
+		return t;
+	});
+
 	private ExecutionTrace trace = null;
     private double scale = 1.0;
+	// the size of the scene before scaling
+	private Dimension sceneSize = new Dimension();
+	private final TileCache tiles = new TileCache();
+	private boolean tileCaching = true;
+	private HeapRenderer heapRenderer = HeapRenderer.COMPONENTS;
+	private boolean backgroundLayout = true;
+	// the layout being computed off the EDT, if any, and whether it comes with a new call stack
+	private Future<?> pendingLayout;
+	private boolean pendingStack;
+	// bumped for every layout, so that the result of one that was superseded is dropped
+	private int layoutGeneration;
+	// the layout of the step before the current one: entities stay where they were then, and the values that
+	// changed since are highlighted
+	private HeapLayout stepBase;
+	private TraceDiff diff = TraceDiff.NONE;
 
 	private List<ValueComponent> referenceComponents;
-	private List<PointerConnection> pointerConnections;
+	// the pointers out of the stack, by the reference they start from, kept for as long as neither end moves.
+	// Like the pointers out of the heap, which come with the heap layout, they're relative to the heap panel.
+	private Map<PointerConnection.Key, PointerConnection> stackPointers = new LinkedHashMap<>();
+	private PointerIndex stackPointerIndex;
+	// set when the layout changes, so that pointers are only recomputed when validating after a change
+	private boolean pointersDirty;
+	private JLabel labelStack;
+	private JLabel labelHeap;
 	private StackPanel stackPanel;
 	private HeapPanel heapPanel;
 
 	private PointerConnection selectedPointer;
+	private ExpansionListener expansionListener;
+	private final ChangeListener viewportListener = e -> updateViewport();
 
 	public VisualizationPanel() {
 		setBackground(colorBackground);
 		setLayout(null);
 		referenceComponents = new ArrayList<>();
-		pointerConnections = new ArrayList<>();
 
-		addMouseMotionListener(new MouseAdapter() {
+		MouseAdapter mouseAdapter = new MouseAdapter() {
 			@Override
 			public void mouseMoved(MouseEvent e) {
                 int px = (int) (e.getX() / scale);
                 int py = (int) (e.getY() / scale);
                 PointerConnection sel = getSelectedPointer(px, py);
 				if (sel != selectedPointer) {
-					if (selectedPointer != null) {
-						selectedPointer.setSelected(false);
-					}
+					PointerConnection previous = selectedPointer;
 					selectedPointer = sel;
-					if (selectedPointer != null) {
-						selectedPointer.setSelected(true);
-					}
-					repaint();
+					repaintPointer(previous);
+					repaintPointer(selectedPointer);
+				}
+
+				HeapEntity expandable = getExpandableAt(px, py);
+				if (expandable == null) {
+					setCursor(Cursor.getDefaultCursor());
+					setToolTipText(null);
+				} else {
+					setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+					setToolTipText(expandable instanceof HeapStub ? HeapEntityComponent.TOOLTIP_STUB : HeapEntityComponent.TOOLTIP_MORE);
+				}
+			}
+
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				HeapEntity expandable = getExpandableAt((int) (e.getX() / scale), (int) (e.getY() / scale));
+				if (expandable != null) {
+					loadMoreElements(expandable);
 				}
 			}
-		});
+		};
+		addMouseListener(mouseAdapter);
+		addMouseMotionListener(mouseAdapter);
 	}
 
+    /**
+     * Shows a trace, which mustn't change afterwards, as the next step after the one shown. Entities that were
+     * shown stay where they were, and the values that changed are highlighted. Big heaps are laid out in the
+     * background, and the visualization is updated once that's done; a trace passed in before then supersedes it.
+     */
     public void setTrace(ExecutionTrace t) {
+        HeapLayout shown = heapPanel != null ? heapPanel.getHeapLayout() : null;
+        // a step that was left before any of its heap was shown doesn't count
+        if (shown != null && (stepBase == null || !shown.positions.isEmpty())) {
+            stepBase = shown;
+        }
         this.trace = t;
-        refreshUI();
+        layOut(t, false);
+    }
+
+    /**
+     * Shows a more complete version of the current trace, as published while a trace is in progress.
+     * The call stack is kept as is, and only the heap entities that weren't shown yet get new components.
+     */
+    public void mergeTrace(ExecutionTrace t) {
+        boolean keepStack = this.trace != null && stackPanel != null && !pendingStack;
+        this.trace = t;
+        layOut(t, keepStack);
+    }
+
+    public void setExpansionListener(ExpansionListener listener) {
+        this.expansionListener = listener;
+    }
+
+    /**
+     * Chooses how heap entities are drawn. The component renderer is the default.
+     */
+    public void setHeapRenderer(HeapRenderer renderer) {
+        this.heapRenderer = renderer;
+        if (this.trace != null) {
+            layOut(trace, false);
+        }
+    }
+
+    /**
+     * Chooses whether big heaps are laid out off the EDT. It's on by default; when off, setting a trace lays it
+     * out before returning.
+     */
+    public void setBackgroundLayout(boolean backgroundLayout) {
+        this.backgroundLayout = backgroundLayout;
+    }
+
+    /**
+     * Whether a trace is still being laid out in the background.
+     */
+    public boolean isLayoutPending() {
+        return pendingLayout != null;
     }
 
+    /**
+     * Zooms the visualization. The layout is kept: only the painting is scaled.
+     */
     public void setScale(double scale) {
         this.scale = scale;
-        if (this.trace != null) {
-            refreshUI();
+        updatePreferredSize();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Chooses whether painting goes through a cache of tiles, one set per zoom level. It's on by default.
+     */
+    public void setTileCaching(boolean tileCaching) {
+        this.tileCaching = tileCaching;
+        tiles.clear();
+        repaint();
+    }
+
+    private void updatePreferredSize() {
+        setPreferredSize(new Dimension((int) (sceneSize.width * scale), (int) (sceneSize.height * scale)));
+    }
+
+    /**
+     * Lays out the heap of a trace, in the background if it's big, and shows it when done. Any layout still
+     * in progress is cancelled.
+     */
+    private void layOut(ExecutionTrace t, boolean keepStack) {
+        if (pendingLayout != null) {
+            pendingLayout.cancel(true);
+            pendingLayout = null;
+        }
+        pendingStack = false;
+        int generation = ++layoutGeneration;
+        // the geometry of entities that haven't changed is reused
+        HeapLayout previous = heapPanel != null ? heapPanel.getHeapLayout() : null;
+        HeapLayout base = stepBase;
+        if (!backgroundLayout || t.heap.size() <= BACKGROUND_LAYOUT_THRESHOLD) {
+            install(t, HeapLayout.compute(t, previous, base), keepStack);
+            return;
         }
+        pendingStack = !keepStack;
+        pendingLayout = LAYOUT_EXECUTOR.submit(() -> {
+            HeapLayout layout;
+            try {
+                layout = HeapLayout.compute(t, previous, base);
+            } catch (CancellationException e) {
+                return; // superseded
+            } catch (RuntimeException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == layoutGeneration) {
+                        // nothing more is coming for this trace, whose stack still isn't shown, so the next
+                        // version of it mustn't keep the one that is
+                        pendingLayout = null;
+                    }
+                    throw e;
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (generation == layoutGeneration) {
+                    pendingLayout = null;
+                    pendingStack = false;
+                    install(t, layout, keepStack);
+                }
+            });
+        });
     }
 
-    private void refreshUI() {
-        referenceComponents.clear();
-        removeAll();
+    /**
+     * Shows a trace that's been laid out. The heap panel is kept, and only the entities that changed get new
+     * components, unless the heap is now shown in another mode; the stack panel is kept too if asked to.
+     */
+    private void install(ExecutionTrace t, HeapLayout layout, boolean keepStack) {
+        diff = layout.diff;
+        if (heapPanel == null || heapPanel.getMode() != heapMode(t)) {
+            referenceComponents.clear();
+            removeAll();
+            buildUI(t, layout);
+            tiles.clear();
+        } else {
+            HeapLayout before = heapPanel.getHeapLayout();
+            Rectangle heapBefore = heapPanel.getBounds();
+            Rectangle stackBefore = stackPanel.getBounds();
+            if (!keepStack) {
+                // the heap panel's reference components aren't kept in the list, only the stack's
+                referenceComponents.clear();
+                remove(stackPanel);
+                stackPanel = new StackPanel(this, t.frames);
+                add(stackPanel);
+            }
+            heapPanel.install(layout);
+            layoutUI();
 
-        buildUI();
+            // only the tiles showing what changed are painted again, unless everything moved
+            if (!heapPanel.getLocation().equals(heapBefore.getLocation())) {
+                tiles.clear();
+            } else {
+                if (!keepStack) {
+                    invalidateTiles(stackBefore.union(stackPanel.getBounds()));
+                }
+                for (Rectangle2D area : layout.changesSince(before)) {
+                    invalidateTiles(new Rectangle2D.Double(heapBefore.x + area.getX(), heapBefore.y + area.getY(),
+                            area.getWidth(), area.getHeight()));
+                }
+            }
+        }
 
         revalidate();
         repaint();
     }
 
-	private void buildUI() {
-		JLabel labelStack = new CustomJLabel("Call Stack", JLabel.RIGHT);
-		JLabel labelHeap = new CustomJLabel("Objects", JLabel.LEFT);
+	private void buildUI(ExecutionTrace t, HeapLayout layout) {
+		labelStack = new CustomJLabel("Call Stack", JLabel.RIGHT);
+		labelHeap = new CustomJLabel("Objects", JLabel.LEFT);
 		labelStack.setForeground(Constants.colorText);
 		labelHeap.setForeground(Constants.colorText);
 		labelStack.setFont(fontTitle);
 		labelHeap.setFont(fontTitle);
-		stackPanel = new StackPanel(this, trace.frames);
-		heapPanel = new HeapPanel(this, trace.heap);
+		stackPanel = new StackPanel(this, t.frames);
+		heapPanel = new HeapPanel(this, layout, heapMode(t));
 
 		add(labelStack);
 		add(labelHeap);
 		add(stackPanel);
 		add(heapPanel);
 
+		layoutUI();
+	}
+
+	private HeapPanel.Mode heapMode(ExecutionTrace t) {
+		if (heapRenderer == HeapRenderer.DIRECT) {
+			return HeapPanel.Mode.DIRECT;
+		}
+		return t.heap.size() > HeapPanel.VIRTUALIZE_THRESHOLD ? HeapPanel.Mode.VIRTUAL : HeapPanel.Mode.COMPONENTS;
+	}
+
+	private void layoutUI() {
+		pointersDirty = true;
 		int labelHeight = Math.max(labelStack.getPreferredSize().height, labelHeap.getPreferredSize().height);
 		Dimension sizeStack = stackPanel.getPreferredSize();
 		Dimension sizeHeap = heapPanel.getPreferredSize();
@@ -104,84 +325,227 @@ public class VisualizationPanel extends JPanel {
 
         int outerWidth = (padOuter * 2) + stackWidth + padCenter + heapWidth;
         int outerHeight = (padOuter * 2) + labelHeight + padTitle + Math.max(sizeStack.height, sizeHeap.height);
-        setPreferredSize(new Dimension((int) (outerWidth * scale), (int) (outerHeight * scale)));
+        sceneSize = new Dimension(outerWidth, outerHeight);
+        updatePreferredSize();
 	}
 
+	/**
+	 * Works out the pointers out of the stack from the current layout. A pointer whose ends haven't moved since
+	 * the last time is kept as it is, and the index is only rebuilt if some pointer changed.
+	 */
 	private void computePointerPaths() {
 		if (heapPanel == null) {
 			return;
 		}
-		pointerConnections.clear();
-
-		for (ValueComponent ref : referenceComponents) {
+		Map<PointerConnection.Key, PointerConnection> previous = stackPointers;
+		stackPointers = new LinkedHashMap<>();
+		for (int i = 0; i < referenceComponents.size(); i++) {
+			ValueComponent ref = referenceComponents.get(i);
 			Rectangle refBounds = getRelativeBounds(this, ref);
-			long refId = ref.getValue().reference;
-			HeapEntityComponent obj = heapPanel.getHeapComponents().get(refId);
-			if (obj == null) {
-				continue; // shouldn't happen...
-			}
-			Rectangle objBounds = getRelativeBounds(this, obj);
+			Rectangle objBounds = heapPanel.getEntityBounds(ref.getValue().getReference());
 			if (refBounds == null || objBounds == null) {
-				continue;
+				continue; // not converted yet, or not laid out
+			}
+			refBounds.translate(-heapPanel.getX(), -heapPanel.getY());
+			PointerConnection.Key key = new PointerConnection.Key(-1, i);
+			PointerConnection p = PointerConnection.between(ref.isActive(), refBounds, objBounds, previous.get(key));
+			if (p != previous.get(key)) {
+				invalidatePointerTiles(p);
+				invalidatePointerTiles(previous.get(key));
+			}
+			stackPointers.put(key, p);
+		}
+		for (Map.Entry<PointerConnection.Key, PointerConnection> e : previous.entrySet()) {
+			if (!stackPointers.containsKey(e.getKey())) {
+				invalidatePointerTiles(e.getValue());
 			}
+		}
+
+		if (stackPointerIndex == null || !stackPointers.equals(previous)) {
+			stackPointerIndex = new PointerIndex(new ArrayList<>(stackPointers.values()), stackPointerIndex);
+		}
+		if (selectedPointer != null && !stackPointers.containsValue(selectedPointer)
+				&& !heapPanel.getHeapLayout().pointers.containsValue(selectedPointer)) {
+			// it's gone or has moved; the one under the mouse is found again on the next move
+			selectedPointer = null;
+		}
+	}
+
+	private void invalidatePointerTiles(PointerConnection p) {
+		if (p != null) {
+			Rectangle2D bounds = p.getBounds();
+			invalidateTiles(new Rectangle2D.Double(heapPanel.getX() + bounds.getX(), heapPanel.getY() + bounds.getY(),
+					bounds.getWidth(), bounds.getHeight()));
+		}
+	}
+
+	/**
+	 * Drops the cached tiles showing an area of the scene, with room for antialiasing around it.
+	 */
+	private void invalidateTiles(Rectangle2D area) {
+		int pad = 2;
+		tiles.invalidate(new Rectangle2D.Double(area.getX() - pad, area.getY() - pad,
+				area.getWidth() + (pad * 2), area.getHeight() + (pad * 2)));
+	}
 
-			PointerConnection p = new PointerConnection(
-					ref.isActive(),
-					refBounds.x + refBounds.width - (pointerWidth / 2.0),
-					refBounds.y + (refBounds.height / 2.0),
-					objBounds.x,
-					objBounds.y + (objBounds.height / 2.0)
-			);
-			pointerConnections.add(p);
+	/**
+	 * Repaints the area of a pointer, e.g. when it's selected or deselected.
+	 */
+	private void repaintPointer(PointerConnection p) {
+		if (p == null) {
+			return;
 		}
+		Rectangle2D bounds = p.getBounds();
+		double x = heapPanel.getX() + bounds.getX();
+		double y = heapPanel.getY() + bounds.getY();
+		// room for the stroke and antialiasing
+		int pad = 2;
+		repaint(
+				(int) Math.floor(x * scale) - pad,
+				(int) Math.floor(y * scale) - pad,
+				(int) Math.ceil(bounds.getWidth() * scale) + (pad * 2) + 1,
+				(int) Math.ceil(bounds.getHeight() * scale) + (pad * 2) + 1);
 	}
 
 	@Override
 	protected void paintChildren(Graphics _g) {
 		Graphics2D g = (Graphics2D) _g;
-        g.scale(scale, scale);
+		if (tileCaching) {
+			Rectangle clip = g.getClipBounds();
+			if (clip == null) {
+				clip = new Rectangle(0, 0, getWidth(), getHeight());
+			}
+			tiles.paint(g, clip, scale, getBackground(), this::paintScene, getGraphicsConfiguration());
+		} else {
+			paintScene(g);
+		}
+
+		// the selected pointer goes on top, and isn't part of the tiles
+		if (selectedPointer != null) {
+			Graphics2D sg = (Graphics2D) g.create();
+			sg.scale(scale, scale);
+			sg.translate(heapPanel.getX(), heapPanel.getY());
+			sg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			selectedPointer.paint(sg, true);
+			sg.dispose();
+		}
+	}
+
+	/**
+	 * Paints the components and pointers, without the pointer selection.
+	 */
+	private void paintScene(Graphics2D g0) {
+		Graphics2D g = (Graphics2D) g0.create();
+		g.scale(scale, scale);
 
-        super.paintChildren(g);
+		super.paintChildren(g);
 
-		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		for (PointerConnection p : pointerConnections) {
-			p.paint(g);
+		if (heapPanel != null && stackPointerIndex != null) {
+			g.translate(heapPanel.getX(), heapPanel.getY());
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			Rectangle clip = g.getClipBounds();
+			for (PointerConnection p : stackPointerIndex.find(clip)) {
+				p.paint(g, false);
+			}
+			for (PointerConnection p : heapPanel.getHeapLayout().pointerIndex.find(clip)) {
+				p.paint(g, false);
+			}
 		}
+		g.dispose();
 	}
 
 	@Override
 	protected void validateTree() {
 		super.validateTree();
-		computePointerPaths();
+		if (pointersDirty) {
+			pointersDirty = false;
+			computePointerPaths();
+		}
+		updateViewport();
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		if (getParent() instanceof JViewport) {
+			((JViewport) getParent()).addChangeListener(viewportListener);
+		}
+	}
+
+	@Override
+	public void removeNotify() {
+		if (getParent() instanceof JViewport) {
+			((JViewport) getParent()).removeChangeListener(viewportListener);
+		}
+		super.removeNotify();
+	}
+
+	/**
+	 * Lets a virtualized heap create the components that have scrolled into view. With tile caching, that's
+	 * everything in the tiles the view touches, as tiles are painted whole.
+	 */
+	private void updateViewport() {
+		if (heapPanel == null || heapPanel.getMode() != HeapPanel.Mode.VIRTUAL) {
+			return;
+		}
+		Rectangle visible = getVisibleRect();
+		if (tileCaching) {
+			int size = TileCache.TILE_SIZE;
+			int x = Math.floorDiv(visible.x, size) * size;
+			int y = Math.floorDiv(visible.y, size) * size;
+			visible = new Rectangle(x, y,
+					Math.floorDiv(visible.x + visible.width - 1, size) * size + size - x,
+					Math.floorDiv(visible.y + visible.height - 1, size) * size + size - y);
+		}
+		Rectangle r = new Rectangle(
+				(int) (visible.x / scale) - heapPanel.getX(),
+				(int) (visible.y / scale) - heapPanel.getY(),
+				(int) Math.ceil(visible.width / scale) + 1,
+				(int) Math.ceil(visible.height / scale) + 1);
+		heapPanel.updateViewport(r);
+	}
+
+	/**
+	 * What changed since the step before, to be highlighted.
+	 */
+	TraceDiff getDiff() {
+		return diff;
 	}
 
 	List<ValueComponent> getReferenceComponents() {
 		return referenceComponents;
 	}
 
+	void loadMoreElements(HeapEntity entity) {
+		if (expansionListener != null) {
+			expansionListener.loadMoreElements(entity.id);
+		}
+	}
+
 	void registerValueComponent(ValueComponent component) {
-		if (component.getValue().type == Value.Type.REFERENCE) {
+		if (component.getValue().getType() == Value.Type.REFERENCE) {
 			referenceComponents.add(component);
 		}
 	}
 
-	private PointerConnection getSelectedPointer(int x, int y) {
-		if (pointerConnections == null) {
+	/**
+	 * The entity whose "more" label or stub placeholder is at the given point, when the heap is painted directly.
+	 * Otherwise those are labels, which handle the mouse themselves.
+	 */
+	private HeapEntity getExpandableAt(int x, int y) {
+		if (heapPanel == null || heapPanel.getMode() != HeapPanel.Mode.DIRECT) {
 			return null;
 		}
-		PointerConnection selected = null;
-		Iterator<PointerConnection> i = pointerConnections.iterator();
-		while (i.hasNext()) {
-			PointerConnection p = i.next();
-			if (p.isNear(x, y)) {
-				selected = p;
-				i.remove();
-				break;
-			}
-		}
-		if (selected != null) {
-			pointerConnections.add(selected);
+		return heapPanel.getExpandableAt(x - heapPanel.getX(), y - heapPanel.getY());
+	}
+
+	private PointerConnection getSelectedPointer(int x, int y) {
+		if (heapPanel == null || stackPointerIndex == null) {
+			return null;
 		}
-		return selected;
+		x -= heapPanel.getX();
+		y -= heapPanel.getY();
+		PointerConnection p = stackPointerIndex.find(x, y);
+		return p != null ? p : heapPanel.getHeapLayout().pointerIndex.find(x, y);
 	}
 }
@@ -0,0 +1,144 @@
+package com.aegamesi.java_visualizer.model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class BinaryTraceCodecTest {
+	@Test
+	public void sampleRoundTrips() throws Exception {
+		assertRoundTrips(Traces.sample());
+	}
+
+	@Test
+	public void syntheticRoundTrips() throws Exception {
+		assertRoundTrips(Traces.synthetic(1000));
+	}
+
+	@Test
+	public void edgeCasesRoundTrip() throws Exception {
+		ExecutionTrace trace = Traces.edgeCases();
+		ExecutionTrace back = assertRoundTrips(trace);
+		assertEquals(trace.statics, back.statics);
+		for (int i = 0; i < trace.frames.size(); i++) {
+			assertEquals(trace.frames.get(i).internal, back.frames.get(i).internal);
+			assertEquals(trace.frames.get(i).locals, back.frames.get(i).locals);
+		}
+		for (HeapEntity e : trace.heap.values()) {
+			HeapEntity b = back.heap.get(e.id);
+			assertSame(e.getClass(), b.getClass());
+			if (e instanceof HeapPrimitiveList) {
+				assertSame(((HeapPrimitiveList) e).getElementType(), ((HeapPrimitiveList) b).getElementType());
+			}
+		}
+	}
+
+	@Test
+	public void readsFromABuffer() throws Exception {
+		ExecutionTrace trace = Traces.synthetic(100);
+		ExecutionTrace back = BinaryTraceCodec.read(ByteBuffer.wrap(toBinary(trace)));
+		assertEquals(Traces.canonical(trace), Traces.canonical(back));
+	}
+
+	@Test
+	public void refusesTruncatedTraces() throws Exception {
+		byte[] full = toBinary(Traces.synthetic(1000));
+		int step = Math.max(1, full.length / 500);
+		for (int length = 0; length < full.length; length += step) {
+			byte[] truncated = Arrays.copyOf(full, length);
+			try {
+				fromBinary(truncated);
+				fail("truncated trace of " + length + " bytes was read");
+			} catch (EOFException expected) {
+				// as it should
+			}
+			try {
+				BinaryTraceCodec.read(ByteBuffer.wrap(truncated));
+				fail("truncated trace of " + length + " bytes was read from a buffer");
+			} catch (EOFException expected) {
+				// as it should
+			}
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void refusesAHugePrimitiveArray() throws Exception {
+		// an int[] claiming to have Integer.MAX_VALUE elements, and none of them
+		BinaryTraceCodec.read(ByteBuffer.wrap(hugeCount(2, 0, 0, 0, 0)));
+	}
+
+	@Test(expected = EOFException.class)
+	public void refusesAHugePrimitiveArrayFromAStream() throws Exception {
+		fromBinary(hugeCount(2, 0, 0, 0, 0));
+	}
+
+	@Test(expected = EOFException.class)
+	public void refusesAHugeString() throws Exception {
+		// a primitive holding a string of about a gigabyte, and none of it
+		BinaryTraceCodec.read(ByteBuffer.wrap(hugeCount(4, 0, 0, 0, Value.Type.STRING.ordinal())));
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesAValueWithoutAName() throws Exception {
+		// no frames, one static with a null name
+		BinaryTraceCodec.read(ByteBuffer.wrap(bytes(0x4A, 0x56, 0x54, 0x52, 1, 0, 1, 0, 0)));
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesADelta() throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		BinaryTraceCodec.writeDelta(new ExecutionTrace(), Traces.synthetic(10), Channels.newChannel(os));
+		BinaryTraceCodec.read(ByteBuffer.wrap(os.toByteArray()));
+	}
+
+	private static ExecutionTrace assertRoundTrips(ExecutionTrace trace) throws IOException {
+		ExecutionTrace back = fromBinary(toBinary(trace));
+		assertEquals(trace.toJsonString(), back.toJsonString());
+		// the JSON of doubles is lossy, so compare the values themselves too
+		assertEquals(Traces.values(trace), Traces.values(back));
+		return back;
+	}
+
+	/**
+	 * A trace with no frames or statics and one entity, of the given kind, id, type and label, then the given
+	 * bytes and the largest count there can be.
+	 */
+	private static byte[] hugeCount(int... entity) {
+		byte[] start = bytes(0x4A, 0x56, 0x54, 0x52, 1, 0, 0, 1);
+		byte[] huge = bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+		byte[] bytes = Arrays.copyOf(start, start.length + entity.length + huge.length);
+		for (int i = 0; i < entity.length; i++) {
+			bytes[start.length + i] = (byte) entity[i];
+		}
+		System.arraycopy(huge, 0, bytes, start.length + entity.length, huge.length);
+		return bytes;
+	}
+
+	private static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+	private static byte[] toBinary(ExecutionTrace trace) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		trace.writeBinary(Channels.newChannel(os));
+		return os.toByteArray();
+	}
+
+	private static ExecutionTrace fromBinary(byte[] bytes) throws IOException {
+		return ExecutionTrace.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+	}
+}
@@ -0,0 +1,92 @@
+package com.aegamesi.java_visualizer.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FieldsTest {
+	@Test
+	public void putsGetsAndRemoves() {
+		Fields fields = new Fields();
+		assertNull(fields.put("b", Value.ofLong(2)));
+		assertNull(fields.put("a", Value.ofLong(1)));
+		assertNull(fields.put("c", Value.ofLong(3)));
+		assertEquals(Value.ofLong(2), fields.put("b", Value.ofString("two")));
+		assertEquals(Value.ofString("two"), fields.get("b"));
+		assertNull(fields.get("d"));
+		assertNull(fields.get(1));
+		assertTrue(fields.containsKey("a"));
+		assertFalse(fields.containsKey("d"));
+
+		assertEquals(Value.ofLong(1), fields.remove("a"));
+		assertNull(fields.remove("a"));
+		assertEquals(Arrays.asList("b", "c"), new ArrayList<>(fields.keySet()));
+		assertEquals(Value.ofLong(3), fields.get("c"));
+		assertSame(Shape.of(Arrays.asList("b", "c")), fields.shape());
+	}
+
+	@Test
+	public void iteratesInNameOrder() {
+		Fields fields = new Fields();
+		Map<String, Value> expected = new HashMap<>();
+		for (String name : new String[]{"size", "elementData", "modCount", "next"}) {
+			fields.put(name, Value.ofString(name));
+			expected.put(name, Value.ofString(name));
+		}
+		assertEquals(Arrays.asList("elementData", "modCount", "next", "size"), new ArrayList<>(fields.keySet()));
+		assertEquals(expected, fields);
+		assertEquals(fields, expected);
+		assertEquals(expected.hashCode(), fields.hashCode());
+	}
+
+	@Test
+	public void setsValuesThroughEntries() {
+		Fields fields = new Fields();
+		fields.put("a", Value.ofLong(1));
+		fields.put("b", Value.ofLong(2));
+		Iterator<Map.Entry<String, Value>> entries = fields.entrySet().iterator();
+		entries.next();
+		entries.next().setValue(Value.ofBoolean(true));
+		assertFalse(entries.hasNext());
+		assertEquals(Value.ofBoolean(true), fields.get("b"));
+	}
+
+	@Test
+	public void startsFromAShape() {
+		Shape shape = Shape.of(Arrays.asList("x", "y"));
+		Fields fields = new Fields(shape);
+		assertEquals(2, fields.size());
+		assertNull(fields.get("x"));
+		fields.set(shape.indexOf("y"), Value.ofChar('y'));
+		assertEquals(Value.ofChar('y'), fields.value(1));
+		assertEquals(Value.ofChar('y'), fields.get("y"));
+		fields.clear();
+		assertSame(Shape.EMPTY, fields.shape());
+	}
+
+	@Test
+	public void objectsWithTheSameFieldsHaveTheSameStructure() {
+		HeapObject a = new HeapObject();
+		a.fields.put("next", Value.ofReference(1));
+		a.fields.put("value", Value.ofLong(1));
+		HeapObject b = new HeapObject();
+		b.fields.put("value", Value.ofLong(2));
+		b.fields.put("next", Value.ofNull());
+		assertSame(a.fields.shape(), b.fields.shape());
+		assertTrue(a.hasSameStructure(b));
+		b.fields.put("extra", Value.ofNull());
+		assertFalse(a.hasSameStructure(b));
+		b.fields.remove("extra");
+		assertTrue(a.hasSameStructure(b));
+	}
+}
@@ -0,0 +1,157 @@
+package com.aegamesi.java_visualizer.model;
+
+import org.junit.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonReaderTest {
+	@Test
+	public void readsNestedValues() throws IOException {
+		JsonReader reader = reader("{\"a\": [1, -2.5e3, true, false, null], \"b\": {\"c\": \"d\"}, \"e\": []}");
+		reader.beginObject();
+		assertEquals("a", reader.nextName());
+		reader.beginArray();
+		assertEquals(1, reader.nextInt());
+		assertEquals(-2500.0, reader.nextDouble(), 0);
+		assertTrue(reader.nextBoolean());
+		assertFalse(reader.nextBoolean());
+		assertEquals(JsonReader.Token.NULL, reader.peek());
+		reader.nextNull();
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		assertEquals("b", reader.nextName());
+		reader.beginObject();
+		assertEquals("c", reader.nextName());
+		assertEquals("d", reader.nextString());
+		reader.endObject();
+		assertEquals("e", reader.nextName());
+		reader.beginArray();
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		assertFalse(reader.hasNext());
+		reader.endObject();
+		assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+	}
+
+	@Test
+	public void readsEscapes() throws IOException {
+		JsonReader reader = reader("[\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\\u2603\"]");
+		reader.beginArray();
+		assertEquals("\"\\/\b\f\n\r\t\u00e9\u2603", reader.nextString());
+		reader.endArray();
+	}
+
+	@Test
+	public void readsLongsExactly() throws IOException {
+		JsonReader reader = reader("[9223372036854775807, -9223372036854775808, 1e3, \"NaN\", \"-Infinity\"]");
+		reader.beginArray();
+		assertEquals(Long.MAX_VALUE, reader.nextLong());
+		assertEquals(Long.MIN_VALUE, reader.nextLong());
+		assertEquals(1000, reader.nextLong());
+		assertTrue(Double.isNaN(reader.nextDouble()));
+		assertEquals(Double.NEGATIVE_INFINITY, reader.nextDouble(), 0);
+		reader.endArray();
+	}
+
+	@Test
+	public void skipsValues() throws IOException {
+		JsonReader reader = reader("{\"skip\": {\"a\": [1, {\"b\": []}], \"c\": \"}\"}, \"keep\": 7}");
+		reader.beginObject();
+		assertEquals("skip", reader.nextName());
+		reader.skipValue();
+		assertEquals("keep", reader.nextName());
+		assertEquals(7, reader.nextInt());
+		reader.endObject();
+	}
+
+	@Test
+	public void readsAcrossBufferBoundaries() throws IOException {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 10000; i++) {
+			json.append(i > 0 ? "," : "").append("{\"n\":").append(i).append(",\"s\":\"\\u0041").append(i).append("\"}");
+		}
+		json.append("]");
+		// a reader that only ever hands over a few characters at a time
+		Reader trickle = new FilterReader(new StringReader(json.toString())) {
+			@Override
+			public int read(char[] buffer, int offset, int length) throws IOException {
+				return super.read(buffer, offset, Math.min(length, 3));
+			}
+		};
+		JsonReader reader = new JsonReader(trickle);
+		reader.beginArray();
+		for (int i = 0; i < 10000; i++) {
+			reader.beginObject();
+			assertEquals("n", reader.nextName());
+			assertEquals(i, reader.nextInt());
+			assertEquals("s", reader.nextName());
+			assertEquals("A" + i, reader.nextString());
+			reader.endObject();
+		}
+		reader.endArray();
+		assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+	}
+
+	@Test
+	public void readsDeepNesting() throws IOException {
+		int depth = 100;
+		StringBuilder json = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			json.append('[');
+		}
+		for (int i = 0; i < depth; i++) {
+			json.append(']');
+		}
+		JsonReader reader = reader(json.toString());
+		for (int i = 0; i < depth; i++) {
+			reader.beginArray();
+		}
+		for (int i = 0; i < depth; i++) {
+			reader.endArray();
+		}
+	}
+
+	@Test
+	public void reportsTheLineOfAnError() {
+		assertError("{\"a\": 1,\n\"b\" 2}", "Expected ':' at line 2");
+		assertError("[1\n\n2]", "Expected ',' or ']' at line 3");
+		assertError("[\"abc", "Unterminated string at line 1");
+		assertError("[tru]", "Expected 'true' at line 1");
+		assertError("{\"a\": 1", "Unexpected end of document at line 1");
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesAFractionAsALong() throws IOException {
+		JsonReader reader = reader("[1.5]");
+		reader.beginArray();
+		reader.nextLong();
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesTheWrongToken() throws IOException {
+		JsonReader reader = reader("[\"a\"]");
+		reader.beginArray();
+		reader.nextBoolean();
+	}
+
+	private static void assertError(String json, String message) {
+		try {
+			reader(json).skipValue();
+			fail("read " + json);
+		} catch (IOException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+
+	private static JsonReader reader(String json) {
+		return new JsonReader(new StringReader(json));
+	}
+}
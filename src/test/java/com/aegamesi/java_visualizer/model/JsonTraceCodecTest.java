@@ -0,0 +1,59 @@
+package com.aegamesi.java_visualizer.model;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonTraceCodecTest {
+	@Test
+	public void sampleRoundTrips() throws Exception {
+		assertRoundTrips(Traces.sample(), true);
+	}
+
+	@Test
+	public void syntheticRoundTrips() throws Exception {
+		assertRoundTrips(Traces.synthetic(1000), true);
+	}
+
+	@Test
+	public void edgeCasesRoundTrip() throws Exception {
+		ExecutionTrace trace = Traces.edgeCases();
+		ExecutionTrace back = assertRoundTrips(trace, false);
+		for (int i = 0; i < trace.frames.size(); i++) {
+			assertEquals(trace.frames.get(i).locals, back.frames.get(i).locals);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesTruncatedJson() throws Exception {
+		String json = stream(Traces.synthetic(10));
+		ExecutionTrace.readJson(new StringReader(json.substring(0, json.length() / 2)));
+	}
+
+	/**
+	 * Streams a trace to JSON and back, and reads it with the tree-based reader too (and the other way round, if
+	 * the trace has nothing the tree-based writer can't write).
+	 */
+	private static ExecutionTrace assertRoundTrips(ExecutionTrace trace, boolean both) throws IOException {
+		String streamed = stream(trace);
+		String expected = trace.toJsonString();
+		ExecutionTrace back = ExecutionTrace.readJson(new StringReader(streamed));
+		assertEquals(expected, back.toJsonString());
+		assertEquals(Traces.values(trace), Traces.values(back));
+		if (both) {
+			assertEquals(expected, ExecutionTrace.fromJsonString(streamed).toJsonString());
+			assertEquals(expected, ExecutionTrace.readJson(new StringReader(expected)).toJsonString());
+		}
+		return back;
+	}
+
+	private static String stream(ExecutionTrace trace) throws IOException {
+		StringWriter writer = new StringWriter();
+		trace.writeJson(writer);
+		return writer.toString();
+	}
+}
@@ -0,0 +1,162 @@
+package com.aegamesi.java_visualizer.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LongMapTest {
+	@Test
+	public void putsGetsAndRemoves() {
+		LongMap<String> map = new LongMap<>();
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(Long.MIN_VALUE, "min"));
+		assertNull(map.put(0, "zero"));
+		assertEquals("a", map.put(1, "b"));
+		assertEquals(3, map.size());
+		assertEquals("b", map.get(1));
+		assertEquals("min", map.get(Long.MIN_VALUE));
+		assertEquals("zero", map.get(Long.valueOf(0)));
+		assertNull(map.get(2));
+		assertNull(map.get("not a long"));
+		assertEquals("b", map.remove(1));
+		assertNull(map.remove(1));
+		assertFalse(map.containsKey(1));
+		assertEquals(2, map.size());
+	}
+
+	@Test
+	public void keepsNullValues() {
+		LongMap<String> map = new LongMap<>();
+		map.put(5, null);
+		assertTrue(map.containsKey(5));
+		assertFalse(map.containsKey(6));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void iteratesInInsertionOrder() {
+		LongMap<String> map = new LongMap<>();
+		long[] keys = {42, -7, 1000000000000L, 3, 0};
+		for (long key : keys) {
+			map.put(key, "v" + key);
+		}
+		map.put(-7, "again");
+		assertArrayEquals(keys, map.keys());
+		assertEquals(new ArrayList<>(map.keySet()), toList(keys));
+		List<Long> visited = new ArrayList<>();
+		map.forEachEntry((key, value) -> visited.add(key));
+		assertEquals(toList(keys), visited);
+
+		map.remove(3);
+		map.put(3, "back");
+		assertArrayEquals(new long[]{42, -7, 1000000000000L, 0, 3}, map.keys());
+	}
+
+	@Test
+	public void behavesLikeALinkedHashMap() {
+		Random random = new Random(1);
+		LongMap<Integer> map = new LongMap<>();
+		Map<Long, Integer> expected = new LinkedHashMap<>();
+		for (int i = 0; i < 200000; i++) {
+			// a small range of keys, so that there are plenty of removals and puts of keys that were removed
+			long key = random.nextInt(5000) * 0x9E3779B97F4A7C15L;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				// a LinkedHashMap keeps the place of a key that is put again, as the map should
+				Integer value = i;
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+		assertEquals(expected, map);
+		assertEquals(expected.hashCode(), map.hashCode());
+	}
+
+	@Test
+	public void grows() {
+		LongMap<Long> map = new LongMap<>(0);
+		for (long key = 0; key < 100000; key++) {
+			map.put(key * 31, Long.valueOf(key));
+		}
+		assertEquals(100000, map.size());
+		for (long key = 0; key < 100000; key++) {
+			assertEquals(Long.valueOf(key), map.get(key * 31));
+		}
+	}
+
+	@Test
+	public void copiesIndependently() {
+		LongMap<String> map = new LongMap<>();
+		map.put(1, "a");
+		map.put(2, "b");
+		map.put(3, "c");
+		map.remove(2);
+		LongMap<String> copy = new LongMap<>(map);
+		assertArrayEquals(new long[]{1, 3}, copy.keys());
+		copy.put(4, "d");
+		copy.remove(1);
+		assertArrayEquals(new long[]{1, 3}, map.keys());
+		assertArrayEquals(new long[]{3, 4}, copy.keys());
+	}
+
+	@Test
+	public void removesThroughIterators() {
+		LongMap<String> map = new LongMap<>();
+		for (long key = 0; key < 10; key++) {
+			map.put(key, "v" + key);
+		}
+		Iterator<Map.Entry<Long, String>> entries = map.entrySet().iterator();
+		while (entries.hasNext()) {
+			if (entries.next().getKey() % 2 == 0) {
+				entries.remove();
+			}
+		}
+		map.keySet().remove(3L);
+		assertArrayEquals(new long[]{1, 5, 7, 9}, map.keys());
+		map.entrySet().iterator().next().setValue("one");
+		assertEquals("one", map.get(1));
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void failsFastWhenChangedWhileIterating() {
+		LongMap<String> map = new LongMap<>();
+		map.put(1, "a");
+		map.put(2, "b");
+		for (long key : map.keySet()) {
+			map.put(key + 10, "c");
+		}
+	}
+
+	@Test
+	public void clears() {
+		LongMap<String> map = new LongMap<>();
+		map.put(1, "a");
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get(1));
+		map.put(2, "b");
+		assertArrayEquals(new long[]{2}, map.keys());
+	}
+
+	private static List<Long> toList(long[] keys) {
+		List<Long> list = new ArrayList<>();
+		for (long key : keys) {
+			list.add(key);
+		}
+		return list;
+	}
+}
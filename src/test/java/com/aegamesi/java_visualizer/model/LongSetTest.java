@@ -0,0 +1,66 @@
+package com.aegamesi.java_visualizer.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongSetTest {
+	@Test
+	public void addsAndRemoves() {
+		LongSet set = new LongSet();
+		assertTrue(set.add(3));
+		assertTrue(set.add(Long.MAX_VALUE));
+		assertFalse(set.add(3));
+		assertTrue(set.contains(3));
+		assertTrue(set.contains(Long.valueOf(Long.MAX_VALUE)));
+		assertFalse(set.contains("3"));
+		assertTrue(set.remove(3));
+		assertFalse(set.remove(3));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	public void keepsInsertionOrder() {
+		LongSet set = new LongSet();
+		for (long value : new long[]{9, -1, 4, 9, 0}) {
+			set.add(value);
+		}
+		assertArrayEquals(new long[]{9, -1, 4, 0}, set.toLongArray());
+		assertEquals(Arrays.asList(9L, -1L, 4L, 0L), Arrays.asList(set.toArray()));
+
+		Iterator<Long> values = set.iterator();
+		values.next();
+		values.remove();
+		assertArrayEquals(new long[]{-1, 4, 0}, set.toLongArray());
+	}
+
+	@Test
+	public void copiesIndependently() {
+		LongSet set = new LongSet();
+		set.add(1);
+		set.add(2);
+		LongSet copy = new LongSet(set);
+		copy.add(3);
+		set.remove(1);
+		assertArrayEquals(new long[]{2}, set.toLongArray());
+		assertArrayEquals(new long[]{1, 2, 3}, copy.toLongArray());
+	}
+
+	@Test
+	public void equalsOtherSets() {
+		LongSet set = new LongSet();
+		set.add(1);
+		set.add(2);
+		assertEquals(new HashSet<>(Arrays.asList(2L, 1L)), set);
+		assertEquals(set, new HashSet<>(Arrays.asList(2L, 1L)));
+		set.clear();
+		assertTrue(set.isEmpty());
+	}
+}
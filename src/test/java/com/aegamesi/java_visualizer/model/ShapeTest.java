@@ -0,0 +1,59 @@
+package com.aegamesi.java_visualizer.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ShapeTest {
+	@Test
+	public void sameNamesAreTheSameShape() {
+		Shape shape = Shape.of(Arrays.asList("b", "a", "c"));
+		assertSame(shape, Shape.of(Arrays.asList("c", "b", "a")));
+		assertSame(shape, Shape.of(Arrays.asList("a", "c", "b", "a")));
+		assertEquals(Arrays.asList("a", "b", "c"), shape.names());
+		assertNotSame(shape, Shape.of(Arrays.asList("a", "b")));
+		assertSame(Shape.EMPTY, Shape.of(Collections.<String>emptyList()));
+	}
+
+	@Test
+	public void addsNamesInOrder() {
+		Shape ac = Shape.EMPTY.with("a").with("c");
+		assertSame(ac, ac.with("a"));
+		// in the middle
+		Shape abc = ac.with("b");
+		assertEquals(Arrays.asList("a", "b", "c"), abc.names());
+		assertSame(Shape.of(Arrays.asList("a", "b", "c")), abc);
+		// at the start
+		assertSame(Shape.of(Arrays.asList("0", "a", "c")), ac.with("0"));
+	}
+
+	@Test
+	public void findsNames() {
+		Shape shape = Shape.of(Arrays.asList("x", "m", "d"));
+		assertEquals(0, shape.indexOf("d"));
+		assertEquals("m", shape.name(1));
+		assertEquals(3, shape.size());
+		// where a missing name would go, as with a binary search
+		assertEquals(-1, shape.indexOf("a"));
+		assertEquals(-3, shape.indexOf("n"));
+		assertEquals(-4, shape.indexOf("z"));
+	}
+
+	@Test
+	public void keepsShapesInUse() {
+		Shape shape = Shape.of(Arrays.asList("kept", "in", "use"));
+		// make plenty of shapes nobody keeps, and give them a chance to be let go of
+		for (int i = 0; i < 10000; i++) {
+			Shape.of(Arrays.asList("kept", "in", "use", "garbage" + i));
+		}
+		System.gc();
+		assertSame(shape, Shape.of(Arrays.asList("use", "in", "kept")));
+		// and ones that were let go of are made again
+		assertEquals(4, Shape.of(Arrays.asList("kept", "in", "use", "garbage0")).size());
+	}
+}
@@ -0,0 +1,248 @@
+package com.aegamesi.java_visualizer.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TraceRecordingTest {
+	private static final int STEPS = 3 * TraceRecording.KEYFRAME_INTERVAL + 5;
+
+	private Path file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = Files.createTempFile("java-visualizer-test-", ".jvrec");
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void readsBackEveryStep() throws IOException {
+		List<String> expected = new ArrayList<>();
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			record(recording, expected);
+			assertEquals(STEPS, recording.size());
+			assertSteps(recording, expected);
+		}
+	}
+
+	@Test
+	public void reopensWhatWasRecorded() throws IOException {
+		List<String> expected = new ArrayList<>();
+		long length;
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			record(recording, expected);
+			length = recording.length();
+		}
+		try (TraceRecording recording = TraceRecording.open(file)) {
+			assertEquals(STEPS, recording.size());
+			assertEquals(length, recording.length());
+			assertSteps(recording, expected);
+		}
+	}
+
+	@Test
+	public void trimsTheFileWhenClosed() throws IOException {
+		long length;
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			record(recording, new ArrayList<>());
+			length = recording.length();
+		}
+		assertEquals(length, Files.size(file));
+	}
+
+	@Test
+	public void ignoresAStepCutOff() throws IOException {
+		List<String> expected = new ArrayList<>();
+		long length;
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			record(recording, expected);
+			length = recording.length();
+		}
+		// as if the IDE stopped halfway through writing another step: the header doesn't count it yet
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 0, 42}));
+		}
+		try (TraceRecording recording = TraceRecording.open(file)) {
+			assertEquals(STEPS, recording.size());
+			assertEquals(length, recording.length());
+			assertSteps(recording, expected);
+		}
+	}
+
+	@Test
+	public void refusesAFileCutOff() throws IOException {
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			record(recording, new ArrayList<>());
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 1);
+		}
+		try (TraceRecording ignored = TraceRecording.open(file)) {
+			fail("opened a recording that was cut off");
+		} catch (IOException expected) {
+			// as it should
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesOtherFiles() throws IOException {
+		Files.write(file, "not a recording, but long enough".getBytes("UTF-8"));
+		TraceRecording.open(file).close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void refusesToAppendWhenOpenedToRead() throws IOException {
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			recording.append(step(0));
+		}
+		try (TraceRecording recording = TraceRecording.open(file)) {
+			recording.append(step(1));
+		}
+	}
+
+	@Test
+	public void readsStepsInAnyOrder() throws IOException {
+		// more steps than are cached, so that the cache has to let go of some
+		int steps = 6 * TraceRecording.KEYFRAME_INTERVAL;
+		List<String> expected = new ArrayList<>();
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			record(recording, expected, steps);
+		}
+		try (TraceRecording recording = TraceRecording.open(file)) {
+			Random random = new Random(1);
+			for (int n = 0; n < 500; n++) {
+				int i = random.nextInt(steps);
+				assertEquals("step " + i, expected.get(i), Traces.canonical(recording.read(i)));
+			}
+			// and scrubbing back from the end, a step at a time
+			for (int i = steps - 1; i >= 0; i--) {
+				assertEquals("step " + i, expected.get(i), Traces.canonical(recording.read(i)));
+			}
+		}
+	}
+
+	@Test
+	public void cachesStepsReadOnTheWay() throws IOException {
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			record(recording, new ArrayList<>());
+			int step = 2 * TraceRecording.KEYFRAME_INTERVAL + 10;
+			ExecutionTrace trace = recording.read(step);
+			assertSame(trace, recording.read(step));
+			// the steps from the keyframe up to it were decoded on the way, and kept
+			ExecutionTrace before = recording.read(step - 5);
+			assertSame(before, recording.read(step - 5));
+			assertSame(before.heap.get(100), trace.heap.get(100));
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void refusesStepsNotRecorded() throws IOException {
+		try (TraceRecording recording = TraceRecording.create(file)) {
+			recording.append(step(0));
+			recording.read(1);
+		}
+	}
+
+	@Test
+	public void readsDeltas() throws IOException {
+		ExecutionTrace previous = step(0);
+		ExecutionTrace trace = step(1);
+		ByteBuffer delta = delta(previous, trace);
+		ExecutionTrace back = BinaryTraceCodec.readDelta(previous, delta);
+		assertEquals(Traces.canonical(trace), Traces.canonical(back));
+		assertEquals(Traces.values(trace), Traces.values(back));
+		// what didn't change is shared with the step before, which is left as it was
+		assertSame(previous.heap.get(100), back.heap.get(100));
+		assertEquals(Traces.canonical(step(0)), Traces.canonical(previous));
+	}
+
+	@Test
+	public void leavesOutWhatDidNotChange() throws IOException {
+		ExecutionTrace trace = Traces.synthetic(1000);
+		int unchanged = delta(trace, trace).remaining();
+		ExecutionTrace changed = Traces.synthetic(1000);
+		((HeapPrimitive) changed.heap.get(3)).value = Value.ofLong(-3);
+		int oneChange = delta(trace, changed).remaining();
+		ExecutionTrace back = BinaryTraceCodec.readDelta(trace, delta(trace, changed));
+		assertEquals(Traces.canonical(changed), Traces.canonical(back));
+		if (unchanged >= 100 || oneChange >= 100) {
+			fail("deltas of " + unchanged + " and " + oneChange + " bytes");
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesAFullTraceAsADelta() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		step(0).writeBinary(Channels.newChannel(os));
+		BinaryTraceCodec.readDelta(step(0), ByteBuffer.wrap(os.toByteArray()));
+	}
+
+	private static ByteBuffer delta(ExecutionTrace previous, ExecutionTrace trace) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		BinaryTraceCodec.writeDelta(previous, trace, Channels.newChannel(os));
+		return ByteBuffer.wrap(os.toByteArray());
+	}
+
+	private static void record(TraceRecording recording, List<String> expected) throws IOException {
+		record(recording, expected, STEPS);
+	}
+
+	private static void record(TraceRecording recording, List<String> expected, int steps) throws IOException {
+		for (int i = 0; i < steps; i++) {
+			ExecutionTrace trace = step(i);
+			recording.append(trace);
+			expected.add(Traces.canonical(trace));
+		}
+	}
+
+	private static void assertSteps(TraceRecording recording, List<String> expected) throws IOException {
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals("step " + i, expected.get(i), Traces.canonical(recording.read(i)));
+		}
+	}
+
+	/**
+	 * A trace as it might be at a step of a program that builds up a list: each step adds an entity, changes
+	 * one, and every so often drops one, while the rest stay as they were.
+	 */
+	static ExecutionTrace step(int i) {
+		ExecutionTrace trace = Traces.synthetic(100);
+		Frame frame = trace.frames.get(0);
+		frame.name = "main:" + (10 + i % 7);
+		frame.locals.put("i", Value.ofLong(i));
+		trace.statics.put("Main.steps", Value.ofLong(i));
+		for (int k = 0; k <= i; k++) {
+			HeapPrimitive added = new HeapPrimitive();
+			added.id = 1000 + k;
+			added.type = HeapEntity.Type.PRIMITIVE;
+			added.label = "Integer";
+			added.value = Value.ofLong(k);
+			trace.heap.put(added.id, added);
+		}
+		((HeapPrimitive) trace.heap.get(3 + 4 * (i % 25))).value = Value.ofLong(-i);
+		if (i % 5 == 0) {
+			trace.heap.remove(1000 + i / 2);
+		}
+		return trace;
+	}
+}
@@ -0,0 +1,155 @@
+package com.aegamesi.java_visualizer.model;
+
+import com.aegamesi.java_visualizer.Tester;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Traces for the tests to write and read back.
+ */
+class Traces {
+	static ExecutionTrace sample() throws Exception {
+		return Tester.makeTrace(null);
+	}
+
+	/**
+	 * A trace with one of each kind of entity for every few ids, linked to each other.
+	 */
+	static ExecutionTrace synthetic(int entities) {
+		ExecutionTrace trace = new ExecutionTrace();
+		Frame frame = new Frame();
+		frame.name = "main:1";
+		frame.locals.put("root", Value.ofReference(1));
+		frame.locals.put("count", Value.ofLong(entities));
+		trace.frames.add(frame);
+		for (long id = 1; id <= entities; id++) {
+			Value next = Value.ofReference(id % entities + 1);
+			switch ((int) (id % 4)) {
+				case 0: {
+					HeapObject object = new HeapObject();
+					object.fields.put("next", next);
+					object.fields.put("value", Value.ofDouble(id / 3.0));
+					add(trace, object, HeapEntity.Type.OBJECT, id, "Node");
+					break;
+				}
+				case 1: {
+					HeapList list = new HeapList();
+					list.items.add(next);
+					list.items.add(Value.ofString("item " + id));
+					list.items.add(Value.ofNull());
+					add(trace, list, HeapEntity.Type.LIST, id, "ArrayList");
+					break;
+				}
+				case 2: {
+					HeapMap map = new HeapMap();
+					HeapMap.Pair pair = new HeapMap.Pair();
+					pair.key = Value.ofString("next");
+					pair.val = next;
+					map.pairs.add(pair);
+					add(trace, map, HeapEntity.Type.MAP, id, "HashMap");
+					break;
+				}
+				default: {
+					HeapPrimitive primitive = new HeapPrimitive();
+					primitive.value = Value.ofLong(id);
+					add(trace, primitive, HeapEntity.Type.PRIMITIVE, id, "Long");
+				}
+			}
+		}
+		return trace;
+	}
+
+	/**
+	 * A trace with what the tree-based JSON doesn't cover: statics, internal frames, primitive arrays and odd
+	 * values.
+	 */
+	static ExecutionTrace edgeCases() {
+		ExecutionTrace trace = new ExecutionTrace();
+		Frame top = new Frame();
+		top.name = "helper:12";
+		top.internal = true;
+		top.locals.put("s", Value.ofString(null));
+		top.locals.put("unicode", Value.ofString("h\u00e9llo \u2603 \ud83d\ude00"));
+		top.locals.put("empty", Value.ofString(""));
+		top.locals.put("c", Value.ofChar('\u0000'));
+		top.locals.put("b", Value.ofBoolean(true));
+		Frame bottom = new Frame();
+		bottom.name = "main:3";
+		bottom.locals.put("min", Value.ofLong(Long.MIN_VALUE));
+		bottom.locals.put("max", Value.ofLong(Long.MAX_VALUE));
+		bottom.locals.put("ref", Value.ofReference(Long.MAX_VALUE));
+		trace.frames.add(top);
+		trace.frames.add(bottom);
+		trace.statics.put("Main.count", Value.ofLong(-1));
+		trace.statics.put("Main.name", Value.ofString("static"));
+
+		Value.Type[] types = {Value.Type.LONG, Value.Type.DOUBLE, Value.Type.BOOLEAN, Value.Type.CHAR};
+		long id = -3;
+		for (Value.Type type : types) {
+			HeapPrimitiveList list = new HeapPrimitiveList(type, 4);
+			list.setLong(0, Long.MIN_VALUE);
+			list.setDouble(1, Double.NaN);
+			list.setDouble(2, -0.0);
+			list.setChar(3, '\uffff');
+			list.omittedOffset = 2;
+			list.omittedCount = 1000;
+			add(trace, list, HeapEntity.Type.LIST, id++, type.name().toLowerCase() + "[]");
+		}
+		HeapPrimitive primitive = new HeapPrimitive();
+		primitive.value = Value.ofDouble(Double.NEGATIVE_INFINITY);
+		add(trace, primitive, HeapEntity.Type.PRIMITIVE, id, "Double");
+		add(trace, new HeapStub(), HeapEntity.Type.STUB, Long.MAX_VALUE, null);
+		return trace;
+	}
+
+	/**
+	 * A trace as text that doesn't depend on the order of its heap, to compare traces with.
+	 */
+	static String canonical(ExecutionTrace trace) {
+		ExecutionTrace sorted = new ExecutionTrace();
+		sorted.frames = trace.frames;
+		long[] ids = trace.heap.keys();
+		Arrays.sort(ids);
+		for (long id : ids) {
+			sorted.heap.put(id, trace.heap.get(id));
+		}
+		return sorted.toJsonString() + trace.statics;
+	}
+
+	/**
+	 * The values in the heap of a trace, by id: the JSON of doubles doesn't keep them exactly, and the JSON of
+	 * primitive arrays doesn't keep their type.
+	 */
+	static List<Object> values(ExecutionTrace trace) {
+		long[] ids = trace.heap.keys();
+		Arrays.sort(ids);
+		List<Object> values = new ArrayList<>();
+		for (long id : ids) {
+			HeapEntity e = trace.heap.get(id);
+			values.add(id);
+			if (e instanceof HeapList) {
+				values.addAll(((HeapList) e).items);
+			} else if (e instanceof HeapMap) {
+				for (HeapMap.Pair pair : ((HeapMap) e).pairs) {
+					values.add(pair.key);
+					values.add(pair.val);
+				}
+			} else if (e instanceof HeapPrimitive) {
+				values.add(((HeapPrimitive) e).value);
+			} else if (e instanceof HeapObject) {
+				values.add(new LinkedHashMap<>(((HeapObject) e).fields));
+			}
+		}
+		return values;
+	}
+
+	private static void add(ExecutionTrace trace, HeapEntity e, HeapEntity.Type type, long id, String label) {
+		e.id = id;
+		e.type = type;
+		e.label = label;
+		trace.heap.put(id, e);
+	}
+}